@@ -0,0 +1,59 @@
+package com.haze.benchmark.vsail;
+
+import com.haze.vsail.bus.event.BusEvent;
+import com.haze.vsail.bus.util.BusInfo;
+import com.haze.websocket.EncodedMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车辆事件推送编码开销基准测试
+ * <p>
+ *     对比每个接收者单独序列化{@link BusInfo}与每个事件只编码一次后共享消息两种方式,
+ *     随连接数增加前者开销线性增长, 后者保持不变。
+ * </p>
+ * <pre>
+ *     java -jar haze-benchmark/target/benchmarks.jar BusEventEncodeBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusEventEncodeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int connections;
+
+    private BusInfo busInfo;
+
+    @Setup
+    public void setup() {
+        busInfo = new BusInfo(BusInfoFixtures.redisHash(1));
+    }
+
+    /**
+     * 原有方式: 每个接收者调用一次toJson
+     */
+    @Benchmark
+    public void encodePerRecipient(Blackhole bh) {
+        for (int i = 0; i < connections; i++) {
+            bh.consume(new EncodedMessage(busInfo.toJson(), busInfo.getVin()));
+        }
+    }
+
+    /**
+     * 每个事件编码一次, 所有接收者共享同一消息
+     */
+    @Benchmark
+    public void encodeOnce(Blackhole bh) {
+        BusEvent event = new BusEvent(busInfo);
+        for (int i = 0; i < connections; i++) {
+            bh.consume(event.getMessage());
+        }
+    }
+}
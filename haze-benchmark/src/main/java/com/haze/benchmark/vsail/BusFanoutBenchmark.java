@@ -0,0 +1,76 @@
+package com.haze.benchmark.vsail;
+
+import com.haze.vsail.bus.event.BusEvent;
+import com.haze.vsail.bus.listener.BusPushProtocol;
+import com.haze.vsail.bus.listener.BusSubscriberIndex;
+import com.haze.vsail.bus.store.BusStateChange;
+import com.haze.vsail.bus.store.BusStateStore;
+import com.haze.vsail.bus.util.BusInfo;
+import com.haze.websocket.EncodedMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车辆事件分发开销基准测试
+ * <p>
+ *     模拟一辆车坐标变化后的分发过程: 写入内存车辆状态、创建车辆事件、从{@link BusSubscriberIndex}获取有权限的连接
+ *     并按各连接的推送协议选择消息。连接中十分之一可查看所有车辆, 其余连接订阅该车辆所属线路。
+ *     测试到选出消息为止, 不包括websocket发送队列及网络写入。
+ * </p>
+ * <pre>
+ *     java -jar haze-benchmark/target/benchmarks.jar BusFanoutBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusFanoutBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int sessions;
+
+    @Param({"LEGACY", "DELTA", "DELTA_BINARY"})
+    private BusPushProtocol protocol;
+
+    private BusSubscriberIndex subscriberIndex;
+
+    private BusStateStore busStateStore;
+
+    private BusInfo busInfo;
+
+    private Long lineGroupId;
+
+    private int tick = 0;
+
+    @Setup
+    public void setup() {
+        busInfo = new BusInfo(BusInfoFixtures.redisHash(1));
+        lineGroupId = Long.valueOf(busInfo.getLineGroupId());
+        busStateStore = new BusStateStore();
+        busStateStore.put(busInfo);
+        subscriberIndex = new BusSubscriberIndex();
+        for (int i = 0; i < sessions; i++) {
+            String sessionId = "s" + i;
+            subscriberIndex.subscribe(sessionId, "user" + i, i % 10 == 0 ? null : Collections.singleton(lineGroupId));
+            subscriberIndex.setProtocol(sessionId, protocol);
+        }
+    }
+
+    @Benchmark
+    public void fanout(Blackhole bh) {
+        BusInfo current = new BusInfo(BusInfoFixtures.redisHash(1));
+        current.setX(String.valueOf(116.30 + (tick++ % 1000) * 0.0001));
+        BusStateChange change = busStateStore.put(current);
+        BusEvent event = new BusEvent(current, change);
+        subscriberIndex.forEachSubscriber(lineGroupId, sessionId -> {
+            EncodedMessage message = subscriberIndex.getProtocol(sessionId).select(event);
+            bh.consume(message);
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package com.haze.benchmark.vsail;
+
+import com.haze.system.entity.Group;
+import com.haze.vsail.bus.entity.Bus;
+import com.haze.vsail.bus.util.BusEventType;
+import com.haze.vsail.bus.util.BusInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车辆信息构造及序列化开销基准测试
+ * <p>
+ *     分别测试由redis缓存构造、由车辆实体构造(车辆新增修改及启动加载时使用)以及两种json序列化方式,
+ *     每次调用处理一辆车。
+ * </p>
+ * <pre>
+ *     java -jar haze-benchmark/target/benchmarks.jar BusInfoBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusInfoBenchmark {
+
+    private Map<String, Object> hash;
+
+    private Bus bus;
+
+    private BusInfo busInfo;
+
+    @Setup
+    public void setup() {
+        hash = BusInfoFixtures.redisHash(1);
+        Group root = BusInfoFixtures.groupTree(4, 5, 10);
+        bus = BusInfoFixtures.bus(1, BusInfoFixtures.lineGroups(root).get(0));
+        busInfo = new BusInfo(hash);
+    }
+
+    /**
+     * 由redis缓存构造
+     */
+    @Benchmark
+    public BusInfo fromMap() {
+        return new BusInfo(hash);
+    }
+
+    /**
+     * 由车辆实体经{@link BusInfo#fromBus(Bus)}构造
+     */
+    @Benchmark
+    public BusInfo fromBus() {
+        return new BusInfo(bus, BusEventType.BUS_EVENT_UPDATE.getEventCode());
+    }
+
+    /**
+     * 带缩进的json序列化, 用于接口返回
+     */
+    @Benchmark
+    public String toJson() {
+        return busInfo.toJson();
+    }
+
+    /**
+     * 不带缩进的json序列化, 用于websocket推送
+     */
+    @Benchmark
+    public String toCompactJson() {
+        return busInfo.toCompactJson();
+    }
+}
@@ -0,0 +1,65 @@
+package com.haze.benchmark.vsail;
+
+import com.haze.vsail.bus.util.BusInfo;
+import com.haze.vsail.bus.util.BusInfoCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车辆redis缓存解码开销基准测试
+ * <p>
+ *     对比原Map构造方法、{@link BusInfoCodec}创建新对象以及复用对象三种方式, 每次调用解码一辆车。
+ *     使用gc分析器运行, 结果中gc.alloc.rate.norm即为每解码一辆车分配的字节数。
+ * </p>
+ * <pre>
+ *     java -jar haze-benchmark/target/benchmarks.jar BusInfoDecodeBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusInfoDecodeBenchmark {
+
+    @Param({"0", "6"})
+    private int sensorCount;
+
+    private Map<String, Object> hash;
+
+    private BusInfo reusable;
+
+    @Setup
+    public void setup() {
+        hash = BusInfoFixtures.redisHash(1);
+        hash.put("sensores", BusInfoFixtures.sensores(sensorCount));
+        reusable = new BusInfo();
+    }
+
+    /**
+     * 原有方式: containsKey/get逐字段判断, SimpleDateFormat解析时间, 替换引号后由Jackson解析传感器
+     */
+    @Benchmark
+    public BusInfo legacy() {
+        return LegacyBusInfoDecoder.decode(hash);
+    }
+
+    /**
+     * 单次遍历解码为新对象
+     */
+    @Benchmark
+    public BusInfo codec() {
+        return BusInfoCodec.decode(hash);
+    }
+
+    /**
+     * 单次遍历解码并复用对象, 对应批量加载车辆状态的场景
+     */
+    @Benchmark
+    public BusInfo codecReuse() {
+        return BusInfoCodec.decode(hash, reusable);
+    }
+}
@@ -0,0 +1,147 @@
+package com.haze.benchmark.vsail;
+
+import com.haze.system.entity.Group;
+import com.haze.vsail.bus.entity.Bus;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试数据, 按网关写入redis的车辆hash格式构造车辆信息, 以及公交公司-分公司-场站-线路四级机构树和车辆实体
+ */
+public final class BusInfoFixtures {
+
+    private BusInfoFixtures() {
+    }
+
+    /**
+     * 构造第index辆车的redis hash内容
+     *
+     * @param index 车辆序号
+     * @return 车辆hash字段
+     */
+    public static Map<String, Object> redisHash(int index) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", String.valueOf(index));
+        map.put("vin", String.format("LVSAIL%011d", index));
+        map.put("busNum", "B" + index);
+        map.put("drivingNum", "京A" + (10000 + index));
+        map.put("modelName", "BJ6123C7");
+        map.put("factoryName", "北汽福田");
+        map.put("productNum", "P" + index);
+        map.put("rootGroupId", "1");
+        map.put("rootGroupName", "北京公交集团");
+        map.put("branchGroupId", String.valueOf(10 + index % 4));
+        map.put("branchGroupName", "第" + (index % 4) + "客运分公司");
+        map.put("siteGroupId", String.valueOf(100 + index % 20));
+        map.put("siteGroupName", "场站" + (index % 20));
+        map.put("lineGroupId", String.valueOf(1000 + index % 200));
+        map.put("lineGroupName", (index % 200) + "路");
+        map.put("address", "北京市海淀区西三环北路" + (index % 20) + "号");
+        map.put("linker", "张三");
+        map.put("linkerMobile", "13800000000");
+        map.put("eventCode", "3");
+        map.put("isFire", "0");
+        map.put("isError", "0");
+        map.put("stime", "2019-11-20 14:35:12");
+        map.put("x", String.valueOf(116.30 + (index % 100) * 0.001));
+        map.put("y", String.valueOf(39.90 + (index % 100) * 0.001));
+        map.put("state", "正常");
+        map.put("sensores", sensores(6));
+        return map;
+    }
+
+    /**
+     * 构造网关格式(单引号json)的传感器数据
+     */
+    public static String sensores(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            sb.append("{'sn':").append(i)
+                    .append(",'fire':'0000','error':'00000','concen':").append(10 + i)
+                    .append(",'temp':").append(25 + i)
+                    .append(",'state':'1'}");
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * 构造公交公司机构树, 机构ID自1开始依次分配
+     *
+     * @param branches       分公司数量
+     * @param sitesPerBranch 每个分公司的场站数量
+     * @param linesPerSite   每个场站的线路数量
+     * @return 公交公司机构
+     */
+    public static Group groupTree(int branches, int sitesPerBranch, int linesPerSite) {
+        long[] id = {1L};
+        Group root = group(id, "北京公交集团", null);
+        for (int b = 0; b < branches; b++) {
+            Group branch = group(id, "第" + b + "客运分公司", root);
+            for (int s = 0; s < sitesPerBranch; s++) {
+                Group site = group(id, branch.getName() + "场站" + s, branch);
+                site.setAddress("北京市海淀区西三环北路" + s + "号");
+                site.setLinker("张三");
+                site.setLinkerMobile("13800000000");
+                for (int l = 0; l < linesPerSite; l++) {
+                    group(id, site.getName() + l + "路", site);
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * 获取机构树中的全部线路机构
+     */
+    public static List<Group> lineGroups(Group root) {
+        List<Group> lines = new ArrayList<>();
+        for (Group branch : root.getChilds()) {
+            for (Group site : branch.getChilds()) {
+                lines.addAll(site.getChilds());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 构造属于指定线路的车辆实体
+     *
+     * @param index     车辆序号
+     * @param lineGroup 线路机构, 上级依次为场站、分公司及公交公司
+     * @return 车辆实体
+     */
+    public static Bus bus(int index, Group lineGroup) {
+        Bus bus = new Bus();
+        bus.setId((long) index);
+        bus.setVin(String.format("LVSAIL%011d", index));
+        bus.setBusNum("B" + index);
+        bus.setDrivingNum("京A" + (10000 + index));
+        bus.setModelName("BJ6123C7");
+        bus.setFactoryName("北汽福田");
+        bus.setProductNum("P" + index);
+        bus.setLineGroup(lineGroup);
+        bus.setSiteGroup(lineGroup.getParent());
+        bus.setBranchGroup(lineGroup.getParent().getParent());
+        bus.setRootGroup(lineGroup.getRootGroup());
+        return bus;
+    }
+
+    private static Group group(long[] id, String name, Group parent) {
+        Group group = new Group();
+        group.setId(id[0]++);
+        group.setName(name);
+        group.setFullName(name);
+        group.setCode("G" + group.getId());
+        if (parent != null) {
+            group.setParent(parent);
+            parent.getChilds().add(group);
+        }
+        return group;
+    }
+}
@@ -0,0 +1,65 @@
+package com.haze.benchmark.vsail;
+
+import com.haze.shiro.ShiroUser;
+import com.haze.system.entity.Group;
+import com.haze.vsail.bus.service.BusService;
+import com.haze.vsail.bus.util.BusInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车辆查看权限判断开销基准测试
+ * <p>
+ *     {@link BusService#check(BusInfo, ShiroUser)}每次调用都会展开用户所属机构的全部下级机构并线性查找车辆线路,
+ *     开销随机构树规模增长。测试用户分别属于公交公司(查看全部线路)和某个场站, 车辆为机构树中最后一条线路的车辆。
+ *     check不访问数据库及redis, 测试中BusService的依赖均为null。
+ * </p>
+ * <pre>
+ *     java -jar haze-benchmark/target/benchmarks.jar BusServiceCheckBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusServiceCheckBenchmark {
+
+    /**
+     * 每个场站的线路数量, 机构树固定为4个分公司、每个分公司5个场站
+     */
+    @Param({"5", "50"})
+    private int linesPerSite;
+
+    private BusService busService;
+
+    private ShiroUser rootUser;
+
+    private ShiroUser siteUser;
+
+    private BusInfo busInfo;
+
+    @Setup
+    public void setup() {
+        busService = new BusService(null, null, null, null, null, null, null);
+        Group root = BusInfoFixtures.groupTree(4, 5, linesPerSite);
+        List<Group> lines = BusInfoFixtures.lineGroups(root);
+        Group lineGroup = lines.get(lines.size() - 1);
+        rootUser = new ShiroUser("1", "root", "公交公司用户", root);
+        siteUser = new ShiroUser("2", "site", "场站用户", lineGroup.getParent());
+        busInfo = new BusInfo(BusInfoFixtures.bus(1, lineGroup), 0);
+    }
+
+    @Benchmark
+    public boolean rootGroupUser() {
+        return busService.check(busInfo, rootUser);
+    }
+
+    @Benchmark
+    public boolean siteGroupUser() {
+        return busService.check(busInfo, siteUser);
+    }
+}
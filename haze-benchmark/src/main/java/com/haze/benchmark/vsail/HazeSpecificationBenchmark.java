@@ -0,0 +1,95 @@
+package com.haze.benchmark.vsail;
+
+import com.haze.core.jpa.repository.HazeSpecification;
+import com.haze.vsail.stat.entity.BusOnOffLog;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQL10Dialect;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JPA动态条件查询构造开销基准测试
+ * <p>
+ *     只测试{@link HazeSpecification#toPredicate}构造查询条件的开销, 不执行sql。使用与系统相同的hibernate方言及元数据配置,
+ *     只注册车辆上下线日志实体, 不需要数据库连接。查询参数分别对应分页列表的条件查询和统计查询的日期范围条件。
+ * </p>
+ * <pre>
+ *     java -jar haze-benchmark/target/benchmarks.jar HazeSpecificationBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HazeSpecificationBenchmark {
+
+    private StandardServiceRegistry registry;
+
+    private SessionFactory sessionFactory;
+
+    private CriteriaBuilder cb;
+
+    private Map<String, Object> pageParams;
+
+    private Map<String, Object> statParams;
+
+    @Setup
+    public void setup() {
+        registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQL10Dialect.class.getName())
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", false)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "none")
+                .build();
+        sessionFactory = new MetadataSources(registry).addAnnotatedClass(BusOnOffLog.class).buildMetadata().buildSessionFactory();
+        cb = sessionFactory.getCriteriaBuilder();
+        pageParams = new HashMap<>();
+        pageParams.put("vin_like", "LVSAIL");
+        pageParams.put("busNum_eq", "B1");
+        pageParams.put("rootGroupName_eq", "北京公交集团");
+        statParams = new HashMap<>();
+        statParams.put("year_between", new Object[]{2019, 2019});
+        statParams.put("month_between", new Object[]{1, 12});
+        statParams.put("day_between", new Object[]{1, 31});
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+        StandardServiceRegistryBuilder.destroy(registry);
+    }
+
+    /**
+     * 分页列表条件查询
+     */
+    @Benchmark
+    public Predicate pageQuery() {
+        return toPredicate(pageParams);
+    }
+
+    /**
+     * 统计查询日期范围条件
+     */
+    @Benchmark
+    public Predicate statQuery() {
+        return toPredicate(statParams);
+    }
+
+    private Predicate toPredicate(Map<String, Object> params) {
+        CriteriaQuery<BusOnOffLog> query = cb.createQuery(BusOnOffLog.class);
+        Root<BusOnOffLog> root = query.from(BusOnOffLog.class);
+        return new HazeSpecification<BusOnOffLog>(params).toPredicate(root, query, cb);
+    }
+}
@@ -0,0 +1,102 @@
+package com.haze.benchmark.vsail;
+
+import com.haze.common.util.HazeDateUtils;
+import com.haze.common.util.HazeJsonUtils;
+import com.haze.vsail.bus.util.BusInfo;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 原{@code BusInfo(Map)}构造方法的解码逻辑, 仅作为基准测试对照保留
+ */
+final class LegacyBusInfoDecoder {
+
+    private LegacyBusInfoDecoder() {
+    }
+
+    static BusInfo decode(Map<String, Object> map) {
+        BusInfo busInfo = new BusInfo();
+        if (map.containsKey("id")) {
+            busInfo.setId(((String) map.get("id")));
+        }
+        if (map.containsKey("vin")) {
+            busInfo.setVin((String) map.get("vin"));
+        }
+        if (map.containsKey("busNum")) {
+            busInfo.setBusNum((String) map.get("busNum"));
+        }
+        if (map.containsKey("drivingNum")) {
+            busInfo.setDrivingNum((String) map.get("drivingNum"));
+        }
+        if (map.containsKey("rootGroupName")) {
+            busInfo.setRootGroupName((String) map.get("rootGroupName"));
+        }
+        if (map.containsKey("rootGroupId")) {
+            busInfo.setRootGroupId((String) map.get("rootGroupId"));
+        }
+        if (map.containsKey("lineGroupName")) {
+            busInfo.setLineGroupName((String) map.get("lineGroupName"));
+        }
+        if (map.containsKey("lineGroupId")) {
+            busInfo.setLineGroupId((String) map.get("lineGroupId"));
+        }
+        if (map.containsKey("siteGroupName")) {
+            busInfo.setSiteGroupName((String) map.get("siteGroupName"));
+        }
+        if (map.containsKey("siteGroupId")) {
+            busInfo.setSiteGroupId((String) map.get("siteGroupId"));
+        }
+        if (map.containsKey("branchGroupName")) {
+            busInfo.setBranchGroupName((String) map.get("branchGroupName"));
+        }
+        if (map.containsKey("branchGroupId")) {
+            busInfo.setBranchGroupId((String) map.get("branchGroupId"));
+        }
+        if (map.containsKey("eventCode")) {
+            busInfo.setEventCode(Integer.parseInt(map.get("eventCode").toString()));
+        }
+        if (map.containsKey("isFire")) {
+            busInfo.setFire(Integer.parseInt(map.get("isFire").toString()) == 1);
+        }
+        if (map.containsKey("isError")) {
+            busInfo.setBreakDown(Integer.parseInt(map.get("isError").toString()) == 1);
+        }
+        if (map.containsKey("stime")) {
+            try {
+                busInfo.setSendTime(HazeDateUtils.parseDate((String) map.get("stime"), "yyyy-MM-dd hh:mm:ss"));
+            } catch (ParseException e) {
+                e.printStackTrace();
+            }
+        }
+        if (map.containsKey("x") && map.containsKey("y")) {
+            busInfo.setX((String) map.get("x"));
+            busInfo.setY((String) map.get("y"));
+        }
+        if (map.containsKey("modelName")) {
+            busInfo.setModelName((String) map.get("modelName"));
+        }
+        if (map.containsKey("address")) {
+            busInfo.setAddress((String) map.get("address"));
+        }
+        if (map.containsKey("linker")) {
+            busInfo.setLinker((String) map.get("linker"));
+        }
+        if (map.containsKey("linkerMobile")) {
+            busInfo.setLinkerMobile((String) map.get("linkerMobile"));
+        }
+        if (map.containsKey("state")) {
+            busInfo.setState((String) map.get("state"));
+        }
+        if (map.containsKey("sensores")) {
+            String str = ((String) map.get("sensores")).replaceAll("'", "\"");
+            BusInfo.Sensor[] sensorArray = HazeJsonUtils.readFromString(str, BusInfo.Sensor[].class);
+            if (sensorArray != null) {
+                busInfo.setSensores(new ArrayList<>(Arrays.asList(sensorArray)));
+            }
+        }
+        return busInfo;
+    }
+}
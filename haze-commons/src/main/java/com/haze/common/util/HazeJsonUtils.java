@@ -1,10 +1,15 @@
 package com.haze.common.util;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * json工具类 主要用于json字符串和对象之间的转换
@@ -14,11 +19,17 @@ public final class HazeJsonUtils {
 
     private static final ObjectMapper mapper = new ObjectMapper();
 
+    /**
+     * 不格式化输出的mapper, 用于网络传输等对体积和性能敏感的场景
+     */
+    private static final ObjectMapper compactMapper = new ObjectMapper();
+
     static {
         // 转换为格式化的json
         mapper.enable(SerializationFeature.INDENT_OUTPUT);
         // 如果json中有新增的字段并且是实体类类中不存在的，不报错
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        compactMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
     public static <T> T readFromString(String json, Class<T> valueType) {
@@ -38,4 +49,52 @@ public final class HazeJsonUtils {
         }
         return null;
     }
+
+    /**
+     * 将对象转换为不包含缩进和换行的json字符串
+     *
+     * @param value 对象
+     * @return json字符串
+     */
+    public static <T> String writeToCompactString(T value) {
+        try {
+            return compactMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * 将对象转换为json树, 用于按字段比较或组装json
+     *
+     * @param value 对象
+     * @return json树
+     */
+    public static <T extends JsonNode> T toTree(Object value) {
+        return compactMapper.valueToTree(value);
+    }
+
+    /**
+     * 创建空的json对象节点
+     */
+    public static ObjectNode createObjectNode() {
+        return compactMapper.createObjectNode();
+    }
+
+    /**
+     * 创建不格式化输出的json生成器, 用于向输出流逐个写入大量对象, 避免先在内存中组装完整的json
+     * <p>
+     *     关闭生成器时不会关闭输出流。
+     * </p>
+     *
+     * @param out 输出流
+     * @return UTF-8编码的json生成器
+     * @throws IOException 创建失败
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = compactMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
 }
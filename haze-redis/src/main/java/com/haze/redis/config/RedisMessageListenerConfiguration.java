@@ -0,0 +1,66 @@
+package com.haze.redis.config;
+
+import com.haze.common.util.HazeStringUtils;
+import com.haze.redis.listener.RedisMessageEventPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * redis订阅消息监听配置, 通过haze.redis.listener.enabled=true启用
+ * <p>
+ *     haze.redis.listener.channels配置订阅的频道, haze.redis.listener.patterns配置订阅的频道模式(可用于键空间通知,
+ *     如__keyspace@0__:bus_*), 多个值以逗号分隔。收到的消息以{@link com.haze.redis.event.RedisMessageEvent}发布。
+ *     haze.redis.listener.keyspace-events不为空时启动时设置redis的notify-keyspace-events参数, 设置失败(如云数据库禁用CONFIG命令)
+ *     时只记录警告, 需由运维人员手工开启。
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "haze.redis.listener", name = "enabled", havingValue = "true")
+public class RedisMessageListenerConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisMessageListenerConfiguration.class);
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory,
+                                                                       @Value("${haze.redis.listener.channels:}") String channels,
+                                                                       @Value("${haze.redis.listener.patterns:}") String patterns,
+                                                                       @Value("${haze.redis.listener.keyspace-events:}") String keyspaceEvents) {
+        if (HazeStringUtils.isNotEmpty(keyspaceEvents)) {
+            RedisConnection connection = factory.getConnection();
+            try {
+                connection.setConfig("notify-keyspace-events", keyspaceEvents);
+            } catch (Exception e) {
+                logger.warn("设置redis键空间通知失败, notify-keyspace-events={}, e={}", keyspaceEvents, e.getMessage());
+            } finally {
+                connection.close();
+            }
+        }
+        List<Topic> topics = new ArrayList<>();
+        for (String channel : HazeStringUtils.split(channels, ",")) {
+            topics.add(new ChannelTopic(channel.trim()));
+        }
+        for (String pattern : HazeStringUtils.split(patterns, ",")) {
+            topics.add(new PatternTopic(pattern.trim()));
+        }
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        if (!topics.isEmpty()) {
+            container.addMessageListener(new RedisMessageEventPublisher(), topics);
+        }
+        logger.info("启用redis订阅消息监听, topics={}", topics);
+        return container;
+    }
+}
@@ -0,0 +1,71 @@
+package com.haze.redis.event;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * redis订阅消息事件, 由{@link com.haze.redis.config.RedisMessageListenerConfiguration}在收到订阅频道或键空间通知消息时发布
+ */
+public class RedisMessageEvent extends ApplicationEvent {
+
+    /**
+     * 消息所在频道, 键空间通知时为"__keyspace@{db}__:{key}"
+     */
+    private String channel;
+
+    /**
+     * 匹配的订阅模式, 按频道名称订阅时为null
+     */
+    private String pattern;
+
+    /**
+     * 消息内容, 键空间通知时为操作命令名称, 如hset
+     */
+    private String body;
+
+    public RedisMessageEvent(Object source, String channel, String pattern, String body) {
+        super(source);
+        this.channel = channel;
+        this.pattern = pattern;
+        this.body = body;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * 是否为键空间通知消息
+     */
+    public boolean isKeyspaceNotification() {
+        return channel != null && channel.startsWith("__keyspace@");
+    }
+
+    /**
+     * 获取键空间通知消息对应的键
+     *
+     * @return 键名称, 非键空间通知时返回null
+     */
+    public String getKeyspaceKey() {
+        if (!isKeyspaceNotification()) {
+            return null;
+        }
+        return channel.substring(channel.indexOf("__:") + 3);
+    }
+
+    @Override
+    public String toString() {
+        return "RedisMessageEvent{" +
+                "channel='" + channel + '\'' +
+                ", pattern='" + pattern + '\'' +
+                ", body='" + body + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,27 @@
+package com.haze.redis.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.redis.event.RedisMessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * redis订阅消息监听器, 将收到的消息转换为{@link RedisMessageEvent}发布, 由各业务模块按频道处理
+ */
+public class RedisMessageEventPublisher implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisMessageEventPublisher.class);
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String patternString = pattern != null && pattern.length > 0 ? new String(pattern, StandardCharsets.UTF_8) : null;
+        logger.debug("收到redis订阅消息, channel={}, body={}", channel, body);
+        SpringContextUtils.publishEvent(new RedisMessageEvent(this, channel, patternString, body));
+    }
+}
@@ -1,21 +1,43 @@
 package com.haze.redis.manage;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Component;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
  * redis资源管理器 通过该类进行redis调用
+ * <p>
+ *     车辆实时数据链路使用的hash读写、集合读取及发布操作以redis.command指标记录每次调用的往返耗时, operation标签为方法名。
+ * </p>
  */
 @Component
 public class RedisManager {
 
+    private static final Timer PUBLISH = timer("publish");
+
+    private static final Timer SET_HASH = timer("setHash");
+
+    private static final Timer GET_HASH = timer("getHash");
+
+    private static final Timer GET_HASHES = timer("getHashes");
+
+    private static final Timer SET_HASHES = timer("setHashes");
+
+    private static final Timer GET_SET_MEMBERS = timer("getSetMembers");
+
     private RedisTemplate<String, Object> redisTemplate;
 
     public RedisManager(RedisTemplate<String, Object> redisTemplate) {
@@ -62,14 +84,123 @@ public class RedisManager {
         redisTemplate.opsForValue().set(key, value);
     }
 
+    /**
+     * 向频道发布消息
+     *
+     * @param channel 频道
+     * @param message 消息内容
+     */
+    public void publish(String channel, String message) {
+        PUBLISH.record(() -> redisTemplate.convertAndSend(channel, message));
+    }
+
     public void setHash(String key, Map<String, Object> value) {
-        redisTemplate.opsForHash().putAll(key, value);
+        SET_HASH.record(() -> redisTemplate.opsForHash().putAll(key, value));
     }
 
     public void setHashKey(String key, String hk, Object hvalue) {
         redisTemplate.opsForHash().put(key, hk, hvalue);
     }
 
+    /**
+     * 使用HGETALL一次获取hash全部字段
+     *
+     * @param key hash键
+     * @return hash内容, 不存在时返回空Map
+     */
+    public Map<String, Object> getHash(String key) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        GET_HASH.record(() -> redisTemplate.opsForHash().entries(key)).forEach((k, v) -> result.put(k.toString(), v));
+        return result;
+    }
+
+    public Object getHashValue(String key, String hk) {
+        return redisTemplate.opsForHash().get(key, hk);
+    }
+
+    /**
+     * 通过管道批量获取多个hash的全部字段, 整个批次只产生一次网络往返
+     *
+     * @param keys hash键集合
+     * @return 与keys顺序一致的hash内容, 不存在的键对应空Map
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> getHashes(List<String> keys) {
+        List<Map<String, Object>> result = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) {
+            return result;
+        }
+        List<Object> values = GET_HASHES.record(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                for (String key : keys) {
+                    operations.opsForHash().entries((K) key);
+                }
+                return null;
+            }
+        }));
+        for (Object value : values) {
+            result.add(value == null ? Collections.emptyMap() : (Map<String, Object>) value);
+        }
+        return result;
+    }
+
+    /**
+     * 通过管道批量写入多个hash, 整个批次只产生一次网络往返
+     *
+     * @param hashes hash键 -> 需要写入的字段
+     */
+    @SuppressWarnings("unchecked")
+    public void setHashes(Map<String, Map<String, Object>> hashes) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        SET_HASHES.record(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                hashes.forEach((key, value) -> operations.opsForHash().putAll((K) key, value));
+                return null;
+            }
+        }));
+    }
+
+    public void addSetMembers(String key, String... members) {
+        redisTemplate.opsForSet().add(key, (Object[]) members);
+    }
+
+    public void removeSetMembers(String key, String... members) {
+        redisTemplate.opsForSet().remove(key, (Object[]) members);
+    }
+
+    public Set<String> getSetMembers(String key) {
+        Set<Object> members = GET_SET_MEMBERS.record(() -> redisTemplate.opsForSet().members(key));
+        Set<String> result = new HashSet<>();
+        if (members != null) {
+            members.forEach(m -> result.add(m.toString()));
+        }
+        return result;
+    }
+
+    /**
+     * 使用SCAN游标遍历匹配的键, 与{@link #listRedis(String)}不同的是不会阻塞redis服务
+     *
+     * @param pattern 键匹配模式
+     * @return 匹配的键集合
+     */
+    public Set<String> scanKeys(String pattern) {
+        return redisTemplate.execute((RedisCallback<Set<String>>) connection -> {
+            Set<String> keys = new HashSet<>();
+            try (Cursor<byte[]> cursor = connection.scan(ScanOptions.scanOptions().match(pattern).count(1000).build())) {
+                while (cursor.hasNext()) {
+                    keys.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("关闭redis游标失败", e);
+            }
+            return keys;
+        });
+    }
+
     public boolean expire(String key, long time) {
         if (time > 0) {
             return redisTemplate.expire(key, time, TimeUnit.SECONDS);
@@ -85,4 +216,8 @@ public class RedisManager {
         Objects.requireNonNull(key, "key不能为空");
         return redisTemplate.hasKey(key);
     }
+
+    private static Timer timer(String operation) {
+        return Timer.builder("redis.command").tag("operation", operation).register(Metrics.globalRegistry);
+    }
 }
@@ -58,6 +58,7 @@ public class ShiroConfiguration {
         chainDefinition.addPathDefinition("/websocket/**", "anon");
         chainDefinition.addPathDefinition("/v/stat/testData", "anon");
         chainDefinition.addPathDefinition("/v/public/**", "anon");
+        chainDefinition.addPathDefinition("/actuator/health", "anon");
         chainDefinition.addPathDefinition("/index", "authc");
         chainDefinition.addPathDefinitions(shiroFilterChainDBDefinition().getFilterChainDefinitions());
         chainDefinition.addPathDefinition("/**", "authc");
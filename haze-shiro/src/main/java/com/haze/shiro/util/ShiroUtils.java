@@ -36,6 +36,20 @@ public class ShiroUtils {
         return onlineList;
     }
 
+    /**
+     * 根据登录名获取在线用户
+     * @param loginName 登录名
+     * @return 在线用户, 用户不在线时返回null
+     */
+    public static ShiroUser getOnlineUser(String loginName) {
+        for (ShiroUser shiroUser : getOnlineUserList()) {
+            if (shiroUser.getLoginName().equals(loginName)) {
+                return shiroUser;
+            }
+        }
+        return null;
+    }
+
     /**
      * 获取当前登录用户
      * @return 当前登录用户
@@ -0,0 +1,18 @@
+package com.haze.simulator;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * 车辆模拟器启动类, 运行{@link SimulatorRunner}完成一次压力测试后退出
+ * <pre>
+ *     java -jar haze-simulator/target/simulator.jar --simulator.fleet.size=2000 --simulator.clients=100
+ * </pre>
+ */
+@SpringBootApplication
+public class SimulatorApplication {
+
+    public static void main(String[] args) {
+        System.exit(SpringApplication.exit(SpringApplication.run(SimulatorApplication.class, args)));
+    }
+}
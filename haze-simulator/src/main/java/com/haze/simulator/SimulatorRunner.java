@@ -0,0 +1,210 @@
+package com.haze.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.haze.simulator.client.DeliveryTracker;
+import com.haze.simulator.client.SimulatedClient;
+import com.haze.simulator.client.WebSocketLoadClients;
+import com.haze.simulator.fleet.BusFrame;
+import com.haze.simulator.fleet.FleetSimulator;
+import com.haze.simulator.ingest.FleetRegistrar;
+import com.haze.simulator.ingest.IngestClient;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压力测试流程
+ * <ol>
+ *     <li>登记模拟车辆并建立websocket客户端连接</li>
+ *     <li>按固定周期推进车队并上报数据帧, 持续配置的时长, 处理速度跟不上周期时记为超时周期</li>
+ *     <li>停止上报后等待消息送达, 汇总上报吞吐量、投递延迟及丢失情况, 同时获取vsail的处理统计, 输出报告</li>
+ * </ol>
+ */
+@Component
+public class SimulatorRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulatorRunner.class);
+
+    private final FleetSimulator fleet;
+
+    private final FleetRegistrar registrar;
+
+    private final IngestClient ingestClient;
+
+    private final WebSocketLoadClients clients;
+
+    private final DeliveryTracker tracker;
+
+    private final ObjectMapper objectMapper;
+
+    private final RestTemplate restTemplate;
+
+    private final String serverUrl;
+
+    private final long intervalMs;
+
+    private final long durationSeconds;
+
+    private final long settleSeconds;
+
+    private final long latencyWindowMs;
+
+    private final boolean cleanup;
+
+    private final String reportFile;
+
+    private final Timer ingestTimer = Timer.builder("simulator.ingest.request")
+            .publishPercentiles(0.5, 0.99)
+            .distributionStatisticExpiry(Duration.ofDays(1))
+            .distributionStatisticBufferLength(1)
+            .register(new SimpleMeterRegistry());
+
+    public SimulatorRunner(FleetSimulator fleet, FleetRegistrar registrar, IngestClient ingestClient,
+                           WebSocketLoadClients clients, DeliveryTracker tracker, ObjectMapper objectMapper,
+                           RestTemplateBuilder restTemplateBuilder,
+                           @Value("${simulator.server-url:http://localhost}") String serverUrl,
+                           @Value("${simulator.interval-ms:1000}") long intervalMs,
+                           @Value("${simulator.duration-seconds:60}") long durationSeconds,
+                           @Value("${simulator.settle-seconds:5}") long settleSeconds,
+                           @Value("${simulator.latency-window-ms:30000}") long latencyWindowMs,
+                           @Value("${simulator.cleanup:true}") boolean cleanup,
+                           @Value("${simulator.report-file:simulator-report.json}") String reportFile) {
+        this.fleet = fleet;
+        this.registrar = registrar;
+        this.ingestClient = ingestClient;
+        this.clients = clients;
+        this.tracker = tracker;
+        this.objectMapper = objectMapper;
+        this.restTemplate = restTemplateBuilder.build();
+        this.serverUrl = serverUrl;
+        this.intervalMs = Math.max(intervalMs, 1);
+        this.durationSeconds = durationSeconds;
+        this.settleSeconds = settleSeconds;
+        this.latencyWindowMs = latencyWindowMs;
+        this.cleanup = cleanup;
+        this.reportFile = reportFile;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        registrar.register(fleet.getBuses());
+        clients.connect();
+        //等待vsail登记连接订阅及加载模拟车辆
+        TimeUnit.SECONDS.sleep(settleSeconds);
+        long ticks = durationSeconds * 1000 / intervalMs;
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        long generated = 0;
+        long accepted = 0;
+        long fireFrames = 0;
+        long breakDownFrames = 0;
+        long offlineFrames = 0;
+        long overruns = 0;
+        logger.info("开始上报, mode={}, buses={}, clients={}, ticks={}", ingestClient.getMode(), fleet.getBuses().size(), clients.getClients().size(), ticks);
+        long start = System.nanoTime();
+        long next = start;
+        for (long tick = 0; tick < ticks; tick++) {
+            List<BusFrame> frames = fleet.tick(System.currentTimeMillis(), intervalMs / 1000.0);
+            long sentNanos = System.nanoTime();
+            tracker.sent(frames, sentNanos);
+            accepted += ingestClient.send(frames);
+            ingestTimer.record(System.nanoTime() - sentNanos, TimeUnit.NANOSECONDS);
+            for (BusFrame frame : frames) {
+                generated++;
+                if (frame.isOffline()) {
+                    offlineFrames++;
+                } else {
+                    fireFrames += frame.getFire();
+                    breakDownFrames += frame.getError();
+                }
+            }
+            tracker.evict(sentNanos - TimeUnit.MILLISECONDS.toNanos(latencyWindowMs));
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } else {
+                overruns++;
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        logger.info("上报结束, 等待消息送达, seconds={}", settleSeconds);
+        TimeUnit.SECONDS.sleep(settleSeconds);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("mode", ingestClient.getMode());
+        config.put("buses", fleet.getBuses().size());
+        config.put("clients", clients.getClients().size());
+        config.put("intervalMs", intervalMs);
+        config.put("durationSeconds", durationSeconds);
+        report.put("config", config);
+
+        Map<String, Object> ingest = new LinkedHashMap<>();
+        HistogramSnapshot request = ingestTimer.takeSnapshot();
+        ingest.put("elapsedSeconds", elapsedSeconds);
+        ingest.put("generated", generated);
+        ingest.put("accepted", accepted);
+        ingest.put("acceptedPerSecond", accepted / elapsedSeconds);
+        ingest.put("fireFrames", fireFrames);
+        ingest.put("breakDownFrames", breakDownFrames);
+        ingest.put("offlineFrames", offlineFrames);
+        ingest.put("overruns", overruns);
+        ingest.put("sendMeanMs", request.mean(TimeUnit.MILLISECONDS));
+        ingest.put("sendMaxMs", request.max(TimeUnit.MILLISECONDS));
+        report.put("ingest", ingest);
+
+        Map<String, Object> delivery = new LinkedHashMap<>(tracker.getLatency());
+        long messages = 0;
+        long lost = 0;
+        int disconnected = 0;
+        for (SimulatedClient client : clients.getClients()) {
+            messages += client.getMessages();
+            lost += tracker.countLost(client);
+            disconnected += client.isClosed() ? 1 : 0;
+        }
+        long expected = (long) tracker.getVehicleCount() * clients.getClients().size();
+        delivery.put("messages", messages);
+        delivery.put("messagesPerSecond", messages / elapsedSeconds);
+        delivery.put("lostFinalStates", lost);
+        delivery.put("lostRatio", expected == 0 ? 0 : (double) lost / expected);
+        delivery.put("disconnected", disconnected);
+        delivery.put("connectFailures", clients.getConnectFailures());
+        report.put("delivery", delivery);
+
+        Map<String, Object> server = new LinkedHashMap<>();
+        server.put("ingest", fetch("/v/public/ingest/stats"));
+        report.put("server", server);
+
+        clients.close();
+        if (cleanup) {
+            registrar.unregister(fleet.getBuses());
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(reportFile), report);
+        logger.info("压力测试报告已输出至{}\n{}", reportFile, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+    }
+
+    private Object fetch(String path) {
+        try {
+            return restTemplate.getForObject(serverUrl + path, Map.class);
+        } catch (RestClientException e) {
+            logger.warn("获取vsail统计信息失败, path={}, error={}", path, e.getMessage());
+            return null;
+        }
+    }
+}
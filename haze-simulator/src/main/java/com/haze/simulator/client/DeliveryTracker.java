@@ -0,0 +1,132 @@
+package com.haze.simulator.client;
+
+import com.haze.simulator.fleet.BusFrame;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 投递统计
+ * <p>
+ *     记录每个已上报数据帧的发送时间, websocket客户端收到车辆信息后按vin码和坐标找到对应数据帧, 记录从上报至客户端收到的延迟。
+ *     vsail在发送队列积压时会合并同一车辆的消息, 中间的数据帧没有送达属于正常情况, 因此丢失只按每辆车最后一个数据帧统计:
+ *     结束时客户端收到的车辆最后位置与最后上报的位置不一致即计为丢失。
+ * </p>
+ */
+@Component
+public class DeliveryTracker {
+
+    /**
+     * 投递标识 -> 上报时间({@link System#nanoTime()})
+     */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    /**
+     * vin码 -> 最后上报数据帧的投递标识
+     */
+    private final Map<String, String> lastSent = new ConcurrentHashMap<>();
+
+    private final Timer latency;
+
+    private final LongAdder delivered = new LongAdder();
+
+    private final LongAdder unmatched = new LongAdder();
+
+    public DeliveryTracker() {
+        latency = Timer.builder("simulator.delivery.latency")
+                .publishPercentiles(0.5, 0.9, 0.95, 0.99, 0.999)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(new SimpleMeterRegistry());
+    }
+
+    /**
+     * 记录已上报的数据帧, 下线帧不参与统计
+     *
+     * @param frames    数据帧集合
+     * @param sentNanos 上报时间
+     */
+    public void sent(List<BusFrame> frames, long sentNanos) {
+        for (BusFrame frame : frames) {
+            if (frame.isOffline()) {
+                continue;
+            }
+            String key = frame.getDeliveryKey();
+            pending.put(key, sentNanos);
+            lastSent.put(frame.getVin(), key);
+        }
+    }
+
+    /**
+     * 记录客户端收到的车辆信息
+     *
+     * @param key           投递标识
+     * @param receivedNanos 收到时间
+     */
+    void delivered(String key, long receivedNanos) {
+        Long sentNanos = pending.get(key);
+        if (sentNanos == null) {
+            unmatched.increment();
+            return;
+        }
+        delivered.increment();
+        latency.record(receivedNanos - sentNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 清除上报时间早于指定时间的数据帧, 之后收到的对应车辆信息计为无法对应
+     *
+     * @param beforeNanos 时间({@link System#nanoTime()})
+     */
+    public void evict(long beforeNanos) {
+        pending.values().removeIf(sentNanos -> sentNanos < beforeNanos);
+    }
+
+    /**
+     * 统计客户端未收到最后位置的车辆数量
+     *
+     * @param client 客户端
+     * @return 车辆数量
+     */
+    public int countLost(SimulatedClient client) {
+        int lost = 0;
+        for (Map.Entry<String, String> entry : lastSent.entrySet()) {
+            if (!entry.getValue().equals(client.getLastReceived(entry.getKey()))) {
+                lost++;
+            }
+        }
+        return lost;
+    }
+
+    public int getVehicleCount() {
+        return lastSent.size();
+    }
+
+    /**
+     * 获取延迟统计
+     *
+     * @return 收到数量、无法对应数量、平均值、最大值及各百分位延迟(毫秒)
+     */
+    public Map<String, Object> getLatency() {
+        HistogramSnapshot snapshot = latency.takeSnapshot();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("delivered", delivered.sum());
+        stats.put("unmatched", unmatched.sum());
+        stats.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+        stats.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            stats.put("p" + String.valueOf(value.percentile() * 100).replaceAll("\\.0$", "") + "Ms", value.value(TimeUnit.MILLISECONDS));
+        }
+        return stats;
+    }
+}
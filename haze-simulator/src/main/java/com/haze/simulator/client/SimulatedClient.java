@@ -0,0 +1,113 @@
+package com.haze.simulator.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.haze.simulator.fleet.BusFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.websocket.ClientEndpoint;
+import javax.websocket.CloseReason;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模拟websocket客户端, 使用默认(完整车辆信息)推送协议, 收到的车辆信息交由{@link DeliveryTracker}统计延迟
+ */
+@ClientEndpoint
+public class SimulatedClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulatedClient.class);
+
+    private final int id;
+
+    private final DeliveryTracker tracker;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * vin码 -> 最后收到的投递标识
+     */
+    private final Map<String, String> lastReceived = new ConcurrentHashMap<>();
+
+    private final LongAdder messages = new LongAdder();
+
+    private volatile Session session;
+
+    private volatile boolean closed = false;
+
+    SimulatedClient(int id, DeliveryTracker tracker, ObjectMapper objectMapper) {
+        this.id = id;
+        this.tracker = tracker;
+        this.objectMapper = objectMapper;
+    }
+
+    @OnOpen
+    public void onOpen(Session session) {
+        this.session = session;
+    }
+
+    @OnMessage
+    public void onMessage(String text) {
+        long receivedNanos = System.nanoTime();
+        messages.increment();
+        try {
+            JsonNode node = objectMapper.readTree(text);
+            String vin = node.path("vin").asText(null);
+            String x = node.path("x").asText(null);
+            String y = node.path("y").asText(null);
+            if (vin == null || x == null || y == null) {
+                return;
+            }
+            String key = BusFrame.deliveryKey(vin, x, y);
+            lastReceived.put(vin, key);
+            tracker.delivered(key, receivedNanos);
+        } catch (IOException e) {
+            logger.warn("无法解析车辆信息, client={}, text={}", id, text);
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session, CloseReason reason) {
+        closed = true;
+        logger.debug("连接已关闭, client={}, reason={}", id, reason);
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error) {
+        logger.warn("连接异常, client={}", id, error);
+    }
+
+    String getLastReceived(String vin) {
+        return lastReceived.get(vin);
+    }
+
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * 是否在运行期间被关闭
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        Session s = session;
+        if (s != null && s.isOpen()) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                logger.debug("关闭连接失败, client={}", id, e);
+            }
+        }
+    }
+}
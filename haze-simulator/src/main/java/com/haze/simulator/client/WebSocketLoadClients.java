@@ -0,0 +1,80 @@
+package com.haze.simulator.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.websocket.ContainerProvider;
+import javax.websocket.DeploymentException;
+import javax.websocket.WebSocketContainer;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 模拟websocket客户端集合, 所有客户端共用一个websocket容器并以同一用户名连接vsail
+ * <p>
+ *     默认以admin连接, 可查看所有车辆; 以其他用户连接时只能收到该用户所属线路的车辆, 需要同时配置simulator.fleet.line-group-ids。
+ * </p>
+ */
+@Component
+public class WebSocketLoadClients {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketLoadClients.class);
+
+    private final DeliveryTracker tracker;
+
+    private final ObjectMapper objectMapper;
+
+    private final URI uri;
+
+    private final int size;
+
+    private final List<SimulatedClient> clients = new ArrayList<>();
+
+    private int connectFailures = 0;
+
+    public WebSocketLoadClients(DeliveryTracker tracker, ObjectMapper objectMapper,
+                                @Value("${simulator.websocket-url:ws://localhost/websocket/admin}") String websocketUrl,
+                                @Value("${simulator.clients:50}") int size) {
+        this.tracker = tracker;
+        this.objectMapper = objectMapper;
+        this.uri = URI.create(websocketUrl);
+        this.size = size;
+    }
+
+    /**
+     * 建立全部客户端连接, 连接失败的客户端不再重试
+     */
+    public void connect() {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(1024 * 1024);
+        for (int i = 0; i < size; i++) {
+            SimulatedClient client = new SimulatedClient(i, tracker, objectMapper);
+            try {
+                container.connectToServer(client, uri);
+                clients.add(client);
+            } catch (DeploymentException | IOException e) {
+                connectFailures++;
+                logger.warn("websocket连接失败, client={}, uri={}, error={}", i, uri, e.getMessage());
+            }
+        }
+        logger.info("websocket客户端连接完成, connected={}, failed={}", clients.size(), connectFailures);
+    }
+
+    public void close() {
+        clients.forEach(SimulatedClient::close);
+    }
+
+    public List<SimulatedClient> getClients() {
+        return Collections.unmodifiableList(clients);
+    }
+
+    public int getConnectFailures() {
+        return connectFailures;
+    }
+}
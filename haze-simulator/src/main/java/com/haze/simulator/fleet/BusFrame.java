@@ -0,0 +1,91 @@
+package com.haze.simulator.fleet;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.List;
+
+/**
+ * 模拟车辆在某一时刻上报的数据帧, 序列化格式与vsail批量接口的数据帧一致:
+ * vin码, 采集时间毫秒数, x, y, 是否火警(0/1), 是否故障(0/1), 传感器数组
+ */
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"vin", "time", "x", "y", "fire", "error", "sensors"})
+public class BusFrame {
+
+    private final String vin;
+
+    private final long time;
+
+    private final String x;
+
+    private final String y;
+
+    private final int fire;
+
+    private final int error;
+
+    private final List<SensorReading> sensors;
+
+    /**
+     * 是否为下线帧, 下线帧不经批量接口上报
+     */
+    private final boolean offline;
+
+    public BusFrame(String vin, long time, String x, String y, boolean fire, boolean error, List<SensorReading> sensors, boolean offline) {
+        this.vin = vin;
+        this.time = time;
+        this.x = x;
+        this.y = y;
+        this.fire = fire ? 1 : 0;
+        this.error = error ? 1 : 0;
+        this.sensors = sensors;
+        this.offline = offline;
+    }
+
+    public String getVin() {
+        return vin;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getX() {
+        return x;
+    }
+
+    public String getY() {
+        return y;
+    }
+
+    public int getFire() {
+        return fire;
+    }
+
+    public int getError() {
+        return error;
+    }
+
+    public List<SensorReading> getSensors() {
+        return sensors;
+    }
+
+    @JsonIgnore
+    public boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * 数据帧的投递标识, websocket客户端收到的车辆信息通过vin码和坐标与已发送的数据帧对应
+     */
+    @JsonIgnore
+    public String getDeliveryKey() {
+        return deliveryKey(vin, x, y);
+    }
+
+    public static String deliveryKey(String vin, String x, String y) {
+        return vin + '|' + x + '|' + y;
+    }
+}
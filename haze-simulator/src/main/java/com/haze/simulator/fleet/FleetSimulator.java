@@ -0,0 +1,113 @@
+package com.haze.simulator.fleet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 模拟车队
+ * <p>
+ *     按配置的线路数量在城市中心附近生成线路, 车辆依次分配到各线路并从线路上的随机位置出发。每个周期所有在线车辆前进一段距离,
+ *     并按配置的概率发生火警、故障及下线, 火警和故障持续若干周期后恢复, 下线车辆若干周期后重新上线。
+ *     使用固定随机种子, 相同配置的两次运行产生相同的数据。
+ * </p>
+ */
+@Component
+public class FleetSimulator {
+
+    /**
+     * 默认线路机构ID起始值, 避免与实际机构冲突
+     */
+    private static final long SYNTHETIC_LINE_GROUP_ID = 900000L;
+
+    /**
+     * 公交车平均速度约30km/h, 折合每秒约0.000075度
+     */
+    private static final double BUS_SPEED = 0.000075;
+
+    private final Random random;
+
+    private final List<SimulatedBus> buses;
+
+    private final double fireProbability;
+
+    private final double breakDownProbability;
+
+    private final double offProbability;
+
+    private final int eventTicks;
+
+    private final int offTicks;
+
+    public FleetSimulator(@Value("${simulator.fleet.size:1000}") int size,
+                          @Value("${simulator.fleet.vin-prefix:SIMBUS}") String vinPrefix,
+                          @Value("${simulator.fleet.line-group-ids:}") List<Long> lineGroupIds,
+                          @Value("${simulator.fleet.lines:50}") int lines,
+                          @Value("${simulator.fleet.center-x:116.397}") double centerX,
+                          @Value("${simulator.fleet.center-y:39.909}") double centerY,
+                          @Value("${simulator.fleet.radius:0.2}") double radius,
+                          @Value("${simulator.fleet.fire-probability:0.0002}") double fireProbability,
+                          @Value("${simulator.fleet.break-down-probability:0.0005}") double breakDownProbability,
+                          @Value("${simulator.fleet.off-probability:0.0005}") double offProbability,
+                          @Value("${simulator.fleet.event-ticks:30}") int eventTicks,
+                          @Value("${simulator.fleet.off-ticks:60}") int offTicks,
+                          @Value("${simulator.fleet.seed:20191120}") long seed) {
+        this.random = new Random(seed);
+        this.fireProbability = fireProbability;
+        this.breakDownProbability = breakDownProbability;
+        this.offProbability = offProbability;
+        this.eventTicks = Math.max(eventTicks, 1);
+        this.offTicks = Math.max(offTicks, 1);
+        List<Route> routes = new ArrayList<>();
+        int routeCount = lineGroupIds.isEmpty() ? Math.max(lines, 1) : lineGroupIds.size();
+        for (int i = 0; i < routeCount; i++) {
+            long lineGroupId = lineGroupIds.isEmpty() ? SYNTHETIC_LINE_GROUP_ID + i : lineGroupIds.get(i);
+            routes.add(Route.random(lineGroupId, centerX, centerY, radius, random));
+        }
+        List<SimulatedBus> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String vin = String.format("%s%011d", vinPrefix, i);
+            list.add(new SimulatedBus(i, vin, routes.get(i % routes.size()), BUS_SPEED * (0.8 + random.nextDouble() * 0.4), random));
+        }
+        this.buses = Collections.unmodifiableList(list);
+    }
+
+    public List<SimulatedBus> getBuses() {
+        return buses;
+    }
+
+    /**
+     * 推进一个周期
+     *
+     * @param time    采集时间毫秒数
+     * @param seconds 周期秒数
+     * @return 本周期所有车辆的数据帧, 包括刚下线车辆的下线帧
+     */
+    public List<BusFrame> tick(long time, double seconds) {
+        List<BusFrame> frames = new ArrayList<>(buses.size());
+        for (SimulatedBus bus : buses) {
+            if (bus.isOnline()) {
+                if (random.nextDouble() < offProbability) {
+                    bus.goOffline(offTicks / 2 + random.nextInt(offTicks));
+                    frames.add(bus.offlineFrame(time));
+                    continue;
+                }
+                if (!bus.isFire() && random.nextDouble() < fireProbability) {
+                    bus.startFire(eventTicks);
+                }
+                if (!bus.isBreakDown() && random.nextDouble() < breakDownProbability) {
+                    bus.startBreakDown(eventTicks);
+                }
+            }
+            BusFrame frame = bus.step(time, seconds, random);
+            if (frame != null) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+}
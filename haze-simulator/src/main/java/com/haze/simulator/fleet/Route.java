@@ -0,0 +1,83 @@
+package com.haze.simulator.fleet;
+
+import java.util.Random;
+
+/**
+ * 模拟线路, 由若干途经点组成的闭合折线, 车辆沿折线循环行驶
+ */
+public class Route {
+
+    private final long lineGroupId;
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    /**
+     * 起点至每个途经点的累计长度, 最后一个元素为整条线路长度
+     */
+    private final double[] distances;
+
+    private Route(long lineGroupId, double[] xs, double[] ys) {
+        this.lineGroupId = lineGroupId;
+        this.xs = xs;
+        this.ys = ys;
+        this.distances = new double[xs.length + 1];
+        for (int i = 0; i < xs.length; i++) {
+            int next = (i + 1) % xs.length;
+            distances[i + 1] = distances[i] + Math.hypot(xs[next] - xs[i], ys[next] - ys[i]);
+        }
+    }
+
+    /**
+     * 在城市中心附近随机生成线路, 途经点沿中心点周围的不规则环线分布
+     *
+     * @param lineGroupId 线路机构ID
+     * @param centerX     城市中心经度
+     * @param centerY     城市中心纬度
+     * @param radius      城市半径(度)
+     * @param random      随机数
+     * @return 模拟线路
+     */
+    public static Route random(long lineGroupId, double centerX, double centerY, double radius, Random random) {
+        int points = 8 + random.nextInt(8);
+        double originX = centerX + (random.nextDouble() * 2 - 1) * radius * 0.5;
+        double originY = centerY + (random.nextDouble() * 2 - 1) * radius * 0.5;
+        double size = radius * (0.2 + random.nextDouble() * 0.3);
+        double[] xs = new double[points];
+        double[] ys = new double[points];
+        for (int i = 0; i < points; i++) {
+            double angle = 2 * Math.PI * i / points;
+            double r = size * (0.6 + random.nextDouble() * 0.4);
+            xs[i] = originX + r * Math.cos(angle);
+            ys[i] = originY + r * Math.sin(angle);
+        }
+        return new Route(lineGroupId, xs, ys);
+    }
+
+    public long getLineGroupId() {
+        return lineGroupId;
+    }
+
+    public double getLength() {
+        return distances[xs.length];
+    }
+
+    /**
+     * 获取距起点指定行驶距离处的坐标
+     *
+     * @param distance 行驶距离(度), 超过线路长度时从起点继续
+     * @return [x, y]
+     */
+    public double[] position(double distance) {
+        double d = distance % getLength();
+        int i = 0;
+        while (i < xs.length - 1 && distances[i + 1] < d) {
+            i++;
+        }
+        int next = (i + 1) % xs.length;
+        double segment = distances[i + 1] - distances[i];
+        double t = segment == 0 ? 0 : (d - distances[i]) / segment;
+        return new double[]{xs[i] + (xs[next] - xs[i]) * t, ys[i] + (ys[next] - ys[i]) * t};
+    }
+}
@@ -0,0 +1,65 @@
+package com.haze.simulator.fleet;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * 传感器读数, 序列化格式与批量接口的传感器数组一致: 编号, 温度, 一氧化碳浓度, 火警位, 故障位, 状态
+ */
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"sn", "temp", "concen", "fire", "error", "state"})
+public class SensorReading {
+
+    private final int sn;
+
+    private final int temp;
+
+    private final int concen;
+
+    private final String fire;
+
+    private final String error;
+
+    private final String state;
+
+    public SensorReading(int sn, int temp, int concen, String fire, String error, String state) {
+        this.sn = sn;
+        this.temp = temp;
+        this.concen = concen;
+        this.fire = fire;
+        this.error = error;
+        this.state = state;
+    }
+
+    public int getSn() {
+        return sn;
+    }
+
+    public int getTemp() {
+        return temp;
+    }
+
+    public int getConcen() {
+        return concen;
+    }
+
+    public String getFire() {
+        return fire;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * 转换为网关写入redis的单引号json格式
+     */
+    public String toGatewayJson() {
+        return "{'sn':" + sn + ",'fire':'" + fire + "','error':'" + error + "','concen':" + concen
+                + ",'temp':" + temp + ",'state':'" + state + "'}";
+    }
+}
@@ -0,0 +1,152 @@
+package com.haze.simulator.fleet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 模拟车辆, 沿所属线路行驶并产生传感器读数
+ * <p>
+ *     车辆状态只由{@link FleetSimulator}的调度线程修改, 本身不是线程安全的。
+ * </p>
+ */
+public class SimulatedBus {
+
+    public static final int SENSOR_COUNT = 6;
+
+    private static final String NORMAL_FIRE_BITS = "0000";
+
+    private static final String NORMAL_ERROR_BITS = "00000";
+
+    private final int index;
+
+    private final String vin;
+
+    private final Route route;
+
+    /**
+     * 每秒行驶距离(度)
+     */
+    private final double speed;
+
+    private final int[] baseTemps = new int[SENSOR_COUNT];
+
+    private double distance;
+
+    private boolean online = true;
+
+    /**
+     * 距离状态结束还需的周期数, 分别对应下线、火警及故障
+     */
+    private int offTicks;
+
+    private int fireTicks;
+
+    private int breakDownTicks;
+
+    SimulatedBus(int index, String vin, Route route, double speed, Random random) {
+        this.index = index;
+        this.vin = vin;
+        this.route = route;
+        this.speed = speed;
+        this.distance = random.nextDouble() * route.getLength();
+        for (int i = 0; i < SENSOR_COUNT; i++) {
+            baseTemps[i] = 20 + random.nextInt(10);
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getVin() {
+        return vin;
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public boolean isFire() {
+        return fireTicks > 0;
+    }
+
+    public boolean isBreakDown() {
+        return breakDownTicks > 0;
+    }
+
+    void goOffline(int ticks) {
+        online = false;
+        offTicks = ticks;
+        fireTicks = 0;
+        breakDownTicks = 0;
+    }
+
+    void startFire(int ticks) {
+        fireTicks = ticks;
+    }
+
+    void startBreakDown(int ticks) {
+        breakDownTicks = ticks;
+    }
+
+    /**
+     * 推进一个周期
+     *
+     * @param time     采集时间毫秒数
+     * @param seconds  周期秒数
+     * @param random   随机数
+     * @return 本周期上报的数据帧, 车辆刚下线时返回下线帧, 持续下线时返回null
+     */
+    BusFrame step(long time, double seconds, Random random) {
+        if (!online) {
+            if (--offTicks > 0) {
+                return null;
+            }
+            online = true;
+        }
+        //停站及路况造成的速度波动
+        distance += speed * seconds * (0.3 + random.nextDouble() * 0.9);
+        double[] position = route.position(distance);
+        if (fireTicks > 0) {
+            fireTicks--;
+        }
+        if (breakDownTicks > 0) {
+            breakDownTicks--;
+        }
+        return new BusFrame(vin, time, format(position[0]), format(position[1]), isFire(), isBreakDown(), sensors(random), false);
+    }
+
+    /**
+     * 下线帧, 坐标为最后位置
+     */
+    BusFrame offlineFrame(long time) {
+        double[] position = route.position(distance);
+        return new BusFrame(vin, time, format(position[0]), format(position[1]), false, false, null, true);
+    }
+
+    private List<SensorReading> sensors(Random random) {
+        List<SensorReading> sensors = new ArrayList<>(SENSOR_COUNT);
+        //火警时第一个传感器温度及一氧化碳浓度升高, 故障时最后一个传感器报故障
+        for (int i = 0; i < SENSOR_COUNT; i++) {
+            boolean burning = isFire() && i == 0;
+            boolean broken = isBreakDown() && i == SENSOR_COUNT - 1;
+            int temp = baseTemps[i] + random.nextInt(3) - 1 + (burning ? 60 + random.nextInt(40) : 0);
+            int concen = 5 + random.nextInt(5) + (burning ? 200 + random.nextInt(100) : 0);
+            sensors.add(new SensorReading(i + 1, temp, concen,
+                    burning ? "0001" : NORMAL_FIRE_BITS,
+                    broken ? "00001" : NORMAL_ERROR_BITS,
+                    broken ? "2" : "1"));
+        }
+        return sensors;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+}
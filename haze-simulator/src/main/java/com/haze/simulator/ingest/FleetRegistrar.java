@@ -0,0 +1,143 @@
+package com.haze.simulator.ingest;
+
+import com.haze.simulator.fleet.BusFrame;
+import com.haze.simulator.fleet.SensorReading;
+import com.haze.simulator.fleet.SimulatedBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模拟车辆登记, 按网关格式在redis中写入车辆缓存、加入车辆vin码集合并发布实时数据通知, vsail收到通知后将车辆加入内存车辆状态
+ * <p>
+ *     两种上报方式都需要先登记, 批量接口只处理已登记的车辆。键名及频道与vsail的VsailConstants保持一致。
+ * </p>
+ */
+@Component
+public class FleetRegistrar {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetRegistrar.class);
+
+    static final String BUS_INFO_KEY_PREFFIX = "bus_";
+
+    static final String BUS_VIN_SET_KEY = "vsail:bus:vins";
+
+    static final String BUS_TELEMETRY_CHANNEL = "vsail:bus:telemetry";
+
+    private static final DateTimeFormatter STIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final StringRedisTemplate redisTemplate;
+
+    public FleetRegistrar(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 登记模拟车辆
+     *
+     * @param buses 模拟车辆
+     */
+    public void register(List<SimulatedBus> buses) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (SimulatedBus bus : buses) {
+                    ops.opsForHash().putAll(BUS_INFO_KEY_PREFFIX + bus.getVin(), registerHash(bus));
+                    ops.opsForSet().add(BUS_VIN_SET_KEY, bus.getVin());
+                }
+                return null;
+            }
+        });
+        publish(buses);
+        logger.info("模拟车辆登记完成, size={}", buses.size());
+    }
+
+    /**
+     * 删除模拟车辆的redis缓存及vin码集合中的记录, vsail内存中的车辆状态在服务重启后清除
+     *
+     * @param buses 模拟车辆
+     */
+    public void unregister(List<SimulatedBus> buses) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (SimulatedBus bus : buses) {
+                    ops.delete(BUS_INFO_KEY_PREFFIX + bus.getVin());
+                    ops.opsForSet().remove(BUS_VIN_SET_KEY, bus.getVin());
+                }
+                return null;
+            }
+        });
+        logger.info("模拟车辆已删除, size={}", buses.size());
+    }
+
+    private void publish(List<SimulatedBus> buses) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (SimulatedBus bus : buses) {
+                    ops.convertAndSend(BUS_TELEMETRY_CHANNEL, bus.getVin());
+                }
+                return null;
+            }
+        });
+    }
+
+    private static Map<String, String> registerHash(SimulatedBus bus) {
+        long lineGroupId = bus.getRoute().getLineGroupId();
+        Map<String, String> hash = new HashMap<>();
+        hash.put("id", String.valueOf(900000000L + bus.getIndex()));
+        hash.put("vin", bus.getVin());
+        hash.put("busNum", "SIM" + bus.getIndex());
+        hash.put("drivingNum", "模A" + (10000 + bus.getIndex()));
+        hash.put("modelName", "SIM6123");
+        hash.put("factoryName", "模拟车辆");
+        hash.put("productNum", "SIM" + bus.getIndex());
+        hash.put("rootGroupName", "模拟公交公司");
+        hash.put("lineGroupId", String.valueOf(lineGroupId));
+        hash.put("lineGroupName", "模拟线路" + lineGroupId);
+        hash.put("state", "正常");
+        return hash;
+    }
+
+    /**
+     * 转换为网关写入车辆缓存的字段
+     */
+    static Map<String, String> frameHash(BusFrame frame) {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("eventCode", frame.isOffline() ? "2" : "3");
+        hash.put("stime", STIME_FORMATTER.format(Instant.ofEpochMilli(frame.getTime())));
+        hash.put("x", frame.getX());
+        hash.put("y", frame.getY());
+        if (!frame.isOffline()) {
+            hash.put("isFire", String.valueOf(frame.getFire()));
+            hash.put("isError", String.valueOf(frame.getError()));
+            StringBuilder sensores = new StringBuilder("[");
+            for (SensorReading sensor : frame.getSensors()) {
+                if (sensores.length() > 1) {
+                    sensores.append(',');
+                }
+                sensores.append(sensor.toGatewayJson());
+            }
+            hash.put("sensores", sensores.append(']').toString());
+        }
+        return hash;
+    }
+}
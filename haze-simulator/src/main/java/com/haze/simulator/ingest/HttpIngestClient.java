@@ -0,0 +1,78 @@
+package com.haze.simulator.ingest;
+
+import com.haze.simulator.fleet.BusFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按批量网关方式上报: 数据帧按批次提交至vsail批量接口, 以接口返回的accepted计算已接受数量
+ * <p>
+ *     下线帧不上报, 由vsail心跳超时将车辆置为下线。
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "simulator.ingest", name = "mode", havingValue = "http", matchIfMissing = true)
+public class HttpIngestClient implements IngestClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpIngestClient.class);
+
+    private final RestTemplate restTemplate;
+
+    private final String ingestUrl;
+
+    private final int batchSize;
+
+    public HttpIngestClient(RestTemplateBuilder restTemplateBuilder,
+                            @Value("${simulator.server-url:http://localhost}") String serverUrl,
+                            @Value("${simulator.ingest.batch-size:500}") int batchSize) {
+        this.restTemplate = restTemplateBuilder.build();
+        this.ingestUrl = serverUrl + "/v/public/ingest";
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    @Override
+    public int send(List<BusFrame> frames) {
+        int accepted = 0;
+        List<BusFrame> batch = new ArrayList<>(batchSize);
+        for (BusFrame frame : frames) {
+            if (frame.isOffline()) {
+                continue;
+            }
+            batch.add(frame);
+            if (batch.size() == batchSize) {
+                accepted += post(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            accepted += post(batch);
+        }
+        return accepted;
+    }
+
+    @Override
+    public String getMode() {
+        return "http";
+    }
+
+    private int post(List<BusFrame> batch) {
+        try {
+            Map<?, ?> result = restTemplate.postForObject(ingestUrl, batch, Map.class);
+            Object accepted = result != null ? result.get("accepted") : null;
+            return accepted instanceof Number ? ((Number) accepted).intValue() : 0;
+        } catch (RestClientException e) {
+            logger.warn("批量上报失败, size={}, error={}", batch.size(), e.getMessage());
+            return 0;
+        }
+    }
+}
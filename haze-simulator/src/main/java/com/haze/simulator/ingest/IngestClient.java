@@ -0,0 +1,28 @@
+package com.haze.simulator.ingest;
+
+import com.haze.simulator.fleet.BusFrame;
+
+import java.util.List;
+
+/**
+ * 实时数据上报方式, 由配置项simulator.ingest.mode选择
+ * <ul>
+ *     <li>http 通过vsail批量接口/v/public/ingest上报, 对应批量网关</li>
+ *     <li>redis 直接写入车辆redis缓存并在实时数据通知频道发布vin码, 对应原有网关</li>
+ * </ul>
+ */
+public interface IngestClient {
+
+    /**
+     * 上报一个周期的数据帧
+     *
+     * @param frames 数据帧集合
+     * @return 被服务端接受的数据帧数量
+     */
+    int send(List<BusFrame> frames);
+
+    /**
+     * 上报方式名称, 用于报告
+     */
+    String getMode();
+}
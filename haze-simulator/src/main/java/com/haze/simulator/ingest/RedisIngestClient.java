@@ -0,0 +1,50 @@
+package com.haze.simulator.ingest;
+
+import com.haze.simulator.fleet.BusFrame;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 按原有网关方式上报: 写入车辆redis缓存后在实时数据通知频道发布vin码, 每个周期的全部命令通过管道一次发送
+ * <p>
+ *     下线帧将车辆缓存的eventCode置为下线, 与网关行为一致。redis不返回vsail的处理结果, 所有数据帧均计为已接受。
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "simulator.ingest", name = "mode", havingValue = "redis")
+public class RedisIngestClient implements IngestClient {
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisIngestClient(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public int send(List<BusFrame> frames) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (BusFrame frame : frames) {
+                    ops.opsForHash().putAll(FleetRegistrar.BUS_INFO_KEY_PREFFIX + frame.getVin(), FleetRegistrar.frameHash(frame));
+                    ops.convertAndSend(FleetRegistrar.BUS_TELEMETRY_CHANNEL, frame.getVin());
+                }
+                return null;
+            }
+        });
+        return frames.size();
+    }
+
+    @Override
+    public String getMode() {
+        return "redis";
+    }
+}
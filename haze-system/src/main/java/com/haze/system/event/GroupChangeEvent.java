@@ -0,0 +1,21 @@
+package com.haze.system.event;
+
+import org.springframework.context.ApplicationEvent;
+
+
+/**
+ * 机构新增、修改或删除事件, 在事务提交后发布
+ */
+public class GroupChangeEvent extends ApplicationEvent {
+
+    private Long groupId;
+
+    public GroupChangeEvent(Long groupId) {
+        super(groupId);
+        this.groupId = groupId;
+    }
+
+    public Long getGroupId() {
+        return groupId;
+    }
+}
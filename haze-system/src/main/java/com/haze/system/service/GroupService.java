@@ -7,12 +7,16 @@ import java.util.Objects;
 import java.util.Set;
 
 import com.haze.core.service.AbstractBaseService;
+import com.haze.core.spring.SpringContextUtils;
 import com.haze.system.dao.GroupDao;
 import com.haze.system.entity.Group;
 import com.haze.system.entity.User;
+import com.haze.system.event.GroupChangeEvent;
 import com.haze.web.utils.TreeNode;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.haze.system.utils.Status;
 
@@ -32,6 +36,55 @@ public class GroupService extends AbstractBaseService<Group, Long> {
 		this.groupDao = groupDao;
 	}
 
+	@Override
+	@Transactional(rollbackFor=Exception.class)
+	public Group save(Group group) throws Exception {
+		Group saved = super.save(group);
+		publishGroupChange(saved.getId());
+		return saved;
+	}
+
+	@Override
+	@Transactional(rollbackFor=Exception.class)
+	public void delete(Group group) throws Exception {
+		super.delete(group);
+		publishGroupChange(group.getId());
+	}
+
+	@Override
+	@Transactional(rollbackFor=Exception.class)
+	public void deleteIds(Long[] ids) throws Exception {
+		super.deleteIds(ids);
+		for (Long id : ids) {
+			publishGroupChange(id);
+		}
+	}
+
+	@Override
+	@Transactional(rollbackFor=Exception.class)
+	public void deleteById(Long id) throws Exception {
+		super.deleteById(id);
+		publishGroupChange(id);
+	}
+
+	/**
+	 * 发布机构变化事件, 存在事务时在事务提交后发布, 避免监听方在提交前按旧机构结构重新加载缓存
+	 * @param groupId 机构ID
+	 */
+	private void publishGroupChange(Long groupId) {
+		GroupChangeEvent event = new GroupChangeEvent(groupId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					SpringContextUtils.publishEvent(event);
+				}
+			});
+		} else {
+			SpringContextUtils.publishEvent(event);
+		}
+	}
+
     @Transactional(readOnly = true)
     public List<Group> getTopGroups() {
         return groupDao.getTopGroups();
@@ -0,0 +1,120 @@
+package com.haze.websocket;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * 已编码的websocket消息
+ * <p>
+ *     消息内容只编码一次, 同一对象可以放入多个连接的发送队列, 各连接共享同一份内容, 避免每个接收者重复序列化。
+ *     消息为文本消息或二进制消息之一, 二进制消息发送时各连接使用独立的读取位置, 不会相互影响。
+ * </p>
+ * <p>
+ *     优先消息(如火警)在发送队列中先于普通消息发送, 不会因普通消息积压而被丢弃。优先消息之间不合并,
+ *     但会移除队列中合并键相同的普通消息, 避免较早的普通消息在优先消息之后发送, 覆盖客户端的最新状态。
+ *     指定了数据接收时间的消息在发送完成时记录从数据到达至发送完成的延迟。
+ * </p>
+ */
+public final class EncodedMessage {
+
+    /**
+     * 消息内容
+     */
+    private final String text;
+
+    /**
+     * 二进制消息内容
+     */
+    private final ByteBuffer binary;
+
+    /**
+     * 合并键, 发送队列中合并键相同的消息只保留最新一条, 为null时不合并
+     */
+    private final String coalesceKey;
+
+    /**
+     * 是否优先发送
+     */
+    private final boolean priority;
+
+    /**
+     * 消息对应数据的接收时间({@link System#nanoTime()}), 为0时不记录延迟
+     */
+    private final long receivedNanos;
+
+    public EncodedMessage(String text, String coalesceKey) {
+        this(text, coalesceKey, false, 0L);
+    }
+
+    /**
+     * 创建文本消息
+     *
+     * @param text          消息内容
+     * @param coalesceKey   合并键, 优先消息只用于移除合并键相同的普通消息
+     * @param priority      是否优先发送
+     * @param receivedNanos 数据接收时间, 为0时不记录延迟
+     */
+    public EncodedMessage(String text, String coalesceKey, boolean priority, long receivedNanos) {
+        this.text = Objects.requireNonNull(text, "消息内容不能为空");
+        this.binary = null;
+        this.coalesceKey = coalesceKey;
+        this.priority = priority;
+        this.receivedNanos = receivedNanos;
+    }
+
+    public EncodedMessage(ByteBuffer binary, String coalesceKey) {
+        this(binary, coalesceKey, 0L);
+    }
+
+    /**
+     * 创建二进制消息
+     *
+     * @param binary        消息内容
+     * @param coalesceKey   合并键
+     * @param receivedNanos 数据接收时间, 为0时不记录延迟
+     */
+    public EncodedMessage(ByteBuffer binary, String coalesceKey, long receivedNanos) {
+        this.text = null;
+        this.binary = Objects.requireNonNull(binary, "消息内容不能为空").asReadOnlyBuffer();
+        this.coalesceKey = coalesceKey;
+        this.priority = false;
+        this.receivedNanos = receivedNanos;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * 获取二进制消息内容, 每次调用返回独立读取位置的只读缓冲区
+     */
+    public ByteBuffer getBinary() {
+        return binary != null ? binary.duplicate() : null;
+    }
+
+    public boolean isBinary() {
+        return binary != null;
+    }
+
+    public String getCoalesceKey() {
+        return coalesceKey;
+    }
+
+    public boolean isPriority() {
+        return priority;
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedMessage{" +
+                "coalesceKey='" + coalesceKey + '\'' +
+                ", binary=" + isBinary() +
+                ", priority=" + priority +
+                ", length=" + (binary != null ? binary.remaining() : text.length()) +
+                '}';
+    }
+}
@@ -0,0 +1,203 @@
+package com.haze.websocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * websocket连接发送队列
+ * <p>
+ *     每个连接一个队列, 消息通过{@code session.getAsyncRemote()}异步发送, 同一时刻只有一条消息在发送中,
+ *     发送线程不会因客户端网络慢而阻塞。队列深度有上限, 队列已满时丢弃最早的消息。
+ * </p>
+ * <p>
+ *     带合并键的消息(如车辆vin码)在队列中只保留最新一条, 网络慢的客户端收到的是最新状态而不是积压的历史消息。
+ * </p>
+ * <p>
+ *     优先消息进入单独的队列, 当前消息发送完成后先于所有普通消息发送。
+ *     优先消息入队时移除合并键相同的待发送普通消息, 该消息早于优先消息, 在优先消息之后发送会使客户端回到旧状态。
+ * </p>
+ * <p>
+ *     发送结果、丢弃、合并数量以及所有带接收时间消息的发送延迟记录到{@link WebSocketMetrics}, 优先消息延迟以priority=true区分。
+ * </p>
+ */
+public class SessionSendQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionSendQueue.class);
+
+    private final Session session;
+
+    private final int maxDepth;
+
+    /**
+     * 待发送消息 合并键 -> 消息内容
+     */
+    private final LinkedHashMap<String, EncodedMessage> pending = new LinkedHashMap<>();
+
+    /**
+     * 待发送优先消息
+     */
+    private final ArrayDeque<EncodedMessage> priorityPending = new ArrayDeque<>();
+
+    /**
+     * 发送中的消息
+     */
+    private EncodedMessage inFlight;
+
+    private boolean sending = false;
+
+    private boolean closed = false;
+
+    private long sequence = 0;
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong prioritySent = new AtomicLong();
+
+    public SessionSendQueue(Session session, int maxDepth) {
+        this.session = session;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * 添加待发送消息
+     *
+     * @param message 已编码消息, 合并键为null时不合并
+     */
+    public void offer(EncodedMessage message) {
+        String coalesceKey = message.getCoalesceKey();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (message.isPriority()) {
+                if (priorityPending.size() >= maxDepth) {
+                    priorityPending.poll();
+                    dropped.incrementAndGet();
+                    WebSocketMetrics.DROPPED.increment();
+                }
+                priorityPending.add(message);
+                if (coalesceKey != null && pending.remove(coalesceKey) != null) {
+                    coalesced.incrementAndGet();
+                    WebSocketMetrics.COALESCED.increment();
+                }
+            } else if (coalesceKey != null && pending.containsKey(coalesceKey)) {
+                pending.put(coalesceKey, message);
+                coalesced.incrementAndGet();
+                WebSocketMetrics.COALESCED.increment();
+            } else {
+                if (pending.size() >= maxDepth) {
+                    Iterator<Map.Entry<String, EncodedMessage>> it = pending.entrySet().iterator();
+                    it.next();
+                    it.remove();
+                    dropped.incrementAndGet();
+                    WebSocketMetrics.DROPPED.increment();
+                }
+                pending.put(coalesceKey != null ? coalesceKey : "#" + (sequence++), message);
+            }
+            if (sending) {
+                return;
+            }
+            sending = true;
+        }
+        sendNext();
+    }
+
+    /**
+     * 关闭队列并丢弃未发送消息
+     */
+    public synchronized void close() {
+        closed = true;
+        pending.clear();
+        priorityPending.clear();
+    }
+
+    private void sendNext() {
+        EncodedMessage message;
+        synchronized (this) {
+            if (closed || (priorityPending.isEmpty() && pending.isEmpty())) {
+                sending = false;
+                inFlight = null;
+                return;
+            }
+            message = priorityPending.poll();
+            if (message == null) {
+                Iterator<Map.Entry<String, EncodedMessage>> it = pending.entrySet().iterator();
+                message = it.next().getValue();
+                it.remove();
+            }
+            inFlight = message;
+        }
+        try {
+            if (message.isBinary()) {
+                session.getAsyncRemote().sendBinary(message.getBinary(), this::onResult);
+            } else {
+                session.getAsyncRemote().sendText(message.getText(), this::onResult);
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            WebSocketMetrics.FAILED.increment();
+            logger.error("[WebSocketServer] 信息发送失败, sessionId={}, e={}", session.getId(), e);
+            sendNext();
+        }
+    }
+
+    private void onResult(SendResult result) {
+        EncodedMessage message;
+        synchronized (this) {
+            message = inFlight;
+        }
+        if (result.isOK()) {
+            sent.incrementAndGet();
+            WebSocketMetrics.SENT.increment();
+            if (message != null && message.getReceivedNanos() != 0L) {
+                WebSocketMetrics.recordLatency(message.isPriority(), System.nanoTime() - message.getReceivedNanos());
+            }
+            if (message != null && message.isPriority()) {
+                prioritySent.incrementAndGet();
+            }
+        } else {
+            failed.incrementAndGet();
+            WebSocketMetrics.FAILED.increment();
+            logger.warn("[WebSocketServer] 信息发送失败, sessionId={}, e={}", session.getId(), result.getException());
+        }
+        sendNext();
+    }
+
+    public synchronized int getDepth() {
+        return pending.size() + priorityPending.size();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getPrioritySent() {
+        return prioritySent.get();
+    }
+}
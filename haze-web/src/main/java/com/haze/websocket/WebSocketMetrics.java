@@ -0,0 +1,83 @@
+package com.haze.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * websocket发送指标
+ * <p>
+ *     连接由websocket容器创建而不是由Spring管理, 指标注册到{@link Metrics#globalRegistry}, Spring Boot Actuator启动后
+ *     将其注册表加入全局注册表, 之前创建的指标同样会被导出。
+ * </p>
+ * <ul>
+ *     <li>websocket.sessions 当前连接数</li>
+ *     <li>websocket.send.queue.depth 所有连接发送队列深度之和(stat=total)及最大值(stat=max)</li>
+ *     <li>websocket.send 发送完成数量, result=ok/failed</li>
+ *     <li>websocket.send.dropped 队列已满被丢弃的消息数量</li>
+ *     <li>websocket.send.coalesced 被合并的消息数量</li>
+ *     <li>websocket.send.latency 数据接收至发送完成的延迟, priority=true/false</li>
+ * </ul>
+ */
+final class WebSocketMetrics {
+
+    private static final MeterRegistry registry = Metrics.globalRegistry;
+
+    static final Counter SENT = Counter.builder("websocket.send").tag("result", "ok").register(registry);
+
+    static final Counter FAILED = Counter.builder("websocket.send").tag("result", "failed").register(registry);
+
+    static final Counter DROPPED = Counter.builder("websocket.send.dropped").register(registry);
+
+    static final Counter COALESCED = Counter.builder("websocket.send.coalesced").register(registry);
+
+    private static final Timer LATENCY = latency(false);
+
+    private static final Timer PRIORITY_LATENCY = latency(true);
+
+    private WebSocketMetrics() {
+    }
+
+    /**
+     * 注册连接数及发送队列深度指标
+     *
+     * @param sessions 连接登记表
+     */
+    static void bindGauges(WebSocketSessionRegistry sessions) {
+        Gauge.builder("websocket.sessions", sessions, WebSocketSessionRegistry::getSessionCount)
+                .register(registry);
+        Gauge.builder("websocket.send.queue.depth", sessions, r -> {
+            AtomicInteger total = new AtomicInteger();
+            r.forEachSession(server -> total.addAndGet(server.getSendQueueDepth()));
+            return total.get();
+        }).tag("stat", "total").register(registry);
+        Gauge.builder("websocket.send.queue.depth", sessions, r -> {
+            AtomicInteger max = new AtomicInteger();
+            r.forEachSession(server -> max.accumulateAndGet(server.getSendQueueDepth(), Math::max));
+            return max.get();
+        }).tag("stat", "max").register(registry);
+    }
+
+    private static Timer latency(boolean priority) {
+        return Timer.builder("websocket.send.latency")
+                .description("数据接收至websocket发送完成的延迟")
+                .tag("priority", String.valueOf(priority))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * 记录数据接收至发送完成的延迟
+     *
+     * @param priority 是否优先消息
+     * @param nanos    延迟纳秒数
+     */
+    static void recordLatency(boolean priority, long nanos) {
+        (priority ? PRIORITY_LATENCY : LATENCY).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
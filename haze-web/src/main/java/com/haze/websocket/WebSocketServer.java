@@ -1,6 +1,9 @@
 package com.haze.websocket;
 
 import com.haze.common.util.HazeStringUtils;
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.websocket.event.WebSocketMessageEvent;
+import com.haze.websocket.event.WebSocketSessionEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -11,9 +14,11 @@ import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * websocket通信服务器
@@ -22,6 +27,8 @@ import java.util.concurrent.ConcurrentHashMap;
  * <pre><code>
  * if ('WebSocket' in window) {
  *         websocket = new WebSocket("ws://localhost:8081/websocket/zhangsan");
+ *         //可通过请求参数协商消息格式, 如 ws://localhost:8081/websocket/zhangsan?protocol=delta
+ *         websocket.binaryType = "arraybuffer";
  *         websocket.onopen = function () {
  *             console.log("连接成功");
  *         };
@@ -46,6 +53,7 @@ import java.util.concurrent.ConcurrentHashMap;
  *         console.warn('当前浏览器不支持websocket')
  *     }
  * </code></pre>
+ * <p>同一用户可以同时建立多个连接, 按用户名发送的信息会发送到该用户的所有连接, 连接登记见{@link WebSocketSessionRegistry}。</p>
  */
 @Component
 @ServerEndpoint("/websocket/{name}")
@@ -64,9 +72,28 @@ public class WebSocketServer {
     private String name;
 
     /**
-     * 用于存所有的连接服务的客户端，这个对象存储是安全的
+     * 当前连接会话ID
      */
-    private static Map<String, WebSocketServer> connectedMap = new ConcurrentHashMap<>();
+    private String sessionId;
+
+    /**
+     * 所有已连接的客户端, 按用户名和会话ID登记
+     */
+    private static final WebSocketSessionRegistry registry = new WebSocketSessionRegistry();
+
+    static {
+        WebSocketMetrics.bindGauges(registry);
+    }
+
+    /**
+     * 每个连接发送队列最大深度, 可通过haze.websocket.send-queue-depth配置
+     */
+    private static int sendQueueDepth = 256;
+
+    /**
+     * 当前连接发送队列
+     */
+    private SessionSendQueue sendQueue;
 
 
     @OnOpen
@@ -74,28 +101,31 @@ public class WebSocketServer {
         this.session = session;
         session.setMaxIdleTimeout(0);
         this.name = name;
-        connectedMap.put(name, this);
-        logger.info("[WebSocketServer] 连接成功，name={}, 当前连接人数为：={}", name, connectedMap.size());
+        this.sessionId = session.getId();
+        this.sendQueue = new SessionSendQueue(session, sendQueueDepth);
+        registry.register(name, sessionId, this);
+        logger.info("[WebSocketServer] 连接成功，name={}, sessionId={}, 当前连接人数为：={}, 连接数为：={}", name, sessionId, registry.getUserCount(), registry.getSessionCount());
+        SpringContextUtils.publishEvent(new WebSocketSessionEvent(this, name, sessionId, true, session.getRequestParameterMap()));
     }
 
 
     @OnClose
     public void OnClose() {
-        connectedMap.remove(this.name);
-        logger.info("[WebSocketServer] 退出成功，name={},当前连接人数为：={}", name, connectedMap.size());
+        sendQueue.close();
+        registry.unregister(name, sessionId, this);
+        logger.info("[WebSocketServer] 退出成功，name={}, sessionId={}, 当前连接人数为：={}, 连接数为：={}", name, sessionId, registry.getUserCount(), registry.getSessionCount());
+        SpringContextUtils.publishEvent(new WebSocketSessionEvent(this, name, sessionId, false));
     }
 
+    /**
+     * 收到客户端消息后发布{@link WebSocketMessageEvent}, 由业务模块处理
+     *
+     * @param message 消息内容
+     */
     @OnMessage
     public void OnMessage(String message) {
-        logger.info("[WebSocketServer] 收到消息：{}", message);
-        //判断是否需要指定发送，具体规则自定义
-        /*if (message.indexOf("TOUSER") == 0) {
-            String name = message.substring(message.indexOf("TOUSER") + 6, message.indexOf(";"));
-            sendMessageToName(name, message.substring(message.indexOf(";") + 1, message.length()));
-        } else {
-            sendMessageToAll(message);
-        }*/
-        //TODO 暂未实现
+        logger.debug("[WebSocketServer] 收到消息, name={}, sessionId={}, message={}", name, sessionId, message);
+        SpringContextUtils.publishEvent(new WebSocketMessageEvent(this, name, sessionId, message));
     }
 
     /**
@@ -104,13 +134,14 @@ public class WebSocketServer {
      * @param message 信息内容
      */
     public void sendMessageToAll(String message) {
-        for (String name : connectedMap.keySet()) {
+        EncodedMessage encodedMessage = new EncodedMessage(message, null);
+        registry.forEachSession(server -> {
             try {
-                connectedMap.get(name).session.getBasicRemote().sendText(message);
+                server.sendQueue.offer(encodedMessage);
             } catch (Exception e) {
                 logger.error("[WebSocketServer] sendMessageToAll 信息发送失败, message={}, e={}", message, e);
             }
-        }
+        });
     }
 
     /**
@@ -120,11 +151,10 @@ public class WebSocketServer {
      * @param names   连接名称集合
      */
     public void sendMessageToNames(String message, Set<String> names) {
+        EncodedMessage encodedMessage = new EncodedMessage(message, null);
         for (String name : names) {
             try {
-                if (connectedMap.containsKey(name)) {
-                    connectedMap.get(name).session.getBasicRemote().sendText(message);
-                }
+                registry.forEachSession(name, server -> server.sendQueue.offer(encodedMessage));
             } catch (Exception e) {
                 logger.error("[WebSocketServer] sendMessageToNames 信息发送失败, message={}, names={}, e={}", message, HazeStringUtils.join(names, ","), e);
             }
@@ -138,15 +168,90 @@ public class WebSocketServer {
      * @param name    连接名称
      */
     public void sendMessageToName(String message, String name) {
+        sendMessageToName(message, name, null);
+    }
+
+    /**
+     * 对指定名称的连接发送信息, 信息进入连接发送队列后异步发送, 队列中合并键相同的信息只保留最新一条
+     *
+     * @param message     信息内容
+     * @param name        连接名称
+     * @param coalesceKey 合并键, 为null时不合并
+     */
+    public void sendMessageToName(String message, String name, String coalesceKey) {
+        sendMessageToName(new EncodedMessage(message, coalesceKey), name);
+    }
+
+    /**
+     * 对指定名称的所有连接发送已编码信息, 同一已编码信息可以发送给多个连接而无需重复编码
+     *
+     * @param message 已编码信息
+     * @param name    连接名称
+     */
+    public void sendMessageToName(EncodedMessage message, String name) {
         try {
-            //connectedMap.get(name).session.getBasicRemote().sendObject(message);
-            connectedMap.get(name).session.getBasicRemote().sendText(message);
+            registry.forEachSession(name, server -> server.sendQueue.offer(message));
         } catch (Exception e) {
             logger.error("[WebSocketServer] sendMessageToName 信息发送失败, name={}, message={}, e={}", name, message, e);
         }
     }
 
-    public static Map<String, WebSocketServer> getConnectedMap() {
-        return connectedMap;
+    /**
+     * 对指定会话ID的连接发送已编码信息
+     *
+     * @param message   已编码信息
+     * @param sessionId 会话ID
+     */
+    public void sendMessageToSession(EncodedMessage message, String sessionId) {
+        try {
+            WebSocketServer server = registry.getSession(sessionId);
+            if (server != null) {
+                server.sendQueue.offer(message);
+            }
+        } catch (Exception e) {
+            logger.error("[WebSocketServer] sendMessageToSession 信息发送失败, sessionId={}, message={}, e={}", sessionId, message, e);
+        }
+    }
+
+    /**
+     * 获取所有连接发送队列统计信息
+     *
+     * @return 每个连接的队列深度、已发送、已合并、已丢弃、发送失败及已发送优先消息数量
+     */
+    public List<Map<String, Object>> getSendStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        registry.forEachSession(server -> {
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("name", server.name);
+            stat.put("sessionId", server.sessionId);
+            stat.put("depth", server.sendQueue.getDepth());
+            stat.put("sent", server.sendQueue.getSent());
+            stat.put("coalesced", server.sendQueue.getCoalesced());
+            stat.put("dropped", server.sendQueue.getDropped());
+            stat.put("failed", server.sendQueue.getFailed());
+            stat.put("prioritySent", server.sendQueue.getPrioritySent());
+            stats.add(stat);
+        });
+        return stats;
+    }
+
+    public static void setSendQueueDepth(int sendQueueDepth) {
+        WebSocketServer.sendQueueDepth = sendQueueDepth;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    int getSendQueueDepth() {
+        return sendQueue.getDepth();
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public static WebSocketSessionRegistry getRegistry() {
+        return registry;
     }
 }
@@ -0,0 +1,116 @@
+package com.haze.websocket;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * websocket连接登记表, 按用户名保存该用户的所有连接
+ * <p>
+ *     同一用户可同时建立多个连接(如多个浏览器标签页或大屏), 每个连接以会话ID区分。用户名 -> 会话ID -> 连接的映射
+ *     基于{@link ConcurrentHashMap}分段加锁, 登记和注销通过compute在单个用户的映射上原子完成, 不同用户之间互不竞争。
+ *     注销时只移除本连接, 旧连接的关闭不会影响同一用户新建立的连接。
+ * </p>
+ */
+public class WebSocketSessionRegistry {
+
+    /**
+     * 用户名 -> 会话ID -> 连接
+     */
+    private final Map<String, Map<String, WebSocketServer>> users = new ConcurrentHashMap<>();
+
+    /**
+     * 会话ID -> 连接
+     */
+    private final Map<String, WebSocketServer> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 登记连接
+     *
+     * @param name      用户名
+     * @param sessionId 会话ID
+     * @param server    连接
+     */
+    public void register(String name, String sessionId, WebSocketServer server) {
+        sessions.put(sessionId, server);
+        users.compute(name, (key, userSessions) -> {
+            if (userSessions == null) {
+                userSessions = new ConcurrentHashMap<>(4);
+            }
+            userSessions.put(sessionId, server);
+            return userSessions;
+        });
+    }
+
+    /**
+     * 注销连接, 只有登记的仍是该连接时才移除
+     *
+     * @param name      用户名
+     * @param sessionId 会话ID
+     * @param server    连接
+     */
+    public void unregister(String name, String sessionId, WebSocketServer server) {
+        sessions.remove(sessionId, server);
+        users.computeIfPresent(name, (key, userSessions) -> {
+            userSessions.remove(sessionId, server);
+            return userSessions.isEmpty() ? null : userSessions;
+        });
+    }
+
+    /**
+     * 获取会话ID对应的连接
+     *
+     * @param sessionId 会话ID
+     * @return 连接, 不存在时返回null
+     */
+    public WebSocketServer getSession(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * 获取用户的所有连接
+     *
+     * @param name 用户名
+     * @return 连接集合, 用户未连接时返回空集合
+     */
+    public Collection<WebSocketServer> getSessions(String name) {
+        Map<String, WebSocketServer> userSessions = users.get(name);
+        return userSessions != null ? userSessions.values() : Collections.emptyList();
+    }
+
+    /**
+     * 遍历用户的所有连接
+     *
+     * @param name     用户名
+     * @param consumer 连接处理
+     */
+    public void forEachSession(String name, Consumer<WebSocketServer> consumer) {
+        Map<String, WebSocketServer> userSessions = users.get(name);
+        if (userSessions != null) {
+            userSessions.values().forEach(consumer);
+        }
+    }
+
+    /**
+     * 遍历所有连接
+     *
+     * @param consumer 连接处理
+     */
+    public void forEachSession(Consumer<WebSocketServer> consumer) {
+        sessions.values().forEach(consumer);
+    }
+
+    public boolean isConnected(String name) {
+        return users.containsKey(name);
+    }
+
+    public int getUserCount() {
+        return users.size();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+}
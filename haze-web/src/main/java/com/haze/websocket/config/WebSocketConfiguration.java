@@ -1,5 +1,7 @@
 package com.haze.websocket.config;
 
+import com.haze.websocket.WebSocketServer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
@@ -9,6 +11,10 @@ import org.springframework.web.socket.server.standard.ServerEndpointExporter;
 /*@PropertySource("classpath:/config/websocket/application.properties")*/
 public class WebSocketConfiguration {
 
+    public WebSocketConfiguration(@Value("${haze.websocket.send-queue-depth:256}") int sendQueueDepth) {
+        WebSocketServer.setSendQueueDepth(sendQueueDepth);
+    }
+
     @Bean
     public ServerEndpointExporter serverEndpointExporter() {
         return new ServerEndpointExporter();
@@ -0,0 +1,52 @@
+package com.haze.websocket.event;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * websocket客户端消息事件, 由{@link com.haze.websocket.WebSocketServer}在收到客户端消息时发布, 消息格式由各业务模块自行约定
+ */
+public class WebSocketMessageEvent extends ApplicationEvent {
+
+    /**
+     * 发送消息客户端的用户名
+     */
+    private String name;
+
+    /**
+     * 发送消息连接的会话ID
+     */
+    private String sessionId;
+
+    /**
+     * 消息内容
+     */
+    private String message;
+
+    public WebSocketMessageEvent(Object source, String name, String sessionId, String message) {
+        super(source);
+        this.name = name;
+        this.sessionId = sessionId;
+        this.message = message;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketMessageEvent{" +
+                "name='" + name + '\'' +
+                ", sessionId='" + sessionId + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
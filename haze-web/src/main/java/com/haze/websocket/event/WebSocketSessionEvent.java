@@ -0,0 +1,77 @@
+package com.haze.websocket.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * websocket连接建立或断开事件, 由{@link com.haze.websocket.WebSocketServer}在连接打开和关闭时发布
+ */
+public class WebSocketSessionEvent extends ApplicationEvent {
+
+    /**
+     * 连接是否建立, false表示连接断开
+     */
+    private boolean open;
+
+    /**
+     * 连接客户端的用户名
+     */
+    private String name;
+
+    /**
+     * 连接会话ID, 同一用户的多个连接以会话ID区分
+     */
+    private String sessionId;
+
+    /**
+     * 连接请求参数, 客户端可通过请求参数协商消息格式
+     */
+    private Map<String, List<String>> parameters;
+
+    public WebSocketSessionEvent(Object source, String name, String sessionId, boolean open) {
+        this(source, name, sessionId, open, Collections.emptyMap());
+    }
+
+    public WebSocketSessionEvent(Object source, String name, String sessionId, boolean open, Map<String, List<String>> parameters) {
+        super(source);
+        this.name = name;
+        this.sessionId = sessionId;
+        this.open = open;
+        this.parameters = parameters != null ? parameters : Collections.emptyMap();
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * 获取连接请求参数值
+     *
+     * @param key 参数名称
+     * @return 参数值, 不存在时返回null
+     */
+    public String getParameter(String key) {
+        List<String> values = parameters.get(key);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketSessionEvent{" +
+                "open=" + open +
+                ", name='" + name + '\'' +
+                ", sessionId='" + sessionId + '\'' +
+                '}';
+    }
+}
@@ -3,6 +3,7 @@ package com.haze.websocket.web.controller;
 import com.haze.websocket.WebSocketServer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -10,6 +11,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * websocket通信发送
@@ -40,4 +42,14 @@ public class WebSocketController {
             webSocketServer.sendMessageToAll(message);
         }
     }
+
+    /**
+     * 获取当前已连接客户端发送队列统计信息
+     * @return 每个连接的队列深度、已发送、已合并、已丢弃及发送失败数量
+     */
+    @GetMapping("/sendStats")
+    @ResponseBody
+    public List<Map<String, Object>> sendStats() {
+        return webSocketServer.getSendStats();
+    }
 }
@@ -1,15 +1,27 @@
 package com.haze.vsail;
 
+import com.haze.vsail.bus.ingest.BusTelemetry;
+import com.haze.vsail.bus.ingest.BusTelemetryPipeline;
 import com.haze.vsail.bus.service.BusService;
+import com.haze.vsail.bus.store.BusViewport;
 import com.haze.vsail.bus.util.BusEventType;
 import com.haze.vsail.bus.util.BusInfo;
 import com.haze.vsail.stat.service.VsailStatService;
 import com.haze.web.BaseController;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @RequestMapping("v")
 @Controller
@@ -19,9 +31,12 @@ public class VsailController extends BaseController {
 
     private VsailStatService vsailStatService;
 
-    public VsailController(BusService busService, VsailStatService vsailStatService) {
+    private BusTelemetryPipeline busTelemetryPipeline;
+
+    public VsailController(BusService busService, VsailStatService vsailStatService, BusTelemetryPipeline busTelemetryPipeline) {
         this.busService = busService;
         this.vsailStatService = vsailStatService;
+        this.busTelemetryPipeline = busTelemetryPipeline;
     }
 
     @GetMapping("/map")
@@ -47,12 +62,81 @@ public class VsailController extends BaseController {
         busService.sendMessage(vin);
     }
 
+    /**
+     * 批量接收车辆实时数据, 数据帧格式见{@link BusTelemetry}
+     * @param frames 数据帧集合
+     * @return 接收和拒绝的数据帧数量, 被拒绝的数据帧可由网关稍后重试
+     */
+    @PostMapping("/public/ingest")
+    @ResponseBody
+    public Map<String, Object> ingest(@RequestBody List<BusTelemetry> frames) {
+        int accepted = busTelemetryPipeline.submit(frames);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("accepted", accepted);
+        result.put("rejected", frames.size() - accepted);
+        return result;
+    }
+
+    @GetMapping("/public/ingest/stats")
+    @ResponseBody
+    public Map<String, Object> ingestStats() {
+        return busTelemetryPipeline.getStats();
+    }
+
     @PostMapping("/getBusData")
     @ResponseBody
     public List<BusInfo> sendMessage() {
         return busService.getBusData();
     }
 
+    /**
+     * 流式输出当前用户可查看车辆的状态快照, 格式见{@link com.haze.vsail.bus.util.BusDeltaCodec}
+     * <p>
+     *     浏览器支持时使用gzip压缩输出, 快照中的存储实例标识和版本号用于建立websocket增量连接
+     * </p>
+     * @param format 车辆格式, object为对象格式, array为列格式
+     */
+    @GetMapping("/getBusData/stream")
+    public void getBusDataStream(@RequestParam(defaultValue = "object") String format, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), true) : response.getOutputStream();
+        busService.writeSnapshot(out, "array".equalsIgnoreCase(format));
+        out.close();
+    }
+
+
+    /**
+     * 获取当前用户可查看机构的车辆总数及在线、火警、故障数量, 用于看板等只需要统计数字的页面
+     * @return 机构ID -> 车辆计数
+     */
+    @GetMapping("/getBusCounters")
+    @ResponseBody
+    public Map<Long, Map<String, Object>> getBusCounters() {
+        return busService.getBusCounters();
+    }
+
+    /**
+     * 获取地图可视范围内的车辆, 缩放级别较低时返回聚合点
+     * @param minX 最小经度
+     * @param minY 最小纬度
+     * @param maxX 最大经度
+     * @param maxY 最大纬度
+     * @param zoom 地图缩放级别
+     * @return 可视范围内车辆及聚合点
+     */
+    @PostMapping("/getBusData/viewport")
+    @ResponseBody
+    public BusViewport getBusDataInViewport(@RequestParam double minX, @RequestParam double minY,
+                                            @RequestParam double maxX, @RequestParam double maxY, @RequestParam int zoom) {
+        return busService.getBusDataInViewport(minX, minY, maxX, maxY, zoom);
+    }
 
     @GetMapping("/public/testData")
     public String getTestData(Model model) {
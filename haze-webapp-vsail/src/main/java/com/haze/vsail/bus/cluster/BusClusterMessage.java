@@ -0,0 +1,42 @@
+package com.haze.vsail.bus.cluster;
+
+import com.haze.vsail.bus.util.BusInfo;
+
+import java.util.List;
+
+/**
+ * 集群车辆事件转发消息, 一条消息包含发布节点在一个刷新间隔内产生的所有车辆信息
+ */
+public class BusClusterMessage {
+
+    /**
+     * 发布节点标识
+     */
+    private String node;
+
+    private List<BusInfo> buses;
+
+    public BusClusterMessage() {
+    }
+
+    public BusClusterMessage(String node, List<BusInfo> buses) {
+        this.node = node;
+        this.buses = buses;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public List<BusInfo> getBuses() {
+        return buses;
+    }
+
+    public void setBuses(List<BusInfo> buses) {
+        this.buses = buses;
+    }
+}
@@ -0,0 +1,179 @@
+package com.haze.vsail.bus.cluster;
+
+import com.haze.common.util.HazeJsonUtils;
+import com.haze.redis.manage.RedisManager;
+import com.haze.vsail.bus.service.BusService;
+import com.haze.vsail.bus.util.BusInfo;
+import com.haze.vsail.bus.util.VsailConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 集群车辆事件转发器
+ * <p>
+ *     websocket连接只保存在所连接节点的内存中, 多个节点部署时由该类将本节点产生的车辆事件通过redis频道
+ *     {@link VsailConstants#BUS_CLUSTER_CHANNEL}转发给其他节点。本节点事件放入有界队列, 转发线程每个刷新间隔将队列中的
+ *     车辆信息合并为一条{@link BusClusterMessage}发布; 其他节点收到后由{@link BusService#applyRelayed(List)}更新各自的车辆状态,
+ *     再按本节点连接的权限和订阅条件推送, 增量协议的版本号由各节点分别维护。
+ * </p>
+ * <p>
+ *     默认不启用, 通过vsail.cluster.enabled=true开启, 同时需要开启haze.redis.listener.enabled并在haze.redis.listener.channels中
+ *     加入转发频道。本地可使用同一个redis以不同端口启动两个实例验证。
+ * </p>
+ */
+@Component
+public class BusClusterRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusClusterRelay.class);
+
+    private final RedisManager redisManager;
+
+    private final BusService busService;
+
+    private final boolean enabled;
+
+    private final long flushIntervalMillis;
+
+    private final int batchSize;
+
+    private final BlockingQueue<BusInfo> queue;
+
+    /**
+     * 本节点标识, 用于忽略本节点发布的消息
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final AtomicLong published = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong applied = new AtomicLong();
+
+    private volatile boolean running = false;
+
+    private Thread worker;
+
+    public BusClusterRelay(RedisManager redisManager, BusService busService,
+                           @Value("${vsail.cluster.enabled:false}") boolean enabled,
+                           @Value("${vsail.cluster.flush-interval-ms:20}") long flushIntervalMillis,
+                           @Value("${vsail.cluster.batch-size:500}") int batchSize,
+                           @Value("${vsail.cluster.queue-capacity:10000}") int queueCapacity) {
+        this.redisManager = redisManager;
+        this.busService = busService;
+        this.enabled = enabled;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "bus-cluster-relay");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("集群车辆事件转发已启动, node={}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 登记本节点产生的车辆信息, 由转发线程批量发布
+     *
+     * @param busInfo 车辆信息
+     */
+    public void publish(BusInfo busInfo) {
+        if (!queue.offer(busInfo)) {
+            dropped.incrementAndGet();
+            logger.warn("集群转发队列已满, 丢弃车辆事件, vin={}", busInfo.getVin());
+        }
+    }
+
+    /**
+     * 处理转发频道消息, 忽略本节点发布的消息
+     *
+     * @param body 消息内容
+     */
+    public void receive(String body) {
+        BusClusterMessage message = HazeJsonUtils.readFromString(body, BusClusterMessage.class);
+        if (message == null || nodeId.equals(message.getNode()) || message.getBuses() == null) {
+            return;
+        }
+        received.addAndGet(message.getBuses().size());
+        applied.addAndGet(busService.applyRelayed(message.getBuses()));
+    }
+
+    private void run() {
+        List<BusInfo> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                BusInfo first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                //等待一个刷新间隔, 将间隔内的事件合并为一条消息
+                Thread.sleep(flushIntervalMillis);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                redisManager.publish(VsailConstants.BUS_CLUSTER_CHANNEL, HazeJsonUtils.writeToCompactString(new BusClusterMessage(nodeId, batch)));
+                published.addAndGet(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                dropped.addAndGet(batch.size());
+                logger.error("集群车辆事件转发失败, size={}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 获取转发统计信息
+     *
+     * @return 节点标识、队列深度、已发布、已丢弃、已接收及已应用的车辆事件数量
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("node", nodeId);
+        stats.put("depth", queue.size());
+        stats.put("published", published.get());
+        stats.put("dropped", dropped.get());
+        stats.put("received", received.get());
+        stats.put("applied", applied.get());
+        return stats;
+    }
+}
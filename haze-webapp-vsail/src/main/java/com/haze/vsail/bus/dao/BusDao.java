@@ -3,9 +3,52 @@ package com.haze.vsail.bus.dao;
 import com.haze.core.jpa.repository.BaseRepository;
 import com.haze.vsail.bus.entity.Bus;
 import com.haze.vsail.bus.entity.BusModel;
+import com.haze.vsail.bus.util.BusCacheEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface BusDao extends BaseRepository<Bus, Long> {
 
+    /**
+     * 通过一条关联查询获取所有未删除运营车辆的缓存信息, 不加载车辆及机构实体
+     * @return 车辆缓存信息列表
+     */
+    @Query("select new com.haze.vsail.bus.util.BusCacheEntry(b.id, b.vin, b.busNum, b.modelName, b.factoryName, b.drivingNum, b.productNum, " +
+            "r.id, r.fullName, br.id, br.fullName, s.id, s.fullName, s.address, s.linker, s.linkerMobile, l.id, l.fullName) " +
+            "from Bus b join b.rootGroup r join b.branchGroup br join b.siteGroup s join b.lineGroup l " +
+            "where b.used = true and b.deleted = false")
+    List<BusCacheEntry> findUsedBusCacheEntries();
+
+    /**
+     * 按车辆ID分页获取未删除运营车辆的缓存信息, 使用上一页最大ID定位, 不随页数增加而变慢
+     * @param afterId 上一页最大车辆ID, 第一页为0
+     * @param pageable 分页信息, 只使用每页数量
+     * @return 车辆ID大于afterId的车辆缓存信息, 按车辆ID排序
+     */
+    @Query("select new com.haze.vsail.bus.util.BusCacheEntry(b.id, b.vin, b.busNum, b.modelName, b.factoryName, b.drivingNum, b.productNum, " +
+            "r.id, r.fullName, br.id, br.fullName, s.id, s.fullName, s.address, s.linker, s.linkerMobile, l.id, l.fullName) " +
+            "from Bus b join b.rootGroup r join b.branchGroup br join b.siteGroup s join b.lineGroup l " +
+            "where b.used = true and b.deleted = false and b.id > :afterId order by b.id")
+    List<BusCacheEntry> findUsedBusCacheEntries(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 获取所有未删除车辆ID
+     * @return 车辆ID列表
+     */
+    @Query("select b.id from Bus b where b.deleted = false")
+    List<Long> findAllIds();
+
+    /**
+     * 获取线路机构下所有未删除车辆ID
+     * @param lineGroupIds 线路机构ID集合
+     * @return 车辆ID列表
+     */
+    @Query("select b.id from Bus b where b.deleted = false and b.lineGroup.id in :lineGroupIds")
+    List<Long> findIdsByLineGroupIds(@Param("lineGroupIds") Collection<Long> lineGroupIds);
 }
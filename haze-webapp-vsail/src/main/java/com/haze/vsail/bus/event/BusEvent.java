@@ -1,23 +1,189 @@
 package com.haze.vsail.bus.event;
 
+import com.haze.vsail.bus.store.BusStateChange;
+import com.haze.vsail.bus.util.BusDeltaCodec;
 import com.haze.vsail.bus.util.BusInfo;
+import com.haze.websocket.EncodedMessage;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.context.ApplicationEvent;
 
+import java.nio.ByteBuffer;
 
+/**
+ * 车辆事件
+ * <p>
+ *     车辆由非火警变为火警的事件为告警事件, 编码后的消息在websocket发送队列中优先发送, 持续火警的后续事件按普通事件发送,
+ *     所有消息均携带{@link #getReceivedNanos()}, 由发送队列记录从数据到达至发送完成的延迟。
+ * </p>
+ * <p>
+ *     各格式消息的编码耗时记录在vsail.bus.encode指标中, format标签为legacy/delta/full/position。
+ * </p>
+ */
 public class BusEvent extends ApplicationEvent {
 
+    private static final Timer ENCODE_LEGACY = encodeTimer("legacy");
+
+    private static final Timer ENCODE_DELTA = encodeTimer("delta");
+
+    private static final Timer ENCODE_FULL = encodeTimer("full");
+
+    private static final Timer ENCODE_POSITION = encodeTimer("position");
+
     public BusEvent(BusInfo busInfo) {
+        this(busInfo, null);
+    }
+
+    public BusEvent(BusInfo busInfo, BusStateChange change) {
         super(busInfo);
         this.busInfo = busInfo;
+        this.change = change;
     }
 
     private BusInfo busInfo;
 
+    /**
+     * 车辆状态变化, 用于增量协议, 车辆状态未进入内存存储时为null
+     */
+    private final BusStateChange change;
+
+    /**
+     * 增量协议消息
+     */
+    private volatile EncodedMessage deltaMessage;
+
+    /**
+     * 增量协议完整信息消息
+     */
+    private volatile EncodedMessage fullMessage;
+
+    /**
+     * 增量协议二进制坐标消息, 数组为空表示已编码但不适用
+     */
+    private volatile EncodedMessage[] positionMessage;
+
+    /**
+     * 车辆信息编码后的websocket消息, 每个事件只编码一次并由所有接收者共享
+     */
+    private volatile EncodedMessage message;
+
+    /**
+     * 车辆数据接收时间({@link System#nanoTime()}), 为0时不记录发送延迟
+     */
+    private long receivedNanos;
+
+    /**
+     * 是否为其他集群节点转发的事件
+     */
+    private boolean relayed;
+
     public BusInfo getBusInfo() {
         return busInfo;
     }
 
+    public BusStateChange getChange() {
+        return change;
+    }
+
     public void setBusInfo(BusInfo busInfo) {
         this.busInfo = busInfo;
+        this.message = null;
+    }
+
+    /**
+     * 是否为告警事件, 只有车辆新出现火警时为告警事件, 持续火警车辆的后续数据不占用优先队列
+     */
+    public boolean isAlarm() {
+        if (!busInfo.isFire()) {
+            return false;
+        }
+        BusInfo previous = change != null ? change.getPrevious() : null;
+        return previous == null || !previous.isFire();
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    public void setReceivedNanos(long receivedNanos) {
+        this.receivedNanos = receivedNanos;
+    }
+
+    public boolean isRelayed() {
+        return relayed;
+    }
+
+    public void setRelayed(boolean relayed) {
+        this.relayed = relayed;
+    }
+
+    /**
+     * 获取车辆信息编码后的websocket消息, 以车辆vin码作为合并键
+     * @return 已编码消息
+     */
+    public EncodedMessage getMessage() {
+        EncodedMessage m = message;
+        if (m == null) {
+            m = encode(ENCODE_LEGACY.record(busInfo::toCompactJson), busInfo.getVin());
+            message = m;
+        }
+        return m;
+    }
+
+    /**
+     * 获取增量协议消息, 增量消息需要按顺序到达客户端, 不设置合并键
+     * @return 已编码消息, 无车辆状态变化时返回null
+     */
+    public EncodedMessage getDeltaMessage() {
+        if (change == null) {
+            return null;
+        }
+        EncodedMessage m = deltaMessage;
+        if (m == null) {
+            m = encode(ENCODE_DELTA.record(() -> BusDeltaCodec.encodeDelta(change)), null);
+            deltaMessage = m;
+        }
+        return m;
+    }
+
+    /**
+     * 获取增量协议完整信息消息, 用于车辆进入客户端订阅范围时
+     * @return 已编码消息, 无车辆状态变化时返回null
+     */
+    public EncodedMessage getFullMessage() {
+        if (change == null) {
+            return null;
+        }
+        EncodedMessage m = fullMessage;
+        if (m == null) {
+            m = encode(ENCODE_FULL.record(() -> BusDeltaCodec.encodeFull(change)), null);
+            fullMessage = m;
+        }
+        return m;
+    }
+
+    /**
+     * 获取增量协议二进制坐标消息
+     * @return 已编码消息, 存在坐标以外的字段变化时返回null
+     */
+    public EncodedMessage getPositionMessage() {
+        if (change == null) {
+            return null;
+        }
+        EncodedMessage[] m = positionMessage;
+        if (m == null) {
+            ByteBuffer buffer = ENCODE_POSITION.record(() -> BusDeltaCodec.encodePosition(change));
+            m = buffer != null ? new EncodedMessage[]{new EncodedMessage(buffer, null, receivedNanos)} : new EncodedMessage[0];
+            positionMessage = m;
+        }
+        return m.length > 0 ? m[0] : null;
+    }
+
+    private EncodedMessage encode(String text, String coalesceKey) {
+        return new EncodedMessage(text, coalesceKey, isAlarm(), receivedNanos);
+    }
+
+    private static Timer encodeTimer(String format) {
+        return Timer.builder("vsail.bus.encode").tag("format", format).register(Metrics.globalRegistry);
     }
 }
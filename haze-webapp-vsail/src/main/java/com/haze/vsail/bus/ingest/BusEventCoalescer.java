@@ -0,0 +1,108 @@
+package com.haze.vsail.bus.ingest;
+
+import com.haze.vsail.bus.service.BusService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 车辆变化通知合并器, 在redis订阅消息监听启用时创建
+ * <p>
+ *     通知只登记车辆vin码, 同一车辆在合并窗口内的多次通知只保留一次。每个窗口结束时批量读取变化车辆的缓存,
+ *     由{@link BusService#sendMessages(List)}与内存中的车辆状态比较, 内容未变化的车辆不再发送事件。
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "haze.redis.listener", name = "enabled", havingValue = "true")
+public class BusEventCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusEventCoalescer.class);
+
+    private final BusService busService;
+
+    private final long windowMillis;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong published = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public BusEventCoalescer(BusService busService, @Value("${vsail.bus-event.coalesce-window-ms:200}") long windowMillis) {
+        this.busService = busService;
+        this.windowMillis = windowMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bus-event-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 登记发生变化的车辆
+     *
+     * @param vin 车辆vin码
+     */
+    public void submit(String vin) {
+        received.incrementAndGet();
+        if (!pending.add(vin)) {
+            coalesced.incrementAndGet();
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> vins = new ArrayList<>(pending.size());
+        Iterator<String> it = pending.iterator();
+        while (it.hasNext()) {
+            vins.add(it.next());
+            it.remove();
+        }
+        try {
+            published.addAndGet(busService.sendMessages(vins));
+        } catch (Exception e) {
+            logger.error("发送车辆变化事件失败, size={}", vins.size(), e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("received", received.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("published", published.get());
+        return stats;
+    }
+}
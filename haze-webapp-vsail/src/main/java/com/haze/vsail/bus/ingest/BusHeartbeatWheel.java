@@ -0,0 +1,227 @@
+package com.haze.vsail.bus.ingest;
+
+import com.haze.vsail.bus.service.BusService;
+import com.haze.vsail.bus.store.BusStateSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 车辆心跳时间轮, 用于检测长时间没有实时数据的车辆并将其置为下线
+ * <p>
+ *     时间轮按固定刻度划分为若干槽, 每个槽是一个双向链表, 在线车辆按vin码对应一个节点。收到车辆实时数据时将节点移动到
+ *     超时时刻所在的槽, 重新计时只需常数时间; 时间轮线程每个刻度取出当前槽中到期的节点, 通过
+ *     {@link BusService#markOffline(Map)}发送下线事件。所有车辆共用一个线程, 不为每辆车创建定时器。
+ * </p>
+ * <p>
+ *     节点同时记录最后一次计时时的车辆状态版本号, 到期后只有车辆状态版本号仍为该版本时才置为下线,
+ *     到期与下线之间收到新数据的车辆不会被误置为下线。
+ * </p>
+ * <p>
+ *     所有车辆超时时长相同, 槽数量为超时刻度数加一, 节点不会跨越多圈。服务启动后首个刻度从车辆状态中登记已在线的车辆,
+ *     这些车辆之后一直没有数据时同样会被置为下线。
+ * </p>
+ */
+@Component
+public class BusHeartbeatWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusHeartbeatWheel.class);
+
+    private final BusService busService;
+
+    private final long tickMillis;
+
+    private final long timeoutTicks;
+
+    private final Node[] wheel;
+
+    private final Map<String, Node> nodes = new HashMap<>();
+
+    /**
+     * 已处理到的刻度
+     */
+    private long currentTick = 0;
+
+    private long startNanos;
+
+    private volatile boolean armed = false;
+
+    private final AtomicLong expired = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public BusHeartbeatWheel(BusService busService,
+                             @Value("${vsail.heartbeat.timeout-ms:300000}") long timeoutMillis,
+                             @Value("${vsail.heartbeat.tick-ms:1000}") long tickMillis) {
+        this.busService = busService;
+        this.tickMillis = Math.max(tickMillis, 1);
+        this.timeoutTicks = Math.max((timeoutMillis + this.tickMillis - 1) / this.tickMillis, 1);
+        this.wheel = new Node[(int) timeoutTicks + 1];
+    }
+
+    @PostConstruct
+    public void start() {
+        startNanos = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bus-heartbeat-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 收到车辆实时数据, 重新开始计时
+     *
+     * @param vin     车辆vin码
+     * @param version 车辆状态版本号, 未知时为-1
+     */
+    public synchronized void touch(String vin, long version) {
+        Node node = nodes.get(vin);
+        if (node == null) {
+            node = new Node(vin);
+            nodes.put(vin, node);
+        } else {
+            unlink(node);
+        }
+        node.deadline = currentTick + timeoutTicks;
+        //多个事件线程的计时顺序可能与写入顺序不同, 只保留较新的版本号
+        node.version = Math.max(node.version, version);
+        link(node);
+    }
+
+    /**
+     * 车辆下线或删除, 停止计时
+     *
+     * @param vin 车辆vin码
+     */
+    public synchronized void cancel(String vin) {
+        Node node = nodes.remove(vin);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private void tick() {
+        try {
+            if (!armed) {
+                arm();
+            }
+            long targetTick = (System.nanoTime() - startNanos) / TimeUnit.MILLISECONDS.toNanos(tickMillis);
+            Map<String, Long> vins = advance(targetTick);
+            if (!vins.isEmpty()) {
+                logger.debug("车辆心跳超时, 数量={}", vins.size());
+                expired.addAndGet(busService.markOffline(vins));
+            }
+        } catch (Exception e) {
+            logger.error("车辆心跳检测失败", e);
+        }
+    }
+
+    /**
+     * 登记服务启动时已在线的车辆
+     */
+    private void arm() {
+        BusStateSnapshot snapshot = busService.getSnapshot(null);
+        for (BusStateSnapshot.Entry entry : snapshot.getEntries()) {
+            if (entry.getBusInfo().isOnline()) {
+                touch(entry.getBusInfo().getVin(), entry.getVersion());
+            }
+        }
+        armed = true;
+        logger.info("车辆心跳检测已启动, 在线车辆数量={}", size());
+    }
+
+    /**
+     * 推进时间轮至指定刻度, 返回到期车辆vin码及最后一次计时时的车辆状态版本号
+     */
+    private synchronized Map<String, Long> advance(long targetTick) {
+        Map<String, Long> vins = new LinkedHashMap<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            int index = (int) (currentTick % wheel.length);
+            Node node = wheel[index];
+            while (node != null) {
+                Node next = node.next;
+                if (node.deadline <= currentTick) {
+                    unlink(node);
+                    nodes.remove(node.vin);
+                    vins.put(node.vin, node.version);
+                }
+                node = next;
+            }
+        }
+        return vins;
+    }
+
+    private void link(Node node) {
+        int index = (int) (node.deadline % wheel.length);
+        node.bucket = index;
+        node.prev = null;
+        node.next = wheel[index];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        wheel[index] = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            wheel[node.bucket] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tracked", size());
+        stats.put("expired", expired.get());
+        stats.put("timeoutMillis", timeoutTicks * tickMillis);
+        return stats;
+    }
+
+    private static final class Node {
+
+        private final String vin;
+
+        private long deadline;
+
+        private long version = -1L;
+
+        private int bucket;
+
+        private Node prev;
+
+        private Node next;
+
+        private Node(String vin) {
+            this.vin = vin;
+        }
+    }
+}
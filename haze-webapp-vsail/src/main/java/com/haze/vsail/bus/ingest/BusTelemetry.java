@@ -0,0 +1,253 @@
+package com.haze.vsail.bus.ingest;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.haze.common.util.HazeDateUtils;
+import com.haze.common.util.HazeJsonUtils;
+import com.haze.vsail.bus.util.BusEventType;
+import com.haze.vsail.bus.util.BusInfo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 车辆实时数据帧, 由网关通过批量接口上报
+ * <p>
+ *     为减少传输体积, 数据帧以json数组表示, 依次为 vin码, 采集时间毫秒数, x, y, 是否火警(0/1), 是否故障(0/1), 传感器数组,
+ *     传感器同样以数组表示, 依次为 编号, 温度, 一氧化碳浓度, 火警位, 故障位, 状态。例如:
+ * </p>
+ * <pre>
+ * ["LZYTBTD69G1025021",1571389200000,"116.39","39.91",0,0,[[1,25,0,"0000","0000","0"]]]
+ * </pre>
+ */
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"vin", "time", "x", "y", "fire", "error", "sensors"})
+public class BusTelemetry {
+
+    private String vin;
+
+    private long time;
+
+    private String x;
+
+    private String y;
+
+    private int fire;
+
+    private int error;
+
+    private List<SensorFrame> sensors;
+
+    /**
+     * 接收时间({@link System#nanoTime()}), 不参与序列化
+     */
+    @JsonIgnore
+    private long receivedNanos;
+
+    public String getVin() {
+        return vin;
+    }
+
+    public void setVin(String vin) {
+        this.vin = vin;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public String getX() {
+        return x;
+    }
+
+    public void setX(String x) {
+        this.x = x;
+    }
+
+    public String getY() {
+        return y;
+    }
+
+    public void setY(String y) {
+        this.y = y;
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    public void setReceivedNanos(long receivedNanos) {
+        this.receivedNanos = receivedNanos;
+    }
+
+    /**
+     * 是否为火警数据帧
+     */
+    @JsonIgnore
+    public boolean isAlarm() {
+        return fire == 1;
+    }
+
+    public int getFire() {
+        return fire;
+    }
+
+    public void setFire(int fire) {
+        this.fire = fire;
+    }
+
+    public int getError() {
+        return error;
+    }
+
+    public void setError(int error) {
+        this.error = error;
+    }
+
+    public List<SensorFrame> getSensors() {
+        return sensors;
+    }
+
+    public void setSensors(List<SensorFrame> sensors) {
+        this.sensors = sensors;
+    }
+
+    /**
+     * 将数据帧合并到车辆当前状态
+     *
+     * @param busInfo 车辆当前状态
+     */
+    public void applyTo(BusInfo busInfo) {
+        busInfo.setEventCode(BusEventType.BUS_EVENT_REAL.getEventCode());
+        busInfo.setOnline(true);
+        busInfo.setSendTime(new Date(time));
+        busInfo.setX(x);
+        busInfo.setY(y);
+        busInfo.setFire(fire == 1);
+        busInfo.setBreakDown(error == 1);
+        if (sensors != null) {
+            busInfo.setSensores(toSensores());
+        }
+    }
+
+    /**
+     * 转换为车辆redis缓存中需要更新的字段, 字段格式与网关直接写入redis时一致
+     *
+     * @return 缓存字段
+     */
+    public Map<String, Object> toHash() {
+        Map<String, Object> hash = new HashMap<>();
+        hash.put("eventCode", String.valueOf(BusEventType.BUS_EVENT_REAL.getEventCode()));
+        hash.put("stime", HazeDateUtils.format(new Date(time)));
+        hash.put("isFire", String.valueOf(fire));
+        hash.put("isError", String.valueOf(error));
+        if (x != null && y != null) {
+            hash.put("x", x);
+            hash.put("y", y);
+        }
+        if (sensors != null) {
+            hash.put("sensores", HazeJsonUtils.writeToCompactString(toSensores()));
+        }
+        return hash;
+    }
+
+    private List<BusInfo.Sensor> toSensores() {
+        List<BusInfo.Sensor> sensores = new ArrayList<>(sensors.size());
+        for (SensorFrame frame : sensors) {
+            BusInfo.Sensor sensor = new BusInfo.Sensor();
+            sensor.setSn(frame.getSn());
+            sensor.setTemp(frame.getTemp());
+            sensor.setConcen(frame.getConcen());
+            sensor.setFire(frame.getFire());
+            sensor.setError(frame.getError());
+            sensor.setState(frame.getState());
+            sensores.add(sensor);
+        }
+        return sensores;
+    }
+
+    @Override
+    public String toString() {
+        return "BusTelemetry{" +
+                "vin='" + vin + '\'' +
+                ", time=" + time +
+                ", x='" + x + '\'' +
+                ", y='" + y + '\'' +
+                ", fire=" + fire +
+                ", error=" + error +
+                '}';
+    }
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"sn", "temp", "concen", "fire", "error", "state"})
+    public static class SensorFrame {
+
+        private int sn;
+
+        private int temp;
+
+        private int concen;
+
+        private String fire;
+
+        private String error;
+
+        private String state;
+
+        public int getSn() {
+            return sn;
+        }
+
+        public void setSn(int sn) {
+            this.sn = sn;
+        }
+
+        public int getTemp() {
+            return temp;
+        }
+
+        public void setTemp(int temp) {
+            this.temp = temp;
+        }
+
+        public int getConcen() {
+            return concen;
+        }
+
+        public void setConcen(int concen) {
+            this.concen = concen;
+        }
+
+        public String getFire() {
+            return fire;
+        }
+
+        public void setFire(String fire) {
+            this.fire = fire;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.haze.vsail.bus.ingest;
+
+import com.haze.vsail.bus.service.BusService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 车辆实时数据处理管道
+ * <p>
+ *     批量接口收到的数据帧放入有界队列后立即返回, 由单独的处理线程按批次取出, 交由{@link BusService#applyTelemetry(List)}
+ *     更新车辆状态、通过管道批量写入redis并发送车辆事件。队列已满时拒绝新的数据帧, 由网关决定重试或丢弃。
+ * </p>
+ * <p>
+ *     火警数据帧进入单独的告警队列, 由告警处理线程立即处理, 不会排在大量普通数据帧之后。
+ *     每个数据帧在接收时记录时间, 用于统计从接收至websocket发送完成的延迟。
+ * </p>
+ * <p>
+ *     指标: vsail.ingest.frames 数据帧数量(result=accepted/rejected/applied/failed), vsail.ingest.queue.depth 队列深度
+ *     (lane=normal/alarm), vsail.ingest.apply 每批数据帧处理耗时(lane标签)。
+ * </p>
+ */
+@Component
+public class BusTelemetryPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusTelemetryPipeline.class);
+
+    private final BusService busService;
+
+    private final BlockingQueue<BusTelemetry> queue;
+
+    private final BlockingQueue<BusTelemetry> alarmQueue;
+
+    private final int batchSize;
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong applied = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong alarms = new AtomicLong();
+
+    private final Timer applyTimer;
+
+    private final Timer alarmApplyTimer;
+
+    private volatile boolean running = false;
+
+    private Thread worker;
+
+    private Thread alarmWorker;
+
+    public BusTelemetryPipeline(BusService busService,
+                                @Value("${vsail.ingest.queue-capacity:10000}") int queueCapacity,
+                                @Value("${vsail.ingest.batch-size:500}") int batchSize,
+                                @Value("${vsail.ingest.alarm-queue-capacity:1000}") int alarmQueueCapacity,
+                                MeterRegistry meterRegistry) {
+        this.busService = busService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.alarmQueue = new ArrayBlockingQueue<>(alarmQueueCapacity);
+        this.batchSize = batchSize;
+        this.applyTimer = Timer.builder("vsail.ingest.apply").tag("lane", "normal").register(meterRegistry);
+        this.alarmApplyTimer = Timer.builder("vsail.ingest.apply").tag("lane", "alarm").register(meterRegistry);
+        frameCounter(meterRegistry, "accepted", accepted);
+        frameCounter(meterRegistry, "rejected", rejected);
+        frameCounter(meterRegistry, "applied", applied);
+        frameCounter(meterRegistry, "failed", failed);
+        Gauge.builder("vsail.ingest.queue.depth", queue, BlockingQueue::size).tag("lane", "normal").register(meterRegistry);
+        Gauge.builder("vsail.ingest.queue.depth", alarmQueue, BlockingQueue::size).tag("lane", "alarm").register(meterRegistry);
+    }
+
+    private static void frameCounter(MeterRegistry meterRegistry, String result, AtomicLong count) {
+        FunctionCounter.builder("vsail.ingest.frames", count, AtomicLong::get).tag("result", result).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(() -> run(queue, applyTimer), "bus-telemetry-pipeline");
+        worker.setDaemon(true);
+        worker.start();
+        alarmWorker = new Thread(() -> run(alarmQueue, alarmApplyTimer), "bus-telemetry-alarm");
+        alarmWorker.setDaemon(true);
+        alarmWorker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        alarmWorker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        alarmWorker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 提交数据帧
+     *
+     * @param frames 数据帧集合
+     * @return 进入队列的数据帧数量, 队列已满时后续数据帧被拒绝
+     */
+    public int submit(List<BusTelemetry> frames) {
+        int count = 0;
+        long receivedNanos = System.nanoTime();
+        for (BusTelemetry frame : frames) {
+            if (frame.getVin() == null) {
+                continue;
+            }
+            frame.setReceivedNanos(receivedNanos);
+            if (frame.isAlarm()) {
+                if (!alarmQueue.offer(frame)) {
+                    continue;
+                }
+                alarms.incrementAndGet();
+            } else if (!queue.offer(frame)) {
+                continue;
+            }
+            count++;
+        }
+        accepted.addAndGet(count);
+        rejected.addAndGet(frames.size() - count);
+        return count;
+    }
+
+    private void run(BlockingQueue<BusTelemetry> source, Timer timer) {
+        List<BusTelemetry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                BusTelemetry first = source.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                source.drainTo(batch, batchSize - 1);
+                long start = System.nanoTime();
+                applied.addAndGet(busService.applyTelemetry(batch));
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failed.addAndGet(batch.size());
+                logger.error("车辆实时数据处理失败, size={}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 获取管道统计信息
+     *
+     * @return 队列深度、告警队列深度、已接收、告警数量、已拒绝、已处理及处理失败数量
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("depth", queue.size());
+        stats.put("alarmDepth", alarmQueue.size());
+        stats.put("accepted", accepted.get());
+        stats.put("alarms", alarms.get());
+        stats.put("rejected", rejected.get());
+        stats.put("applied", applied.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+}
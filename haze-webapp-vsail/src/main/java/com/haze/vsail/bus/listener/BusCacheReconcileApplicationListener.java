@@ -0,0 +1,17 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.vsail.bus.service.BusCacheReconciler;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 应用启动完成监听类, 启动完成后执行一次车辆redis缓存核对
+ */
+public class BusCacheReconcileApplicationListener implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        SpringContextUtils.getBean(BusCacheReconciler.class).onStartup();
+    }
+}
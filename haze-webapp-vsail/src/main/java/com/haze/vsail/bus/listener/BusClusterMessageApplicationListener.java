@@ -0,0 +1,24 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.redis.event.RedisMessageEvent;
+import com.haze.vsail.bus.cluster.BusClusterRelay;
+import com.haze.vsail.bus.util.VsailConstants;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 集群车辆事件转发频道监听类, 将其他节点转发的车辆事件交由{@link BusClusterRelay}处理
+ */
+public class BusClusterMessageApplicationListener implements ApplicationListener<RedisMessageEvent> {
+
+    @Override
+    public void onApplicationEvent(RedisMessageEvent event) {
+        if (!VsailConstants.BUS_CLUSTER_CHANNEL.equals(event.getChannel())) {
+            return;
+        }
+        BusClusterRelay relay = SpringContextUtils.getBean(BusClusterRelay.class);
+        if (relay.isEnabled()) {
+            relay.receive(event.getBody());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.vsail.bus.cluster.BusClusterRelay;
+import com.haze.vsail.bus.event.BusEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 集群车辆事件转发监听类, 将本节点产生的车辆事件交由{@link BusClusterRelay}转发给其他节点, 其他节点转发来的事件不再转发
+ */
+public class BusClusterRelayApplicationListener implements ApplicationListener<BusEvent> {
+
+    @Override
+    public void onApplicationEvent(BusEvent event) {
+        BusClusterRelay relay = SpringContextUtils.getBean(BusClusterRelay.class);
+        if (relay.isEnabled() && !event.isRelayed()) {
+            relay.publish(event.getBusInfo());
+        }
+    }
+}
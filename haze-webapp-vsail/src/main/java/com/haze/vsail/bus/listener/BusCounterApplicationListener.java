@@ -0,0 +1,17 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.vsail.bus.event.BusEvent;
+import com.haze.vsail.bus.store.BusGroupCounters;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 机构车辆计数监听类, 车辆状态变化时由{@link BusGroupCounters}将车辆从原计数移至新计数
+ */
+public class BusCounterApplicationListener implements ApplicationListener<BusEvent> {
+
+    @Override
+    public void onApplicationEvent(BusEvent event) {
+        SpringContextUtils.getBean(BusGroupCounters.class).apply(event.getChange());
+    }
+}
@@ -0,0 +1,117 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.common.util.HazeJsonUtils;
+import com.haze.vsail.bus.service.BusService;
+import com.haze.vsail.bus.store.BusGroupCounters;
+import com.haze.websocket.EncodedMessage;
+import com.haze.websocket.WebSocketServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 机构车辆计数推送器, 定期向订阅了计数的websocket连接推送发生变化的机构计数
+ * <p>
+ *     每个周期只推送计数发生变化且连接有权限查看的机构, 周期内同一机构的多次变化只推送一次, 消息格式如下:
+ * </p>
+ * <pre>
+ * {"t":"c","groups":{"机构ID":{"name":机构名称,"level":"root|branch|site|line","total":车辆数,"online":在线数,"fire":火警数,"breakDown":故障数}}}
+ * </pre>
+ */
+@Component
+public class BusCounterPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusCounterPublisher.class);
+
+    private final BusGroupCounters busGroupCounters;
+
+    private final BusSubscriberIndex subscriberIndex;
+
+    private final BusService busService;
+
+    private final WebSocketServer webSocketServer;
+
+    private final long intervalMillis;
+
+    private ScheduledExecutorService scheduler;
+
+    public BusCounterPublisher(BusGroupCounters busGroupCounters, BusSubscriberIndex subscriberIndex, BusService busService, WebSocketServer webSocketServer,
+                               @Value("${vsail.counters.push-interval-ms:1000}") long intervalMillis) {
+        this.busGroupCounters = busGroupCounters;
+        this.subscriberIndex = subscriberIndex;
+        this.busService = busService;
+        this.webSocketServer = webSocketServer;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bus-counter-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::publish, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 向连接发送有权限查看机构的当前计数
+     *
+     * @param sessionId 会话ID
+     */
+    public void sendCounters(String sessionId) {
+        Map<Long, Map<String, Object>> counters = busService.getBusCounters(groupId -> subscriberIndex.canView(sessionId, groupId));
+        webSocketServer.sendMessageToSession(new EncodedMessage(encode(counters), null), sessionId);
+    }
+
+    private void publish() {
+        Set<Long> changed = busGroupCounters.drainChanged();
+        if (changed.isEmpty() || !subscriberIndex.hasCounterSubscribers()) {
+            return;
+        }
+        try {
+            Map<Long, Map<String, Object>> counters = busGroupCounters.getCounters(changed::contains);
+            String globalMessage = encode(counters);
+            subscriberIndex.forEachCounterSubscriber(sessionId -> {
+                String message = globalMessage;
+                if (!subscriberIndex.isGlobal(sessionId)) {
+                    Map<Long, Map<String, Object>> visible = new LinkedHashMap<>();
+                    counters.forEach((groupId, counter) -> {
+                        if (subscriberIndex.canView(sessionId, groupId)) {
+                            visible.put(groupId, counter);
+                        }
+                    });
+                    if (visible.isEmpty()) {
+                        return;
+                    }
+                    message = encode(visible);
+                }
+                webSocketServer.sendMessageToSession(new EncodedMessage(message, null), sessionId);
+            });
+        } catch (Exception e) {
+            logger.error("推送机构车辆计数失败, groups={}", changed.size(), e);
+        }
+    }
+
+    private static String encode(Map<Long, Map<String, Object>> counters) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("t", "c");
+        message.put("groups", counters);
+        return HazeJsonUtils.writeToCompactString(message);
+    }
+}
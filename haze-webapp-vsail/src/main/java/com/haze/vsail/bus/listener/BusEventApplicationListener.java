@@ -1,67 +1,88 @@
 package com.haze.vsail.bus.listener;
 
 import com.haze.core.spring.SpringContextUtils;
-import com.haze.shiro.ShiroUser;
-import com.haze.shiro.util.ShiroUtils;
-import com.haze.system.entity.Group;
-import com.haze.system.entity.User;
 import com.haze.vsail.bus.event.BusEvent;
-import com.haze.vsail.bus.service.BusService;
+import com.haze.vsail.bus.util.BusEventType;
 import com.haze.vsail.bus.util.BusInfo;
+import com.haze.websocket.EncodedMessage;
 import com.haze.websocket.WebSocketServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationListener;
 
 import javax.validation.constraints.NotNull;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 车辆消息监听类，在车辆信息变更后(包括车辆增删改以及车辆实时位置信息变化)由该类统一负责向websocket中发送消息, 所有连接到该系统的websocket客户端
  * 收到车辆变更事件后更新车辆信息
+ * <p>
+ *     接收者由{@link BusSubscriberIndex}按车辆所属线路直接获取, 发送开销只与有权限的接收者数量有关,
+ *     每个接收者按其协商的{@link BusPushProtocol}发送完整信息或增量信息。客户端设置了{@link BusSubscription}订阅条件时,
+ *     只推送满足条件的车辆; 车辆进入订阅范围时推送完整信息, 离开订阅范围时推送最后一次变化以便客户端移除。
+ * </p>
+ * <p>
+ *     告警事件不受订阅条件限制, 推送给所有有权限的接收者。增量协议的告警以完整信息发送, 优先消息越过队列中的增量时
+ *     客户端不会因版本号不连续而重新获取快照。
+ * </p>
+ * <p>
+ *     指标: vsail.bus.events 处理的事件数量(alarm标签), vsail.bus.fanout.recipients 每个事件的实际接收连接数,
+ *     vsail.bus.fanout 每个事件分发耗时(包括消息编码及放入发送队列)。
+ * </p>
  */
 public class BusEventApplicationListener implements ApplicationListener<BusEvent> {
 
     private static final Logger logger = LoggerFactory.getLogger(BusEventApplicationListener.class);
 
+    private static final Counter EVENTS = Counter.builder("vsail.bus.events").tag("alarm", "false").register(Metrics.globalRegistry);
+
+    private static final Counter ALARM_EVENTS = Counter.builder("vsail.bus.events").tag("alarm", "true").register(Metrics.globalRegistry);
+
+    private static final DistributionSummary RECIPIENTS = DistributionSummary.builder("vsail.bus.fanout.recipients")
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+
+    private static final Timer FANOUT = Timer.builder("vsail.bus.fanout").register(Metrics.globalRegistry);
+
     @Override
     public void onApplicationEvent(@NotNull BusEvent event) {
         WebSocketServer socketServer = SpringContextUtils.getBean(WebSocketServer.class);
-        BusService busService = SpringContextUtils.getBean(BusService.class);
+        BusSubscriberIndex subscriberIndex = SpringContextUtils.getBean(BusSubscriberIndex.class);
         logger.debug("车辆信息发生变化, event={}", event);
-        //获取已连接对象
-        Map<String, WebSocketServer> connectedMap = WebSocketServer.getConnectedMap();
-        //判断连接对象是否有查看该车权限
         BusInfo busInfo = event.getBusInfo();
-        List<ShiroUser> onlineList = ShiroUtils.getOnlineUserList();
-        connectedMap.forEach((k,v) -> {
-            //获取用户信息
-            ShiroUser user = getShiroUser(onlineList, k);
-            //判断该用户是否有对该信息具有查看权限
-            if (Objects.nonNull(user) && busService.check(busInfo, user)) {
-               //发送消息
-                socketServer.sendMessageToName(busInfo.toJson(), k);
+        Long lineGroupId = busInfo.getLineGroupId() != null ? Long.valueOf(busInfo.getLineGroupId()) : null;
+        BusInfo previous = event.getChange() != null ? event.getChange().getPrevious() : null;
+        boolean deleted = busInfo.getEventCode() == BusEventType.BUS_EVENT_DELETE.getEventCode();
+        boolean alarm = event.isAlarm();
+        (alarm ? ALARM_EVENTS : EVENTS).increment();
+        long start = System.nanoTime();
+        int[] recipients = new int[1];
+        //消息按协议只编码一次, 获取有权限查看该车辆的连接并按订阅条件发送消息
+        subscriberIndex.forEachSubscriber(lineGroupId, sessionId -> {
+            BusPushProtocol protocol = subscriberIndex.getProtocol(sessionId);
+            BusSubscription subscription = subscriberIndex.getSubscription(sessionId);
+            EncodedMessage message;
+            if (alarm) {
+                message = protocol.selectFull(event);
+            } else if (subscription == null || deleted) {
+                message = protocol.select(event);
+            } else if (subscription.matches(busInfo)) {
+                message = subscription.matches(previous) ? protocol.select(event) : protocol.selectFull(event);
+            } else if (subscription.matches(previous)) {
+                message = protocol.select(event);
+            } else {
+                message = null;
             }
-        });
-    }
-
-    private ShiroUser getShiroUser(List<ShiroUser> shiroUserList, String loginName) {
-        for (ShiroUser shiroUser : shiroUserList) {
-            if (shiroUser.getLoginName().equals(loginName)) {
-                return shiroUser;
+            if (message != null) {
+                socketServer.sendMessageToSession(message, sessionId);
+                recipients[0]++;
             }
-        }
-        return null;
+        });
+        RECIPIENTS.record(recipients[0]);
+        FANOUT.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
-
-    /*private boolean checkBus(ShiroUser user, BusInfo busInfo) {
-        if (user.getLoginName().equals(User.ADMIN)) {
-            return true;
-        }
-        Group g = new Group();
-        g.setId(Long.valueOf(busInfo.getLineGroupId()));
-        return user.getGroupList().contains(g);
-    }*/
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.vsail.bus.event.BusEvent;
+import com.haze.vsail.bus.ingest.BusHeartbeatWheel;
+import com.haze.vsail.bus.util.BusEventType;
+import com.haze.vsail.bus.util.BusInfo;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 车辆心跳监听类, 车辆在线时在{@link BusHeartbeatWheel}中重新计时, 车辆下线或删除时停止计时
+ */
+public class BusHeartbeatApplicationListener implements ApplicationListener<BusEvent> {
+
+    @Override
+    public void onApplicationEvent(BusEvent event) {
+        BusHeartbeatWheel heartbeatWheel = SpringContextUtils.getBean(BusHeartbeatWheel.class);
+        BusInfo busInfo = event.getBusInfo();
+        if (busInfo.isOnline()) {
+            heartbeatWheel.touch(busInfo.getVin(), event.getChange() != null ? event.getChange().getVersion() : -1L);
+        } else if (busInfo.getEventCode() == BusEventType.BUS_EVENT_OFF.getEventCode()
+                || busInfo.getEventCode() == BusEventType.BUS_EVENT_DELETE.getEventCode()) {
+            heartbeatWheel.cancel(busInfo.getVin());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.vsail.bus.event.BusEvent;
+import com.haze.websocket.EncodedMessage;
+
+/**
+ * 车辆消息推送协议, 由客户端建立websocket连接时通过请求参数协商
+ * <ul>
+ *     <li>未指定protocol参数时为{@link #LEGACY}, 每次推送完整车辆信息</li>
+ *     <li>protocol=delta时为{@link #DELTA}, 连接时推送快照, 之后只推送变化字段</li>
+ *     <li>protocol=delta&amp;binary=1时为{@link #DELTA_BINARY}, 只有坐标变化时以二进制帧推送</li>
+ * </ul>
+ */
+public enum BusPushProtocol {
+
+    LEGACY {
+        @Override
+        public EncodedMessage select(BusEvent event) {
+            return event.getMessage();
+        }
+
+        @Override
+        public EncodedMessage selectFull(BusEvent event) {
+            return event.getMessage();
+        }
+    },
+
+    DELTA {
+        @Override
+        public EncodedMessage select(BusEvent event) {
+            return event.getDeltaMessage();
+        }
+
+        @Override
+        public EncodedMessage selectFull(BusEvent event) {
+            return event.getFullMessage();
+        }
+    },
+
+    DELTA_BINARY {
+        @Override
+        public EncodedMessage select(BusEvent event) {
+            EncodedMessage message = event.getPositionMessage();
+            return message != null ? message : event.getDeltaMessage();
+        }
+
+        @Override
+        public EncodedMessage selectFull(BusEvent event) {
+            return event.getFullMessage();
+        }
+    };
+
+    /**
+     * 选择该协议下车辆事件对应的消息
+     *
+     * @param event 车辆事件
+     * @return 已编码消息, 为null时不发送
+     */
+    public abstract EncodedMessage select(BusEvent event);
+
+    /**
+     * 选择该协议下车辆事件对应的完整信息消息, 用于车辆进入客户端订阅范围时
+     *
+     * @param event 车辆事件
+     * @return 已编码消息, 为null时不发送
+     */
+    public abstract EncodedMessage selectFull(BusEvent event);
+
+    public boolean isDelta() {
+        return this != LEGACY;
+    }
+
+    /**
+     * 根据连接请求参数解析推送协议
+     *
+     * @param protocol protocol参数值
+     * @param binary   binary参数值
+     * @return 推送协议
+     */
+    public static BusPushProtocol of(String protocol, String binary) {
+        if (!"delta".equalsIgnoreCase(protocol)) {
+            return LEGACY;
+        }
+        return "1".equals(binary) || "true".equalsIgnoreCase(binary) ? DELTA_BINARY : DELTA;
+    }
+}
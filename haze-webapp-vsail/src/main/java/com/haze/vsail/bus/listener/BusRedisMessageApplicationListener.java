@@ -0,0 +1,36 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.redis.event.RedisMessageEvent;
+import com.haze.vsail.bus.ingest.BusEventCoalescer;
+import com.haze.vsail.bus.util.VsailConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * redis订阅消息监听类, 将车辆实时数据通知频道消息及车辆缓存键空间通知交由{@link BusEventCoalescer}合并后发送车辆事件
+ */
+public class BusRedisMessageApplicationListener implements ApplicationListener<RedisMessageEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusRedisMessageApplicationListener.class);
+
+    @Override
+    public void onApplicationEvent(RedisMessageEvent event) {
+        String vin = null;
+        if (VsailConstants.BUS_TELEMETRY_CHANNEL.equals(event.getChannel())) {
+            vin = event.getBody();
+        } else if (event.isKeyspaceNotification()) {
+            String key = event.getKeyspaceKey();
+            //删除车辆由BusService发送事件
+            if (key.startsWith(VsailConstants.BUS_INFO_KEY_PREFFIX) && !"del".equals(event.getBody())) {
+                vin = key.substring(VsailConstants.BUS_INFO_KEY_PREFFIX.length());
+            }
+        }
+        if (vin == null || vin.isEmpty()) {
+            return;
+        }
+        logger.debug("收到车辆变化通知, vin={}", vin);
+        SpringContextUtils.getBean(BusEventCoalescer.class).submit(vin.trim());
+    }
+}
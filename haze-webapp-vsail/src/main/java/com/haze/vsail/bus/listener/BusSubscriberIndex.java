@@ -0,0 +1,251 @@
+package com.haze.vsail.bus.listener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 车辆消息订阅索引, 按线路机构ID保存有权限查看该线路车辆的websocket连接会话ID
+ * <p>
+ *     在websocket连接建立、断开以及用户机构变化时维护, 车辆事件发生时直接根据车辆所属线路获取接收者,
+ *     不再遍历所有连接和在线用户。可查看所有车辆的用户(超级管理员及VSAIL机构用户)单独存放。
+ *     同时保存每个连接协商的推送协议{@link BusPushProtocol}以及客户端设置的订阅条件{@link BusSubscription}。
+ *     同一用户的多个连接分别登记, 各自协商协议和订阅条件。另外登记订阅了机构车辆计数的连接。
+ * </p>
+ */
+@Component
+public class BusSubscriberIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusSubscriberIndex.class);
+
+    /**
+     * 线路机构ID -> 会话ID集合
+     */
+    private final Map<Long, Set<String>> lineGroupSubscribers = new ConcurrentHashMap<>();
+
+    /**
+     * 可查看所有车辆的会话ID集合
+     */
+    private final Set<String> globalSubscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 会话ID -> 已登记的线路机构ID集合, 用于取消订阅
+     */
+    private final Map<String, Set<Long>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * 用户名 -> 会话ID集合, 用于用户机构变化时重新登记该用户的所有连接
+     */
+    private final Map<String, Set<String>> userSessions = new ConcurrentHashMap<>();
+
+    /**
+     * 会话ID -> 用户名
+     */
+    private final Map<String, String> sessionUsers = new ConcurrentHashMap<>();
+
+    /**
+     * 会话ID -> 推送协议, 未登记时为{@link BusPushProtocol#LEGACY}
+     */
+    private final Map<String, BusPushProtocol> protocols = new ConcurrentHashMap<>();
+
+    /**
+     * 会话ID -> 客户端订阅条件, 未设置时推送所有有权限查看的车辆
+     */
+    private final Map<String, BusSubscription> filters = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅机构车辆计数的会话ID集合
+     */
+    private final Set<String> counterSubscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 登记连接订阅的线路
+     *
+     * @param sessionId    会话ID
+     * @param name         用户名
+     * @param lineGroupIds 可查看的线路机构ID集合, 为null时表示可查看所有车辆
+     */
+    public synchronized void subscribe(String sessionId, String name, Set<Long> lineGroupIds) {
+        removeSubscriptions(sessionId);
+        if (lineGroupIds == null) {
+            globalSubscribers.add(sessionId);
+            subscriptions.put(sessionId, Collections.emptySet());
+        } else {
+            for (Long lineGroupId : lineGroupIds) {
+                lineGroupSubscribers.computeIfAbsent(lineGroupId, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+            }
+            subscriptions.put(sessionId, lineGroupIds);
+        }
+        sessionUsers.put(sessionId, name);
+        userSessions.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        logger.debug("登记车辆消息订阅, name={}, sessionId={}, lineGroupIds={}", name, sessionId, lineGroupIds);
+    }
+
+    /**
+     * 重新登记仍然存在的连接订阅的线路, 与{@link #unsubscribe(String)}互斥, 已断开的连接不会被重新登记
+     *
+     * @param sessionId    会话ID
+     * @param name         用户名
+     * @param lineGroupIds 可查看的线路机构ID集合, 为null时表示可查看所有车辆
+     * @return 是否重新登记, 连接已断开时返回false
+     */
+    public synchronized boolean resubscribe(String sessionId, String name, Set<Long> lineGroupIds) {
+        if (!sessionUsers.containsKey(sessionId)) {
+            return false;
+        }
+        subscribe(sessionId, name, lineGroupIds);
+        return true;
+    }
+
+    /**
+     * 取消连接的所有订阅
+     *
+     * @param sessionId 会话ID
+     */
+    public synchronized void unsubscribe(String sessionId) {
+        removeSubscriptions(sessionId);
+        protocols.remove(sessionId);
+        filters.remove(sessionId);
+        counterSubscribers.remove(sessionId);
+        String name = sessionUsers.remove(sessionId);
+        if (name != null) {
+            Set<String> sessionIds = userSessions.get(name);
+            if (sessionIds != null) {
+                sessionIds.remove(sessionId);
+                if (sessionIds.isEmpty()) {
+                    userSessions.remove(name);
+                }
+            }
+        }
+    }
+
+    private void removeSubscriptions(String sessionId) {
+        globalSubscribers.remove(sessionId);
+        Set<Long> lineGroupIds = subscriptions.remove(sessionId);
+        if (lineGroupIds != null) {
+            for (Long lineGroupId : lineGroupIds) {
+                Set<String> sessionIds = lineGroupSubscribers.get(lineGroupId);
+                if (sessionIds != null) {
+                    sessionIds.remove(sessionId);
+                    if (sessionIds.isEmpty()) {
+                        lineGroupSubscribers.remove(lineGroupId);
+                    }
+                }
+            }
+        }
+    }
+
+    public void setProtocol(String sessionId, BusPushProtocol protocol) {
+        protocols.put(sessionId, protocol);
+    }
+
+    public BusPushProtocol getProtocol(String sessionId) {
+        return protocols.getOrDefault(sessionId, BusPushProtocol.LEGACY);
+    }
+
+    /**
+     * 设置客户端订阅条件
+     *
+     * @param sessionId    会话ID
+     * @param subscription 订阅条件, 为null或未指定条件时清除
+     */
+    public void setSubscription(String sessionId, BusSubscription subscription) {
+        if (subscription == null || subscription.isEmpty()) {
+            filters.remove(sessionId);
+        } else {
+            filters.put(sessionId, subscription);
+        }
+    }
+
+    public BusSubscription getSubscription(String sessionId) {
+        return filters.get(sessionId);
+    }
+
+    public boolean isSubscribed(String sessionId) {
+        return subscriptions.containsKey(sessionId);
+    }
+
+    /**
+     * 设置连接是否订阅机构车辆计数
+     *
+     * @param sessionId  会话ID
+     * @param subscribed 是否订阅
+     */
+    public void setCounterSubscribed(String sessionId, boolean subscribed) {
+        if (subscribed) {
+            counterSubscribers.add(sessionId);
+        } else {
+            counterSubscribers.remove(sessionId);
+        }
+    }
+
+    public boolean hasCounterSubscribers() {
+        return !counterSubscribers.isEmpty();
+    }
+
+    /**
+     * 遍历订阅机构车辆计数的连接会话ID
+     */
+    public void forEachCounterSubscriber(Consumer<String> consumer) {
+        counterSubscribers.forEach(consumer);
+    }
+
+    /**
+     * 判断连接是否可查看所有车辆
+     */
+    public boolean isGlobal(String sessionId) {
+        return globalSubscribers.contains(sessionId);
+    }
+
+    /**
+     * 判断连接是否可查看机构车辆计数, 非全部车辆用户只可查看已登记的线路机构, 上级机构计数包含其他线路车辆, 不可查看
+     *
+     * @param sessionId 会话ID
+     * @param groupId   机构ID
+     * @return 是否可查看
+     */
+    public boolean canView(String sessionId, Long groupId) {
+        if (globalSubscribers.contains(sessionId)) {
+            return true;
+        }
+        Set<Long> lineGroupIds = subscriptions.get(sessionId);
+        return lineGroupIds != null && lineGroupIds.contains(groupId);
+    }
+
+    /**
+     * 获取用户已登记的所有会话ID
+     *
+     * @param name 用户名
+     * @return 会话ID集合, 用户没有连接时返回空集合
+     */
+    public Set<String> getSessionIds(String name) {
+        Set<String> sessionIds = userSessions.get(name);
+        return sessionIds != null ? Collections.unmodifiableSet(sessionIds) : Collections.emptySet();
+    }
+
+    /**
+     * 遍历有权限查看该线路车辆的连接会话ID
+     *
+     * @param lineGroupId 线路机构ID, 为null时只遍历可查看所有车辆的连接
+     * @param consumer    会话ID处理
+     */
+    public void forEachSubscriber(Long lineGroupId, Consumer<String> consumer) {
+        globalSubscribers.forEach(consumer);
+        if (lineGroupId != null) {
+            Set<String> sessionIds = lineGroupSubscribers.get(lineGroupId);
+            if (sessionIds != null) {
+                sessionIds.forEach(consumer);
+            }
+        }
+    }
+
+    public int size() {
+        return subscriptions.size();
+    }
+}
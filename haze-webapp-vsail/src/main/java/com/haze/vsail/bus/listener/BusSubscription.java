@@ -0,0 +1,118 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.vsail.bus.util.BusInfo;
+
+import java.util.Set;
+
+/**
+ * websocket客户端车辆消息订阅条件
+ * <p>
+ *     客户端通过websocket发送json消息设置订阅条件, 地图平移或缩放后可重新发送:
+ * </p>
+ * <pre>
+ * {"type":"subscribe","bbox":[最小经度,最小纬度,最大经度,最大纬度],"lineGroups":[线路机构ID],"vins":[vin码]}
+ * {"type":"unsubscribe"}
+ * {"type":"subscribeCounters"}
+ * {"type":"unsubscribeCounters"}
+ * </pre>
+ * <p>
+ *     bbox、lineGroups、vins均为可选, 车辆满足其中任一条件即推送; 三者均未指定或取消订阅时推送所有有权限查看的车辆。
+ *     订阅条件只缩小推送范围, 用户车辆权限仍由{@link BusSubscriberIndex}保证。
+ * </p>
+ * <p>
+ *     subscribeCounters订阅有权限查看机构的车辆计数, 订阅后立即收到当前计数, 之后定期收到发生变化的机构计数, 格式见{@link BusCounterPublisher}。
+ *     计数订阅与车辆订阅条件互不影响。
+ * </p>
+ */
+public class BusSubscription {
+
+    public static final String TYPE_SUBSCRIBE = "subscribe";
+
+    public static final String TYPE_UNSUBSCRIBE = "unsubscribe";
+
+    public static final String TYPE_SUBSCRIBE_COUNTERS = "subscribeCounters";
+
+    public static final String TYPE_UNSUBSCRIBE_COUNTERS = "unsubscribeCounters";
+
+    private String type;
+
+    private double[] bbox;
+
+    private Set<Long> lineGroups;
+
+    private Set<String> vins;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public double[] getBbox() {
+        return bbox;
+    }
+
+    public void setBbox(double[] bbox) {
+        this.bbox = bbox;
+    }
+
+    public Set<Long> getLineGroups() {
+        return lineGroups;
+    }
+
+    public void setLineGroups(Set<Long> lineGroups) {
+        this.lineGroups = lineGroups;
+    }
+
+    public Set<String> getVins() {
+        return vins;
+    }
+
+    public void setVins(Set<String> vins) {
+        this.vins = vins;
+    }
+
+    /**
+     * 是否未指定任何订阅条件
+     */
+    public boolean isEmpty() {
+        return (bbox == null || bbox.length != 4) && (lineGroups == null || lineGroups.isEmpty()) && (vins == null || vins.isEmpty());
+    }
+
+    /**
+     * 判断车辆是否满足订阅条件
+     *
+     * @param busInfo 车辆信息, 为null时不满足
+     * @return 是否满足
+     */
+    public boolean matches(BusInfo busInfo) {
+        if (busInfo == null) {
+            return false;
+        }
+        if (isEmpty()) {
+            return true;
+        }
+        if (vins != null && vins.contains(busInfo.getVin())) {
+            return true;
+        }
+        if (lineGroups != null && busInfo.getLineGroupId() != null && lineGroups.contains(Long.valueOf(busInfo.getLineGroupId()))) {
+            return true;
+        }
+        return bbox != null && bbox.length == 4 && inBbox(busInfo);
+    }
+
+    private boolean inBbox(BusInfo busInfo) {
+        if (busInfo.getX() == null || busInfo.getY() == null) {
+            return false;
+        }
+        try {
+            double x = Double.parseDouble(busInfo.getX());
+            double y = Double.parseDouble(busInfo.getY());
+            return x >= bbox[0] && y >= bbox[1] && x <= bbox[2] && y <= bbox[3];
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
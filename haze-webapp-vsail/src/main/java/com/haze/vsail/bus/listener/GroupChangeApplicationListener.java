@@ -0,0 +1,22 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.system.event.GroupChangeEvent;
+import com.haze.vsail.bus.service.BusVisibilityCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 机构变化监听类, 机构新增、修改或删除后子树范围无法确定, 移除所有用户可查看车辆缓存
+ */
+public class GroupChangeApplicationListener implements ApplicationListener<GroupChangeEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupChangeApplicationListener.class);
+
+    @Override
+    public void onApplicationEvent(GroupChangeEvent event) {
+        SpringContextUtils.getBean(BusVisibilityCache.class).invalidateAll();
+        logger.debug("机构发生变化, 移除可查看车辆缓存, groupId={}", event.getGroupId());
+    }
+}
@@ -0,0 +1,25 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.vsail.bus.event.BusEvent;
+import com.haze.vsail.bus.store.SensorHistoryStore;
+import com.haze.vsail.bus.util.BusEventType;
+import com.haze.vsail.bus.util.BusInfo;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 车辆传感器历史数据监听类, 车辆信息变化时将传感器数据写入{@link SensorHistoryStore}, 车辆删除时清除历史数据
+ */
+public class SensorHistoryApplicationListener implements ApplicationListener<BusEvent> {
+
+    @Override
+    public void onApplicationEvent(BusEvent event) {
+        SensorHistoryStore sensorHistoryStore = SpringContextUtils.getBean(SensorHistoryStore.class);
+        BusInfo busInfo = event.getBusInfo();
+        if (busInfo.getEventCode() == BusEventType.BUS_EVENT_DELETE.getEventCode()) {
+            sensorHistoryStore.remove(busInfo.getVin());
+        } else {
+            sensorHistoryStore.record(busInfo);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.system.entity.User;
+import com.haze.system.event.UserChangeGroupEvent;
+import com.haze.vsail.bus.service.BusService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 用户机构变化监听类, 记录用户新的可查看车辆缓存键, 用户已建立websocket连接时按新机构重新登记该用户所有连接的车辆消息订阅
+ */
+public class UserChangeGroupApplicationListener implements ApplicationListener<UserChangeGroupEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeGroupApplicationListener.class);
+
+    @Override
+    public void onApplicationEvent(UserChangeGroupEvent event) {
+        BusSubscriberIndex subscriberIndex = SpringContextUtils.getBean(BusSubscriberIndex.class);
+        BusService busService = SpringContextUtils.getBean(BusService.class);
+        User user = event.getUser();
+        busService.onUserGroupChanged(user);
+        List<String> sessionIds = new ArrayList<>(subscriberIndex.getSessionIds(user.getLoginName()));
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        Set<Long> lineGroupIds = busService.getLineGroupIds(user.getLoginName(), user.getGroup());
+        for (String sessionId : sessionIds) {
+            subscriberIndex.resubscribe(sessionId, user.getLoginName(), lineGroupIds);
+        }
+        logger.debug("用户机构发生变化, 重新登记车辆消息订阅, user={}", user.getLoginName());
+    }
+}
@@ -0,0 +1,80 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.common.util.HazeJsonUtils;
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.shiro.ShiroUser;
+import com.haze.shiro.util.ShiroUtils;
+import com.haze.vsail.bus.service.BusService;
+import com.haze.vsail.bus.store.BusStateSnapshot;
+import com.haze.vsail.bus.util.BusDeltaCodec;
+import com.haze.websocket.EncodedMessage;
+import com.haze.websocket.WebSocketServer;
+import com.haze.websocket.event.WebSocketMessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * websocket客户端消息监听类, 处理客户端发送的车辆消息订阅条件{@link BusSubscription}
+ * <p>
+ *     使用增量协议的客户端设置订阅条件后重新发送满足条件车辆的快照, 订阅机构车辆计数后发送当前计数
+ * </p>
+ */
+public class WebSocketMessageApplicationListener implements ApplicationListener<WebSocketMessageEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketMessageApplicationListener.class);
+
+    @Override
+    public void onApplicationEvent(WebSocketMessageEvent event) {
+        String message = event.getMessage();
+        if (message == null || !message.trim().startsWith("{")) {
+            return;
+        }
+        BusSubscriberIndex subscriberIndex = SpringContextUtils.getBean(BusSubscriberIndex.class);
+        String sessionId = event.getSessionId();
+        if (!subscriberIndex.isSubscribed(sessionId)) {
+            return;
+        }
+        BusSubscription subscription = HazeJsonUtils.readFromString(message, BusSubscription.class);
+        if (subscription == null || subscription.getType() == null) {
+            logger.warn("无法识别的websocket消息, name={}, message={}", event.getName(), message);
+            return;
+        }
+        switch (subscription.getType()) {
+            case BusSubscription.TYPE_SUBSCRIBE:
+                subscriberIndex.setSubscription(sessionId, subscription);
+                break;
+            case BusSubscription.TYPE_UNSUBSCRIBE:
+                subscriberIndex.setSubscription(sessionId, null);
+                break;
+            case BusSubscription.TYPE_SUBSCRIBE_COUNTERS:
+                subscriberIndex.setCounterSubscribed(sessionId, true);
+                SpringContextUtils.getBean(BusCounterPublisher.class).sendCounters(sessionId);
+                logger.debug("订阅机构车辆计数, name={}, sessionId={}", event.getName(), sessionId);
+                return;
+            case BusSubscription.TYPE_UNSUBSCRIBE_COUNTERS:
+                subscriberIndex.setCounterSubscribed(sessionId, false);
+                return;
+            default:
+                logger.warn("无法识别的websocket消息类型, name={}, type={}", event.getName(), subscription.getType());
+                return;
+        }
+        logger.debug("更新车辆消息订阅条件, name={}, sessionId={}, type={}", event.getName(), sessionId, subscription.getType());
+        if (subscriberIndex.getProtocol(sessionId).isDelta()) {
+            sendSnapshot(event.getName(), sessionId, subscriberIndex.getSubscription(sessionId));
+        }
+    }
+
+    private void sendSnapshot(String name, String sessionId, BusSubscription subscription) {
+        ShiroUser user = ShiroUtils.getOnlineUser(name);
+        if (user == null) {
+            return;
+        }
+        BusService busService = SpringContextUtils.getBean(BusService.class);
+        BusStateSnapshot snapshot = busService.getSnapshot(busService.getLineGroupIds(user.getLoginName(), user.getGroup()));
+        if (subscription != null) {
+            snapshot = snapshot.filter(subscription::matches);
+        }
+        SpringContextUtils.getBean(WebSocketServer.class).sendMessageToSession(new EncodedMessage(BusDeltaCodec.encodeSnapshot(snapshot), null), sessionId);
+    }
+}
@@ -0,0 +1,66 @@
+package com.haze.vsail.bus.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.shiro.ShiroUser;
+import com.haze.shiro.util.ShiroUtils;
+import com.haze.vsail.bus.service.BusService;
+import com.haze.vsail.bus.store.BusStateSnapshot;
+import com.haze.vsail.bus.util.BusDeltaCodec;
+import com.haze.websocket.EncodedMessage;
+import com.haze.websocket.WebSocketServer;
+import com.haze.websocket.event.WebSocketSessionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+
+import java.util.Set;
+
+/**
+ * websocket连接监听类, 连接建立时根据用户车辆权限登记车辆消息订阅, 连接断开时取消订阅
+ * <p>
+ *     连接使用增量协议时, 先登记订阅再发送车辆状态快照, 快照之前到达的增量由客户端按版本号丢弃。
+ *     连接参数包含客户端已持有快照的{@code since}和{@code epoch}时只发送之后的增量快照。
+ * </p>
+ */
+public class WebSocketSessionApplicationListener implements ApplicationListener<WebSocketSessionEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketSessionApplicationListener.class);
+
+    @Override
+    public void onApplicationEvent(WebSocketSessionEvent event) {
+        BusSubscriberIndex subscriberIndex = SpringContextUtils.getBean(BusSubscriberIndex.class);
+        if (event.isOpen()) {
+            ShiroUser user = ShiroUtils.getOnlineUser(event.getName());
+            if (user == null) {
+                logger.warn("websocket连接用户未登录, name={}", event.getName());
+                subscriberIndex.unsubscribe(event.getSessionId());
+                return;
+            }
+            BusService busService = SpringContextUtils.getBean(BusService.class);
+            BusPushProtocol protocol = BusPushProtocol.of(event.getParameter("protocol"), event.getParameter("binary"));
+            Set<Long> lineGroupIds = busService.getLineGroupIds(user.getLoginName(), user.getGroup());
+            subscriberIndex.setProtocol(event.getSessionId(), protocol);
+            subscriberIndex.subscribe(event.getSessionId(), event.getName(), lineGroupIds);
+            if (protocol.isDelta()) {
+                WebSocketServer socketServer = SpringContextUtils.getBean(WebSocketServer.class);
+                BusStateSnapshot snapshot = getSnapshot(busService, lineGroupIds, event);
+                socketServer.sendMessageToSession(new EncodedMessage(BusDeltaCodec.encodeSnapshot(snapshot), null), event.getSessionId());
+            }
+        } else {
+            subscriberIndex.unsubscribe(event.getSessionId());
+        }
+    }
+
+    private BusStateSnapshot getSnapshot(BusService busService, Set<Long> lineGroupIds, WebSocketSessionEvent event) {
+        String since = event.getParameter("since");
+        String epoch = event.getParameter("epoch");
+        if (since != null && epoch != null) {
+            try {
+                return busService.getSnapshot(lineGroupIds, Long.parseLong(epoch), Long.parseLong(since));
+            } catch (NumberFormatException e) {
+                logger.debug("websocket增量快照参数无效, since={}, epoch={}", since, epoch);
+            }
+        }
+        return busService.getSnapshot(lineGroupIds);
+    }
+}
@@ -0,0 +1,271 @@
+package com.haze.vsail.bus.service;
+
+import com.haze.redis.manage.RedisManager;
+import com.haze.vsail.bus.dao.BusDao;
+import com.haze.vsail.bus.util.BusCacheEntry;
+import com.haze.vsail.bus.util.VsailConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 车辆redis缓存核对任务, 以数据库运营车辆为准补齐缺失或过期的车辆缓存
+ * <p>
+ *     核对线程按车辆ID分页读取运营车辆缓存信息({@link BusDao#findUsedBusCacheEntries(Long, org.springframework.data.domain.Pageable)}),
+ *     每页交由有界线程池处理: 通过管道一次读取该页所有车辆缓存, 与数据库比较后只将缺失或不一致的字段通过管道一次写入,
+ *     同时将车辆登记到运营车辆集合。线程池队列已满时由核对线程自己处理该页, 读取速度不会超过redis写入速度。
+ * </p>
+ * <p>
+ *     只写入车辆基本信息字段, 车辆实时数据字段不受影响。补齐或修正的车辆通过{@link BusService#sendMessages(List)}同步到内存中的车辆状态并发送车辆事件,
+ *     权限过滤、机构计数及推送随之更新。运营车辆集合中存在但数据库中已不是运营车辆的车辆只统计数量, 不自动移除。
+ *     开启{@code vsail.bus-cache.reconcile-on-startup}时在应用启动完成后执行一次, 也可通过{@link #reconcileAsync()}随时执行。
+ *     运营车辆集合不存在时车辆缓存会由{@link BusService#reloadBusCache()}从数据库重建, 启动时不再重复核对。
+ * </p>
+ */
+@Component
+public class BusCacheReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusCacheReconciler.class);
+
+    private final BusDao busDao;
+
+    private final RedisManager redisManager;
+
+    private final BusService busService;
+
+    private final boolean reconcileOnStartup;
+
+    private final int pageSize;
+
+    private final int threads;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * 当前或最近一次核对进度
+     */
+    private volatile Progress progress;
+
+    public BusCacheReconciler(BusDao busDao, RedisManager redisManager, BusService busService,
+                              @Value("${vsail.bus-cache.reconcile-on-startup:false}") boolean reconcileOnStartup,
+                              @Value("${vsail.bus-cache.page-size:500}") int pageSize,
+                              @Value("${vsail.bus-cache.threads:4}") int threads) {
+        this.busDao = busDao;
+        this.redisManager = redisManager;
+        this.busService = busService;
+        this.reconcileOnStartup = reconcileOnStartup;
+        this.pageSize = Math.max(pageSize, 1);
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * 应用启动完成后执行一次核对, 未开启或运营车辆集合不存在(将由{@link BusService#reloadBusCache()}重建)时跳过
+     */
+    public void onStartup() {
+        if (!reconcileOnStartup) {
+            return;
+        }
+        if (!redisManager.hasKey(VsailConstants.BUS_VIN_SET_KEY)) {
+            logger.info("运营车辆集合不存在, 车辆缓存将从数据库重建, 跳过启动核对");
+            return;
+        }
+        reconcileAsync();
+    }
+
+    /**
+     * 在后台线程中执行一次核对
+     *
+     * @return 是否开始执行, 已有核对正在执行时返回false
+     */
+    public boolean reconcileAsync() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                reconcile();
+            } finally {
+                running.set(false);
+            }
+        }, "bus-cache-reconciler");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 获取当前或最近一次核对的进度及耗时
+     */
+    public Map<String, Object> getStats() {
+        Progress current = progress;
+        Map<String, Object> stats = current == null ? new LinkedHashMap<>() : current.toMap();
+        stats.put("running", running.get());
+        return stats;
+    }
+
+    private void reconcile() {
+        Progress current = new Progress();
+        progress = current;
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads), r -> {
+                    Thread thread = new Thread(r, "bus-cache-reconciler-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        Set<String> vins = ConcurrentHashMap.newKeySet();
+        boolean completed = false;
+        try {
+            long afterId = 0L;
+            List<BusCacheEntry> page;
+            do {
+                long start = System.nanoTime();
+                page = busDao.findUsedBusCacheEntries(afterId, PageRequest.of(0, pageSize));
+                current.readNanos.add(System.nanoTime() - start);
+                if (!page.isEmpty()) {
+                    afterId = page.get(page.size() - 1).getId();
+                    page.forEach(entry -> vins.add(entry.getVin()));
+                    List<BusCacheEntry> entries = page;
+                    executor.execute(() -> reconcilePage(entries, current));
+                }
+            } while (page.size() == pageSize);
+            executor.shutdown();
+            completed = executor.awaitTermination(10, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("车辆缓存核对失败", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (completed && current.failedPages.sum() == 0) {
+            for (String vin : redisManager.getSetMembers(VsailConstants.BUS_VIN_SET_KEY)) {
+                if (!vins.contains(vin)) {
+                    current.orphaned.increment();
+                }
+            }
+        }
+        current.finish(completed);
+        logger.info("车辆缓存核对完成, {}", current.toMap());
+    }
+
+    /**
+     * 核对一页车辆缓存
+     */
+    private void reconcilePage(List<BusCacheEntry> entries, Progress current) {
+        long start = System.nanoTime();
+        try {
+            List<String> keys = new ArrayList<>(entries.size());
+            entries.forEach(entry -> keys.add(VsailConstants.BUS_INFO_KEY_PREFFIX + entry.getVin()));
+            List<Map<String, Object>> cachedList = redisManager.getHashes(keys);
+            Map<String, Map<String, Object>> hashes = new LinkedHashMap<>();
+            for (int i = 0; i < entries.size(); i++) {
+                BusCacheEntry entry = entries.get(i);
+                Map<String, Object> cached = cachedList.get(i);
+                Map<String, Object> changed = new HashMap<>();
+                entry.toMap().forEach((field, value) -> {
+                    if (value != null && !value.equals(cached.get(field))) {
+                        changed.put(field, value);
+                    }
+                });
+                if (cached.isEmpty()) {
+                    current.missing.increment();
+                } else if (!changed.isEmpty()) {
+                    current.stale.increment();
+                } else {
+                    current.unchanged.increment();
+                }
+                if (!changed.isEmpty()) {
+                    hashes.put(keys.get(i), changed);
+                }
+            }
+            redisManager.setHashes(hashes);
+            if (!hashes.isEmpty()) {
+                List<String> changedVins = new ArrayList<>(hashes.size());
+                hashes.keySet().forEach(key -> changedVins.add(key.substring(VsailConstants.BUS_INFO_KEY_PREFFIX.length())));
+                busService.sendMessages(changedVins);
+            }
+            String[] members = new String[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                members[i] = entries.get(i).getVin();
+            }
+            redisManager.addSetMembers(VsailConstants.BUS_VIN_SET_KEY, members);
+            current.scanned.add(entries.size());
+            current.pages.increment();
+        } catch (RuntimeException e) {
+            current.failedPages.increment();
+            logger.error("车辆缓存核对失败, 车辆ID={}~{}", entries.get(0).getId(), entries.get(entries.size() - 1).getId(), e);
+        } finally {
+            current.redisNanos.add(System.nanoTime() - start);
+        }
+        logger.debug("车辆缓存核对进度, 已核对车辆数量={}", current.scanned.sum());
+    }
+
+    private static final class Progress {
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile long elapsedNanos = -1L;
+
+        private volatile boolean completed = false;
+
+        private final LongAdder pages = new LongAdder();
+
+        private final LongAdder failedPages = new LongAdder();
+
+        private final LongAdder scanned = new LongAdder();
+
+        private final LongAdder missing = new LongAdder();
+
+        private final LongAdder stale = new LongAdder();
+
+        private final LongAdder unchanged = new LongAdder();
+
+        private final LongAdder orphaned = new LongAdder();
+
+        private final LongAdder readNanos = new LongAdder();
+
+        private final LongAdder redisNanos = new LongAdder();
+
+        private void finish(boolean completed) {
+            this.completed = completed;
+            this.elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        private Map<String, Object> toMap() {
+            long elapsed = elapsedNanos < 0 ? System.nanoTime() - startNanos : elapsedNanos;
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("startTime", new Date(startTime));
+            map.put("completed", completed);
+            map.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsed));
+            map.put("pages", pages.sum());
+            map.put("failedPages", failedPages.sum());
+            map.put("scanned", scanned.sum());
+            map.put("missing", missing.sum());
+            map.put("stale", stale.sum());
+            map.put("unchanged", unchanged.sum());
+            map.put("orphaned", orphaned.sum());
+            //数据库读取为核对线程耗时, redis耗时为各工作线程耗时之和
+            map.put("databaseMs", TimeUnit.NANOSECONDS.toMillis(readNanos.sum()));
+            map.put("redisMs", TimeUnit.NANOSECONDS.toMillis(redisNanos.sum()));
+            return map;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.haze.vsail.bus.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.haze.common.util.HazeJsonUtils;
 import com.haze.common.util.HazeStringUtils;
 import com.haze.core.service.AbstractLogicDeletedService;
 import com.haze.core.spring.SpringContextUtils;
@@ -8,6 +10,7 @@ import com.haze.shiro.ShiroUser;
 import com.haze.shiro.util.ShiroUtils;
 import com.haze.system.entity.Dict;
 import com.haze.system.entity.Group;
+import com.haze.system.entity.User;
 import com.haze.system.service.DictService;
 import com.haze.system.service.GroupService;
 import com.haze.system.utils.Status;
@@ -15,18 +18,37 @@ import com.haze.vsail.bus.dao.BusDao;
 import com.haze.vsail.bus.entity.Bus;
 import com.haze.vsail.bus.entity.BusModel;
 import com.haze.vsail.bus.event.BusEvent;
+import com.haze.vsail.bus.ingest.BusTelemetry;
+import com.haze.vsail.bus.store.BusGroupCounters;
+import com.haze.vsail.bus.store.BusStateChange;
+import com.haze.vsail.bus.store.BusStateSnapshot;
+import com.haze.vsail.bus.store.BusStateStore;
+import com.haze.vsail.bus.store.BusViewport;
+import com.haze.vsail.bus.util.BusCacheEntry;
+import com.haze.vsail.bus.util.BusDeltaCodec;
 import com.haze.vsail.bus.util.BusEventType;
 import com.haze.vsail.bus.util.BusInfo;
+import com.haze.vsail.bus.util.BusInfoCodec;
 import com.haze.vsail.bus.util.VsailConstants;
 import org.apache.shiro.SecurityUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.function.LongPredicate;
 
 @Service
 public class BusService extends AbstractLogicDeletedService<Bus, Long> {
 
+    /**
+     * 流式输出快照时每次从车辆状态存储读取的车辆数量
+     */
+    private static final int SNAPSHOT_CHUNK_SIZE = 256;
+
     private BusDao busDao;
 
     private GroupService groupService;
@@ -36,12 +58,27 @@ public class BusService extends AbstractLogicDeletedService<Bus, Long> {
 
     private RedisManager redisManager;
 
-    public BusService(BusDao busDao, GroupService groupService, DictService dictService, RedisManager redisManager) {
+    private BusStateStore busStateStore;
+
+    private BusVisibilityCache busVisibilityCache;
+
+    private BusGroupCounters busGroupCounters;
+
+    /**
+     * 实时数据及心跳下线写入锁, 内存状态与redis按相同顺序写入, 普通与火警通道同时处理同一车辆时redis不会被较早的数据帧覆盖
+     */
+    private final Object telemetryLock = new Object();
+
+    public BusService(BusDao busDao, GroupService groupService, DictService dictService, RedisManager redisManager, BusStateStore busStateStore,
+                      BusVisibilityCache busVisibilityCache, BusGroupCounters busGroupCounters) {
         super(busDao);
         this.busDao = busDao;
         this.groupService = groupService;
         this.dictService = dictService;
         this.redisManager = redisManager;
+        this.busStateStore = busStateStore;
+        this.busVisibilityCache = busVisibilityCache;
+        this.busGroupCounters = busGroupCounters;
     }
 
     @Transactional(readOnly = true)
@@ -64,6 +101,9 @@ public class BusService extends AbstractLogicDeletedService<Bus, Long> {
 
     /**
      * 获取用户权限下车辆信息 对于VSAIL部门经理可以获取所有车辆
+     * <p>
+     *     可查看车辆的ID由{@link BusVisibilityCache}按用户机构缓存, 只在缓存不存在时查询机构下的车辆, 之后按车辆ID加载车辆
+     * </p>
      * @return
      */
     @Transactional(readOnly = true)
@@ -73,38 +113,105 @@ public class BusService extends AbstractLogicDeletedService<Bus, Long> {
         ShiroUser shiroUser = (ShiroUser) SecurityUtils.getSubject().getPrincipal();
         if (shiroUser == null) {
             logger.warn("未登陆用户");
-        } else {
-            //检测用户是否为超级管理员
-            if (shiroUser.isSuperAdmin()) {
-                //获取所有的车辆信息 TODO 先从缓存中加载
-                busList = this.findAll();
-            } else {
-                //首先获取用户顶级机构信息
-                if (shiroUser.getGroup() == null) {
-                    return busList;
-                } else {
-                    Group rootGroup = shiroUser.getGroup().getRootGroup();
-                    if (rootGroup.getCode().equalsIgnoreCase(VsailConstants.GROUP_VSAIL_CODE)) { //vsail机构下用户返回所有车辆
-                        //TODO 先从缓存中加载
-                        busList = this.findAll();
-                    } else if (rootGroup.getCode().equalsIgnoreCase(VsailConstants.GROUP_BUS)) {
-                        //获取机构以及机构下所有子机构车辆信息
-                        Map<String, Object> queryParams = new HashMap<>();
-                        queryParams.put("group_in", shiroUser.getGroupList());
-                        //TODO 先从缓存中加载
-                        busList = this.findAll(queryParams);
-                    } else {
-                        //其它部门类型直接返回空列表
-                    }
-                }
-            }
+            return busList;
+        }
+        long key = getVisibilityKey(shiroUser);
+        if (key == BusVisibilityCache.ALL) {
+            return this.findAll();
+        }
+        BusVisibilityCache.VisibleBuses visibleBuses = getVisibleBuses(key);
+        if (visibleBuses.size() > 0) {
+            busList = busDao.findAllById(visibleBuses.getBusIds());
         }
         //TODO 加载完成之后发送websocket
         return busList;
     }
 
     /**
-     * 保存车辆信息
+     * 获取用户可查看的车辆ID
+     * @param shiroUser 当前登陆用户
+     * @return 可查看车辆
+     */
+    @Transactional(readOnly = true)
+    public BusVisibilityCache.VisibleBuses getVisibleBuses(ShiroUser shiroUser) {
+        return getVisibleBuses(getVisibilityKey(shiroUser));
+    }
+
+    private BusVisibilityCache.VisibleBuses getVisibleBuses(long key) {
+        if (key == BusVisibilityCache.NONE) {
+            return new BusVisibilityCache.VisibleBuses(Collections.emptySet(), Collections.emptyList());
+        }
+        return busVisibilityCache.get(key, () -> {
+            if (key == BusVisibilityCache.ALL) {
+                return new BusVisibilityCache.VisibleBuses(Collections.emptySet(), busDao.findAllIds());
+            }
+            //获取机构以及机构下所有子机构车辆信息
+            Group group = groupService.findById(key);
+            Set<Long> lineGroupIds = new HashSet<>();
+            lineGroupIds.add(group.getId());
+            group.getChildList(Status.ENABLE).forEach(g -> lineGroupIds.add(g.getId()));
+            return new BusVisibilityCache.VisibleBuses(lineGroupIds, busDao.findIdsByLineGroupIds(lineGroupIds));
+        });
+    }
+
+    /**
+     * 获取用户可查看车辆的缓存键, 用户机构变化后使用变化时记录的缓存键
+     */
+    private long getVisibilityKey(ShiroUser shiroUser) {
+        //检测用户是否为超级管理员
+        if (shiroUser.isSuperAdmin()) {
+            return BusVisibilityCache.ALL;
+        }
+        Long key = busVisibilityCache.getPrincipalKey(shiroUser.getLoginName());
+        return key != null ? key : getVisibilityKey(shiroUser.getGroup());
+    }
+
+    /**
+     * 根据用户所属机构获取可查看车辆的缓存键, vsail机构下用户可查看所有车辆, 公交机构下用户可查看本机构及下级机构车辆, 其它机构无车辆权限
+     */
+    private long getVisibilityKey(Group group) {
+        if (group == null) {
+            return BusVisibilityCache.NONE;
+        }
+        Group rootGroup = group.getRootGroup();
+        if (rootGroup.getCode().equalsIgnoreCase(VsailConstants.GROUP_VSAIL_CODE)) {
+            return BusVisibilityCache.ALL;
+        }
+        if (rootGroup.getCode().equalsIgnoreCase(VsailConstants.GROUP_BUS)) {
+            return group.getId();
+        }
+        return BusVisibilityCache.NONE;
+    }
+
+    /**
+     * 用户机构变化时记录用户新的可查看车辆缓存键
+     * @param user 机构变化后的用户
+     */
+    public void onUserGroupChanged(User user) {
+        busVisibilityCache.setPrincipalKey(user.getLoginName(),
+                User.ADMIN.equalsIgnoreCase(user.getLoginName()) ? BusVisibilityCache.ALL : getVisibilityKey(user.getGroup()));
+    }
+
+    /**
+     * 移除包含车辆线路机构的可查看车辆缓存项, 存在事务时在事务提交后移除,
+     * 避免提交前并发查询按旧数据重新加载并缓存
+     * @param lineGroupIds 车辆变化前后的线路机构ID, 可以为null
+     */
+    private void invalidateLineGroupsAfterCommit(Long... lineGroupIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    busVisibilityCache.invalidateLineGroups(lineGroupIds);
+                }
+            });
+        } else {
+            busVisibilityCache.invalidateLineGroups(lineGroupIds);
+        }
+    }
+
+    /**
+     * 保存车辆信息, 未运营的车辆同时从运营车辆集合及车辆状态存储中移除
      * @param bus 车辆信息
      * @return 保存后车辆信息
      * @throws Exception
@@ -112,11 +219,18 @@ public class BusService extends AbstractLogicDeletedService<Bus, Long> {
     @Transactional(rollbackFor=Exception.class)
     public Bus saveBusInfo(Bus bus) throws Exception {
         bus =  super.save(bus);
+        invalidateLineGroupsAfterCommit(bus.getLineGroup() != null ? bus.getLineGroup().getId() : null);
+        if (Boolean.FALSE.equals(bus.getUsed())) {
+            retireBus(bus);
+        }
         return bus;
     }
 
     /**
      * 保存运营信息 同时保存缓信息以及发送车辆信息事件
+     * <p>
+     *     车辆停止运营时从运营车辆集合及车辆状态存储中移除, 并发送车辆删除事件
+     * </p>
      * @param bus 车辆信息
      * @return 保存后车辆信息
      * @throws Exception
@@ -124,6 +238,7 @@ public class BusService extends AbstractLogicDeletedService<Bus, Long> {
     @Transactional(rollbackFor=Exception.class)
     public Bus saveBus(Bus bus, BusEventType busEventType) throws Exception {
         bus =  super.save(bus);
+        Long lineGroupId = bus.getLineGroup() != null ? bus.getLineGroup().getId() : null;
         if (bus.getUsed()) {
             Map<String, Object> mapCache = BusInfo.fromBus(bus);
             mapCache.put("eventCode", String.valueOf(busEventType.getEventCode()));
@@ -142,35 +257,157 @@ public class BusService extends AbstractLogicDeletedService<Bus, Long> {
             mapCache.put("siteGroupName", bus.getSiteGroup().getFullName());
             mapCache.put("lineGroupId", bus.getLineGroup().getId().toString());
             mapCache.put("lineGroupName", bus.getLineGroup().getFullName());*/
+            //线路变更时同时移除原线路所在机构的可查看车辆缓存
+            Object oldLineGroupId = redisManager.getHashValue(VsailConstants.BUS_INFO_KEY_PREFFIX + bus.getVin(), "lineGroupId");
+            invalidateLineGroupsAfterCommit(lineGroupId, oldLineGroupId != null ? Long.valueOf(oldLineGroupId.toString()) : null);
             redisManager.setHash(VsailConstants.BUS_INFO_KEY_PREFFIX + bus.getVin(), mapCache);
+            redisManager.addSetMembers(VsailConstants.BUS_VIN_SET_KEY, bus.getVin());
             logger.debug("保存到缓存{}", bus);
+            BusInfo busInfo = getBusInfoByVin(bus.getVin());
+            BusStateChange change = busStateStore.put(busInfo);
             //发送车辆信息事件
-            SpringContextUtils.publishEvent(new BusEvent(getBusInfoByVin(bus.getVin())));
+            SpringContextUtils.publishEvent(new BusEvent(busInfo, change));
+        } else {
+            invalidateLineGroupsAfterCommit(lineGroupId);
+            retireBus(bus);
         }
         return bus;
     }
 
+    /**
+     * 车辆停止运营, 从运营车辆集合及车辆状态存储中移除并发送车辆删除事件, 车辆缓存保留, 重新运营时覆盖
+     * @param bus 车辆信息
+     */
+    private void retireBus(Bus bus) {
+        redisManager.removeSetMembers(VsailConstants.BUS_VIN_SET_KEY, bus.getVin());
+        BusStateChange change = busStateStore.remove(bus.getVin());
+        if (change != null) {
+            logger.debug("车辆停止运营{}", bus);
+            BusInfo busInfo = change.getPrevious();
+            busInfo.setEventCode(BusEventType.BUS_EVENT_DELETE.getEventCode());
+            SpringContextUtils.publishEvent(new BusEvent(busInfo, change));
+        }
+    }
+
     /**
      * 获取所有车辆和车辆当前实时信息
      * <p>
      *     首先从缓存中加载车辆基本信息和车辆实时信息,如果缓存不可用则从数据库中加载 TODO 数据库中加载需要考虑并发性能
      * </p>
+     * <p>
+     *     车辆状态由内存中{@link BusStateStore}提供, 首次访问时通过运营车辆集合使用管道批量从redis加载
+     * </p>
      * @return
      */
-    @SuppressWarnings("unchecked")
     public List<BusInfo> getBusData() {
         //首先从缓存中加载 TODO 从数据库中加载
-        Set<String> keyList = redisManager.listRedis(VsailConstants.BUS_INFO_KEY_PREFFIX + "*");
-        List<BusInfo> busList = new ArrayList<>();
-        keyList.forEach(key-> {
-            //判断当前用户是否有该车辆权限
-            BusInfo busInfo = getBusInfoByVin(HazeStringUtils.replace(key, VsailConstants.BUS_INFO_KEY_PREFFIX, ""));
-            if (this.check(busInfo, ShiroUtils.getCurrentUser())) {
-                busList.add(busInfo);
+        ShiroUser user = ShiroUtils.getCurrentUser();
+        if (!hasBusPermission(user)) {
+            return new ArrayList<>();
+        }
+        ensureStoreLoaded();
+        Set<Long> lineGroupIds = getLineGroupIds(user);
+        //判断当前用户是否有该车辆权限
+        if (lineGroupIds == null) {
+            return busStateStore.list(lineGroupId -> true);
+        }
+        return busStateStore.list(lineGroupIds::contains);
+    }
+
+    /**
+     * 向输出流写入当前用户可查看车辆的状态快照, 格式见{@link BusDeltaCodec}
+     * <p>
+     *     车辆分段从{@link BusStateStore}读取并逐个写出, 不在内存中组装完整的车辆列表和json。快照版本号为开始输出时的存储版本号,
+     *     输出过程中发生变化的车辆以较新的版本号输出, 客户端使用快照版本号建立websocket增量连接即可补齐输出期间的变化。
+     * </p>
+     * @param out 输出流
+     * @param columnar 是否使用列格式
+     * @throws IOException 输出失败
+     */
+    public void writeSnapshot(OutputStream out, boolean columnar) throws IOException {
+        ShiroUser user = ShiroUtils.getCurrentUser();
+        JsonGenerator generator = HazeJsonUtils.createGenerator(out);
+        if (!hasBusPermission(user)) {
+            BusDeltaCodec.writeSnapshotStart(generator, busStateStore.getEpoch(), busStateStore.getVersion(), columnar);
+            BusDeltaCodec.writeSnapshotEnd(generator);
+            generator.close();
+            return;
+        }
+        ensureStoreLoaded();
+        Set<Long> lineGroupIds = getLineGroupIds(user);
+        LongPredicate filter = lineGroupIds == null ? lineGroupId -> true : lineGroupIds::contains;
+        long version = busStateStore.getVersion();
+        BusDeltaCodec.writeSnapshotStart(generator, busStateStore.getEpoch(), version, columnar);
+        int slot = 0;
+        while (slot >= 0) {
+            BusStateSnapshot chunk = new BusStateSnapshot(version);
+            slot = busStateStore.read(slot, SNAPSHOT_CHUNK_SIZE, filter, chunk);
+            for (BusStateSnapshot.Entry entry : chunk.getEntries()) {
+                BusDeltaCodec.writeSnapshotEntry(generator, entry, columnar);
             }
-            //busList.add(getBusInfoByVin(HazeStringUtils.replace(key, VsailConstants.BUS_INFO_KEY_PREFFIX, "")));
-        });
-        return busList;
+            generator.flush();
+        }
+        BusDeltaCodec.writeSnapshotEnd(generator);
+        generator.close();
+    }
+
+    /**
+     * 获取当前用户可查看机构的车辆计数, 计数由{@link BusGroupCounters}随车辆事件增量维护, 不需要遍历车辆
+     * @return 机构ID -> 车辆总数及在线、火警、故障数量
+     */
+    public Map<Long, Map<String, Object>> getBusCounters() {
+        ShiroUser user = ShiroUtils.getCurrentUser();
+        if (!hasBusPermission(user)) {
+            return new LinkedHashMap<>();
+        }
+        Set<Long> groupIds = getLineGroupIds(user);
+        return getBusCounters(groupIds == null ? groupId -> true : groupIds::contains);
+    }
+
+    /**
+     * 获取满足条件机构的车辆计数
+     * @param groupFilter 机构ID过滤条件
+     * @return 机构ID -> 车辆总数及在线、火警、故障数量
+     */
+    public Map<Long, Map<String, Object>> getBusCounters(LongPredicate groupFilter) {
+        ensureStoreLoaded();
+        return busGroupCounters.getCounters(groupFilter);
+    }
+
+    /**
+     * 获取地图可视范围内当前用户可查看的车辆
+     * <p>
+     *     车辆坐标由{@link BusStateStore}中的网格索引维护, 只访问与可视范围相交的网格。缩放级别小于{@link VsailConstants#MAP_CLUSTER_MAX_ZOOM}时
+     *     按约{@link VsailConstants#MAP_CLUSTER_PIXELS}像素的网格聚合, 返回数据量只与可视范围内的网格数量有关。
+     *     范围包含NaN、无穷大或最小值大于最大值时返回空结果, 其余范围截取到经度[-180,180]、纬度[-90,90]内。
+     * </p>
+     * @param minX 最小经度
+     * @param minY 最小纬度
+     * @param maxX 最大经度
+     * @param maxY 最大纬度
+     * @param zoom 地图缩放级别
+     * @return 可视范围内车辆及聚合点
+     */
+    public BusViewport getBusDataInViewport(double minX, double minY, double maxX, double maxY, int zoom) {
+        if (!Double.isFinite(minX) || !Double.isFinite(minY) || !Double.isFinite(maxX) || !Double.isFinite(maxY) || minX > maxX || minY > maxY) {
+            logger.warn("地图可视范围无效, minX={}, minY={}, maxX={}, maxY={}", minX, minY, maxX, maxY);
+            return new BusViewport();
+        }
+        minX = Math.max(minX, -180);
+        maxX = Math.min(maxX, 180);
+        minY = Math.max(minY, -90);
+        maxY = Math.min(maxY, 90);
+        ShiroUser user = ShiroUtils.getCurrentUser();
+        if (!hasBusPermission(user)) {
+            return new BusViewport();
+        }
+        ensureStoreLoaded();
+        double clusterSize = zoom < VsailConstants.MAP_CLUSTER_MAX_ZOOM ? VsailConstants.MAP_CLUSTER_PIXELS * 360.0 / (256L << Math.max(zoom, 0)) : 0;
+        Set<Long> lineGroupIds = getLineGroupIds(user);
+        if (lineGroupIds == null) {
+            return busStateStore.viewport(minX, minY, maxX, maxY, lineGroupId -> true, clusterSize);
+        }
+        return busStateStore.viewport(minX, minY, maxX, maxY, lineGroupIds::contains, clusterSize);
     }
 
     /**
@@ -185,13 +422,16 @@ public class BusService extends AbstractLogicDeletedService<Bus, Long> {
         bus.setDeleteTime(new Date());
         logger.info("logic deleting {}", bus);
         this.busDao.save(bus);
+        invalidateLineGroupsAfterCommit(bus.getLineGroup() != null ? bus.getLineGroup().getId() : null);
         //如果车辆已运营则删除缓存
         if (bus.getUsed()) {
             redisManager.deleteKey(VsailConstants.BUS_INFO_KEY_PREFFIX + bus.getVin());
+            redisManager.removeSetMembers(VsailConstants.BUS_VIN_SET_KEY, bus.getVin());
+            BusStateChange change = busStateStore.remove(bus.getVin());
             logger.debug("删除缓存{}", bus);
             //发送删除车辆信息事件
             BusInfo busInfo = new BusInfo(bus, BusEventType.BUS_EVENT_DELETE.getEventCode());
-            SpringContextUtils.publishEvent(new BusEvent(busInfo));
+            SpringContextUtils.publishEvent(new BusEvent(busInfo, change));
         }
     }
 
@@ -201,15 +441,339 @@ public class BusService extends AbstractLogicDeletedService<Bus, Long> {
      */
 
     public void sendMessage(String vin) {
-        SpringContextUtils.publishEvent(new BusEvent(getBusInfoByVin(vin)));
+        long receivedNanos = System.nanoTime();
+        Map<String, Object> info = redisManager.getHash(VsailConstants.BUS_INFO_KEY_PREFFIX + vin);
+        if (info.isEmpty()) {
+            logger.warn("车辆缓存不存在, vin={}", vin);
+            return;
+        }
+        BusInfo busInfo = new BusInfo(info);
+        BusStateChange change = busStateStore.putIf(busInfo, (current, incoming) -> !BusInfoCodec.isOlder(incoming, current));
+        if (change == null) {
+            logger.warn("车辆缓存早于内存中车辆状态, 忽略, vin={}", vin);
+            return;
+        }
+        BusEvent event = new BusEvent(busInfo, change);
+        event.setReceivedNanos(receivedNanos);
+        SpringContextUtils.publishEvent(event);
+    }
+
+    /**
+     * 根据vin码批量发送车辆信息变更通知, 车辆缓存通过管道一次读取
+     * <p>
+     *     与内存中车辆状态内容相同的车辆不再发送事件, 避免同一变化经由多个通知来源重复推送(如本节点写入redis后收到的键空间通知)。
+     *     内容按{@link BusInfoCodec#sameContent(BusInfo, BusInfo)}比较, 数值格式不同的相同内容不会被视为变化。
+     *     发送时间早于内存中车辆状态的缓存同样被忽略, 比较与保存在车辆状态存储写锁内完成。
+     * </p>
+     * @param vins 车辆vin码集合
+     * @return 实际发送事件的车辆数量
+     */
+    public int sendMessages(List<String> vins) {
+        List<String> keys = new ArrayList<>(vins.size());
+        for (String vin : vins) {
+            keys.add(VsailConstants.BUS_INFO_KEY_PREFFIX + vin);
+        }
+        List<Map<String, Object>> infos = redisManager.getHashes(keys);
+        int count = 0;
+        for (Map<String, Object> info : infos) {
+            if (info.isEmpty()) {
+                continue;
+            }
+            BusInfo busInfo = new BusInfo(info);
+            BusStateChange change = busStateStore.putIf(busInfo, (current, incoming) ->
+                    !BusInfoCodec.isOlder(incoming, current) && !BusInfoCodec.sameContent(current, incoming));
+            if (change == null) {
+                continue;
+            }
+            SpringContextUtils.publishEvent(new BusEvent(busInfo, change));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 获取可查看线路的车辆状态快照, 用于websocket增量协议的基线数据
+     * @param lineGroupIds 可查看的线路机构ID集合, 为null时表示可查看所有车辆
+     * @return 车辆状态快照
+     */
+    public BusStateSnapshot getSnapshot(Set<Long> lineGroupIds) {
+        ensureStoreLoaded();
+        if (lineGroupIds == null) {
+            return busStateStore.snapshot(lineGroupId -> true);
+        }
+        return busStateStore.snapshot(lineGroupIds::contains);
+    }
+
+    /**
+     * 获取客户端已持有快照之后的增量快照, 用于websocket增量协议断线重连或页面快照加载后建立连接
+     * @param lineGroupIds 可查看的线路机构ID集合, 为null时表示可查看所有车辆
+     * @param epoch 客户端快照的存储实例标识
+     * @param since 客户端快照版本号
+     * @return 增量快照, 存储实例标识不一致或基准版本无法生成增量时返回完整快照
+     */
+    public BusStateSnapshot getSnapshot(Set<Long> lineGroupIds, long epoch, long since) {
+        ensureStoreLoaded();
+        if (epoch == busStateStore.getEpoch()) {
+            BusStateSnapshot changes = busStateStore.changesSince(since, lineGroupIds == null ? lineGroupId -> true : lineGroupIds::contains);
+            if (changes != null) {
+                return changes;
+            }
+        }
+        return getSnapshot(lineGroupIds);
+    }
+
+    /**
+     * 批量处理车辆实时数据帧, 同一批次内同一车辆只处理采集时间最新的一帧
+     * <p>
+     *     数据帧直接合并到内存中的车辆状态, 不再从redis读取整个hash, 变化字段通过管道一次写入redis后发送车辆事件。
+     *     未登记运营的车辆数据帧以及采集时间早于当前状态的数据帧被忽略。采集时间比较与合并在车辆状态存储写锁内完成,
+     *     普通与火警通道同时处理同一车辆时较早的数据帧不会覆盖较新的状态, 被忽略的数据帧也不写入redis。
+     *     内存状态更新与redis写入在同一个锁内完成, redis的写入顺序与内存状态一致, 不会被较早数据帧的写入覆盖。
+     * </p>
+     * @param frames 数据帧集合
+     * @return 实际处理的车辆数量
+     */
+    public int applyTelemetry(List<BusTelemetry> frames) {
+        ensureStoreLoaded();
+        Map<String, BusTelemetry> latest = new LinkedHashMap<>();
+        for (BusTelemetry frame : frames) {
+            BusTelemetry previous = latest.get(frame.getVin());
+            if (previous == null || frame.getTime() >= previous.getTime()) {
+                latest.put(frame.getVin(), frame);
+            }
+        }
+        List<BusEvent> events = new ArrayList<>(latest.size());
+        synchronized (telemetryLock) {
+            Map<String, Map<String, Object>> hashes = new LinkedHashMap<>();
+            for (BusTelemetry frame : latest.values()) {
+                BusStateChange change = busStateStore.update(frame.getVin(), (busInfo, version) -> {
+                    if (busInfo.getSendTime() != null && frame.getTime() < busInfo.getSendTime().getTime()) {
+                        return false;
+                    }
+                    frame.applyTo(busInfo);
+                    return true;
+                });
+                if (change == null) {
+                    if (!busStateStore.contains(frame.getVin())) {
+                        logger.warn("车辆未登记运营, 忽略实时数据, vin={}", frame.getVin());
+                    }
+                    continue;
+                }
+                hashes.put(VsailConstants.BUS_INFO_KEY_PREFFIX + frame.getVin(), frame.toHash());
+                BusEvent event = new BusEvent(change.getCurrent(), change);
+                event.setReceivedNanos(frame.getReceivedNanos());
+                events.add(event);
+            }
+            redisManager.setHashes(hashes);
+        }
+        events.forEach(SpringContextUtils::publishEvent);
+        return events.size();
+    }
+
+    /**
+     * 将长时间没有实时数据的车辆置为下线, 下线状态通过管道一次写入redis后发送车辆下线事件
+     * <p>
+     *     由车辆心跳时间轮调用, 已下线或已删除的车辆被忽略。下线在车辆状态存储写锁内完成, 只有车辆状态版本号仍为时间轮计时时的版本号
+     *     才置为下线, 期间已写入新数据的车辆不受影响, redis也不会被写回过期状态。
+     * </p>
+     * @param vins 车辆vin码 -> 时间轮最后一次计时时的车辆状态版本号, 小于0时不比较版本号
+     * @return 实际下线的车辆数量
+     */
+    public int markOffline(Map<String, Long> vins) {
+        ensureStoreLoaded();
+        Map<String, Map<String, Object>> hashes = new LinkedHashMap<>();
+        List<BusEvent> events = new ArrayList<>(vins.size());
+        synchronized (telemetryLock) {
+            vins.forEach((vin, expectedVersion) -> {
+                long expected = expectedVersion;
+                BusStateChange change = busStateStore.update(vin, (busInfo, version) -> {
+                    if (!busInfo.isOnline() || (expected >= 0 && version != expected)) {
+                        return false;
+                    }
+                    busInfo.setEventCode(BusEventType.BUS_EVENT_OFF.getEventCode());
+                    busInfo.setOnline(false);
+                    return true;
+                });
+                if (change == null) {
+                    return;
+                }
+                Map<String, Object> hash = new HashMap<>();
+                hash.put("eventCode", String.valueOf(BusEventType.BUS_EVENT_OFF.getEventCode()));
+                hashes.put(VsailConstants.BUS_INFO_KEY_PREFFIX + vin, hash);
+                events.add(new BusEvent(change.getCurrent(), change));
+            });
+            redisManager.setHashes(hashes);
+        }
+        for (BusEvent event : events) {
+            logger.info("车辆心跳超时, 置为下线, vin={}", event.getBusInfo().getVin());
+            SpringContextUtils.publishEvent(event);
+        }
+        return events.size();
+    }
+
+    /**
+     * 应用其他集群节点转发的车辆信息, 更新本节点车辆状态后发送转发事件, 由本节点推送给本地连接
+     * <p>
+     *     与本节点车辆状态内容相同的车辆(如各节点均检测到的心跳超时)不再发送事件, 内容按{@link BusInfoCodec#sameContent(BusInfo, BusInfo)}比较,
+     *     只有数值格式不同的车辆信息不会重复应用。转发节点的普通与火警通道发布顺序不确定, 发送时间早于本节点车辆状态的车辆信息被忽略,
+     *     比较与保存在车辆状态存储写锁内完成。
+     * </p>
+     * @param busInfos 车辆信息集合
+     * @return 实际发送事件的车辆数量
+     */
+    public int applyRelayed(List<BusInfo> busInfos) {
+        ensureStoreLoaded();
+        int count = 0;
+        for (BusInfo busInfo : busInfos) {
+            BusStateChange change;
+            if (busInfo.getEventCode() == BusEventType.BUS_EVENT_DELETE.getEventCode()) {
+                change = busStateStore.remove(busInfo.getVin());
+            } else {
+                change = busStateStore.putIf(busInfo, (current, incoming) ->
+                        !BusInfoCodec.isOlder(incoming, current) && !BusInfoCodec.sameContent(current, incoming));
+                if (change == null) {
+                    continue;
+                }
+            }
+            BusEvent event = new BusEvent(busInfo, change);
+            event.setRelayed(true);
+            SpringContextUtils.publishEvent(event);
+            count++;
+        }
+        return count;
     }
 
-    @SuppressWarnings("unchecked")
     private BusInfo getBusInfoByVin(String vin) {
-        Map<String, Object> info = (Map<String, Object>) redisManager.getKey(VsailConstants.BUS_INFO_KEY_PREFFIX + vin);
-        return new BusInfo(info);
+        return new BusInfo(redisManager.getHash(VsailConstants.BUS_INFO_KEY_PREFFIX + vin));
     }
 
+    /**
+     * 首次访问时从redis中加载所有运营车辆至内存状态存储
+     */
+    private void ensureStoreLoaded() {
+        if (busStateStore.isLoaded()) {
+            return;
+        }
+        synchronized (busStateStore) {
+            if (!busStateStore.isLoaded()) {
+                ensureRegistry();
+                List<String> keyList = new ArrayList<>();
+                redisManager.getSetMembers(VsailConstants.BUS_VIN_SET_KEY).forEach(vin -> keyList.add(VsailConstants.BUS_INFO_KEY_PREFFIX + vin));
+                //状态存储按列复制车辆信息, 加载时复用同一个车辆信息对象解码
+                BusInfo reusable = new BusInfo();
+                for (Map<String, Object> info : redisManager.getHashes(keyList)) {
+                    if (!info.isEmpty()) {
+                        busStateStore.put(BusInfoCodec.decode(info, reusable));
+                    }
+                }
+                busStateStore.setLoaded(true);
+                logger.info("加载车辆状态完成, 车辆数量={}", busStateStore.size());
+            }
+        }
+    }
+
+
+    private volatile boolean registryChecked = false;
+
+    /**
+     * 运营车辆集合不存在时(如首次升级或redis被清空)从数据库重建车辆缓存及运营车辆集合, 每个实例只检查一次
+     */
+    private void ensureRegistry() {
+        if (registryChecked) {
+            return;
+        }
+        synchronized (this) {
+            if (!registryChecked) {
+                if (!redisManager.hasKey(VsailConstants.BUS_VIN_SET_KEY)) {
+                    reloadBusCache();
+                }
+                registryChecked = true;
+            }
+        }
+    }
+
+    /**
+     * 从数据库重建所有运营车辆的redis缓存及运营车辆集合, 用于冷启动或redis被清空后恢复
+     * <p>
+     *     车辆及所属四级机构通过{@link BusDao#findUsedBusCacheEntries()}一条关联查询获取, 不逐个加载车辆及机构实体,
+     *     缓存通过管道一次写入, 运营车辆集合一次批量写入。只写入车辆基本信息字段, 已有的车辆实时数据字段不受影响。
+     * </p>
+     * @return 重建的车辆数量
+     */
+    public int reloadBusCache() {
+        List<BusCacheEntry> entries = busDao.findUsedBusCacheEntries();
+        Map<String, Map<String, Object>> hashes = new LinkedHashMap<>();
+        List<String> vins = new ArrayList<>(entries.size());
+        for (BusCacheEntry entry : entries) {
+            hashes.put(VsailConstants.BUS_INFO_KEY_PREFFIX + entry.getVin(), entry.toMap());
+            vins.add(entry.getVin());
+        }
+        redisManager.setHashes(hashes);
+        if (!vins.isEmpty()) {
+            redisManager.addSetMembers(VsailConstants.BUS_VIN_SET_KEY, vins.toArray(new String[0]));
+        }
+        logger.info("从数据库重建车辆缓存完成, 车辆数量={}", entries.size());
+        return entries.size();
+    }
+
+    /**
+     * 根据redis中已有车辆缓存重建运营车辆集合
+     */
+    public void rebuildRegistry() {
+        List<String> keyList = new ArrayList<>(redisManager.scanKeys(VsailConstants.BUS_INFO_KEY_PREFFIX + "*"));
+        List<Map<String, Object>> infoList = redisManager.getHashes(keyList);
+        for (int i = 0; i < keyList.size(); i++) {
+            Map<String, Object> info = infoList.get(i);
+            if (!info.isEmpty()) {
+                redisManager.addSetMembers(VsailConstants.BUS_VIN_SET_KEY, HazeStringUtils.replace(keyList.get(i), VsailConstants.BUS_INFO_KEY_PREFFIX, ""));
+            }
+        }
+        logger.info("重建运营车辆集合完成, 车辆数量={}", keyList.size());
+    }
+
+    /**
+     * 判断用户是否有车辆权限, 可查看的车辆范围由{@link #getLineGroupIds(ShiroUser)}确定
+     * @param user 当前登陆用户
+     * @return 是否有车辆权限
+     */
+    private boolean hasBusPermission(ShiroUser user) {
+        return user != null && (user.isSuperAdmin() || user.getGroup() != null);
+    }
+
+    /**
+     * 获取用户可查看的线路机构ID集合
+     * @param user 当前登陆用户
+     * @return 线路机构ID集合, 用户可查看所有车辆时返回null
+     */
+    private Set<Long> getLineGroupIds(ShiroUser user) {
+        return getLineGroupIds(user.getLoginName(), user.getGroup());
+    }
+
+    /**
+     * 根据用户登录名和所属机构获取用户可查看的线路机构ID集合
+     * @param loginName 用户登录名
+     * @param group 用户所属机构
+     * @return 线路机构ID集合, 用户可查看所有车辆时返回null, 无车辆权限时返回空集合
+     */
+    @Transactional(readOnly = true)
+    public Set<Long> getLineGroupIds(String loginName, Group group) {
+        if (User.ADMIN.equalsIgnoreCase(loginName)) {
+            return null;
+        }
+        Set<Long> groupIds = new HashSet<>();
+        if (group == null) {
+            return groupIds;
+        }
+        //重新加载机构信息, 确保在websocket等非请求线程中可以加载下级机构
+        group = groupService.findById(group.getId());
+        Group rootGroup = group.getRootGroup();
+        if (rootGroup.getCode().equalsIgnoreCase(VsailConstants.GROUP_VSAIL_CODE)) {
+            return null;
+        }
+        groupIds.add(group.getId());
+        group.getChildList(Status.ENABLE).forEach(g -> groupIds.add(g.getId()));
+        return groupIds;
+    }
 
     /**
      * 判断用户是否有车辆数据权限
@@ -0,0 +1,162 @@
+package com.haze.vsail.bus.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 用户可查看车辆ID缓存
+ * <p>
+ *     按机构子树缓存可查看车辆的ID, 同一机构下的用户共用同一缓存项, 每项只保存排序后的车辆ID数组及子树中的线路机构ID集合。
+ *     车辆保存或删除时只移除包含该车辆新旧线路机构的缓存项及全部车辆缓存项, 其他机构的缓存项不受影响。
+ *     机构新增、修改或删除时由{@link com.haze.vsail.bus.listener.GroupChangeApplicationListener}移除所有缓存项。
+ * </p>
+ * <p>
+ *     用户机构变化时登录会话中的用户信息不会更新, 通过{@link #setPrincipalKey(String, long)}记录用户新的缓存键, 之后按新机构获取车辆。
+ * </p>
+ */
+@Component
+public class BusVisibilityCache {
+
+    /**
+     * 可查看全部车辆的缓存键
+     */
+    public static final long ALL = 0L;
+
+    /**
+     * 无车辆权限的缓存键
+     */
+    public static final long NONE = -1L;
+
+    private final ConcurrentMap<Long, VisibleBuses> groupBuses = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> principalKeys = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存项失效次数, 加载期间发生失效时加载结果不放入缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 获取缓存键对应的可查看车辆, 不存在时加载
+     *
+     * @param key    缓存键, 为机构ID或{@link #ALL}
+     * @param loader 加载方法
+     * @return 可查看车辆
+     */
+    public VisibleBuses get(long key, Supplier<VisibleBuses> loader) {
+        VisibleBuses visibleBuses = groupBuses.get(key);
+        if (visibleBuses != null) {
+            hits.increment();
+            return visibleBuses;
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        visibleBuses = loader.get();
+        if (generation.get() == loadGeneration) {
+            groupBuses.putIfAbsent(key, visibleBuses);
+        }
+        return visibleBuses;
+    }
+
+    /**
+     * 获取用户机构变化后记录的缓存键
+     *
+     * @param loginName 用户登录名
+     * @return 缓存键, 用户机构未变化时返回null
+     */
+    public Long getPrincipalKey(String loginName) {
+        return principalKeys.get(loginName);
+    }
+
+    public void setPrincipalKey(String loginName, long key) {
+        principalKeys.put(loginName, key);
+    }
+
+    /**
+     * 车辆线路机构变化或车辆新增、删除时移除相关缓存项
+     *
+     * @param lineGroupIds 车辆变化前后的线路机构ID, 可以为null
+     */
+    public void invalidateLineGroups(Long... lineGroupIds) {
+        generation.incrementAndGet();
+        groupBuses.remove(ALL);
+        groupBuses.values().removeIf(visibleBuses -> {
+            for (Long lineGroupId : lineGroupIds) {
+                if (lineGroupId != null && visibleBuses.lineGroupIds.contains(lineGroupId)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 移除所有缓存项, 用于机构结构变化等无法确定影响范围的情况
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        groupBuses.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("groups", groupBuses.size());
+        stats.put("principals", principalKeys.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+
+    /**
+     * 机构子树下可查看的车辆
+     */
+    public static final class VisibleBuses {
+
+        private final Set<Long> lineGroupIds;
+
+        private final long[] busIds;
+
+        /**
+         * @param lineGroupIds 机构子树中的线路机构ID集合, 全部车辆时为空集合
+         * @param busIds       车辆ID
+         */
+        public VisibleBuses(Set<Long> lineGroupIds, Collection<Long> busIds) {
+            this.lineGroupIds = lineGroupIds;
+            this.busIds = new long[busIds.size()];
+            int i = 0;
+            for (Long busId : busIds) {
+                this.busIds[i++] = busId;
+            }
+            Arrays.sort(this.busIds);
+        }
+
+        public boolean contains(long busId) {
+            return Arrays.binarySearch(busIds, busId) >= 0;
+        }
+
+        public int size() {
+            return busIds.length;
+        }
+
+        /**
+         * 获取排序后的车辆ID
+         */
+        public List<Long> getBusIds() {
+            List<Long> list = new ArrayList<>(busIds.length);
+            for (long busId : busIds) {
+                list.add(busId);
+            }
+            return list;
+        }
+    }
+}
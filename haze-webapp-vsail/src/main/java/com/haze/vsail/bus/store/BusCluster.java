@@ -0,0 +1,67 @@
+package com.haze.vsail.bus.store;
+
+/**
+ * 车辆聚合点, 地图缩放级别较低时同一聚合网格内的车辆合并为一个点返回
+ */
+public class BusCluster {
+
+    /**
+     * 聚合点坐标, 为网格内车辆坐标平均值
+     */
+    private double x;
+
+    private double y;
+
+    /**
+     * 车辆数量
+     */
+    private int count;
+
+    /**
+     * 火警车辆数量
+     */
+    private int fireCount;
+
+    /**
+     * 故障车辆数量
+     */
+    private int breakDownCount;
+
+    private double sumX;
+
+    private double sumY;
+
+    void add(double x, double y, boolean fire, boolean breakDown) {
+        count++;
+        sumX += x;
+        sumY += y;
+        if (fire) {
+            fireCount++;
+        }
+        if (breakDown) {
+            breakDownCount++;
+        }
+        this.x = sumX / count;
+        this.y = sumY / count;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getFireCount() {
+        return fireCount;
+    }
+
+    public int getBreakDownCount() {
+        return breakDownCount;
+    }
+}
@@ -0,0 +1,274 @@
+package com.haze.vsail.bus.store;
+
+import com.haze.vsail.bus.util.BusInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * 按机构维护的车辆实时计数, 包括车辆总数以及在线、火警、故障车辆数量
+ * <p>
+ *     每辆车计入所属运营公司、分公司、场站及线路四级机构。车辆状态变化时根据{@link BusStateChange}中变化前后的车辆状态
+ *     从原计数移至新计数, 每次变化只更新四级机构的计数, 所属机构及状态均未变化的变化(如只有位置变化)不更新计数。
+ *     计数使用{@link LongAdder}, 多个事件线程同时更新同一机构时不互相竞争。
+ * </p>
+ * <p>
+ *     {@link BusStateStore}加载完成后首次使用时根据快照建立计数, 版本号不大于快照版本号的变化已包含在快照中, 不再重复计数。
+ * </p>
+ */
+@Component
+public class BusGroupCounters {
+
+    private static final String[] LEVELS = {"root", "branch", "site", "line"};
+
+    private final BusStateStore busStateStore;
+
+    /**
+     * 更新计数时持有读锁, 重建计数时持有写锁
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 机构ID -> 计数, 尚未建立时为null
+     */
+    private volatile Map<Long, GroupCounter> counters;
+
+    private long baseVersion;
+
+    /**
+     * 上次获取之后计数发生变化的机构ID
+     */
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+
+    public BusGroupCounters(BusStateStore busStateStore) {
+        this.busStateStore = busStateStore;
+    }
+
+    /**
+     * 根据车辆状态变化更新计数
+     *
+     * @param change 车辆状态变化, 为null时忽略
+     */
+    public void apply(BusStateChange change) {
+        if (change == null || !busStateStore.isLoaded()) {
+            return;
+        }
+        ensureBuilt();
+        Bucket previous = Bucket.of(change.getPrevious());
+        Bucket current = Bucket.of(change.getCurrent());
+        if (Objects.equals(previous, current)) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (change.getVersion() <= baseVersion) {
+                return;
+            }
+            if (previous != null) {
+                previous.add(counters, -1, changed);
+            }
+            if (current != null) {
+                current.add(counters, 1, changed);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 根据当前车辆状态重新建立计数
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            build();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取机构计数
+     *
+     * @param groupFilter 机构ID过滤条件
+     * @return 机构ID -> 计数, 车辆状态尚未加载时返回空Map
+     */
+    public Map<Long, Map<String, Object>> getCounters(LongPredicate groupFilter) {
+        Map<Long, Map<String, Object>> result = new LinkedHashMap<>();
+        if (!busStateStore.isLoaded()) {
+            return result;
+        }
+        ensureBuilt();
+        counters.forEach((groupId, counter) -> {
+            if (groupFilter.test(groupId)) {
+                result.put(groupId, counter.toMap());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取并清除上次获取之后计数发生变化的机构ID
+     */
+    public Set<Long> drainChanged() {
+        Set<Long> result = new HashSet<>();
+        Iterator<Long> it = changed.iterator();
+        while (it.hasNext()) {
+            result.add(it.next());
+            it.remove();
+        }
+        return result;
+    }
+
+    private void ensureBuilt() {
+        if (counters != null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (counters == null) {
+                build();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build() {
+        BusStateSnapshot snapshot = busStateStore.snapshot(lineGroupId -> true);
+        Map<Long, GroupCounter> map = new ConcurrentHashMap<>();
+        for (BusStateSnapshot.Entry entry : snapshot.getEntries()) {
+            Bucket.of(entry.getBusInfo()).add(map, 1, null);
+        }
+        if (counters != null) {
+            changed.addAll(counters.keySet());
+        }
+        changed.addAll(map.keySet());
+        baseVersion = snapshot.getVersion();
+        counters = map;
+    }
+
+    private static final class GroupCounter {
+
+        private final String level;
+
+        private volatile String name;
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAdder online = new LongAdder();
+
+        private final LongAdder fire = new LongAdder();
+
+        private final LongAdder breakDown = new LongAdder();
+
+        private GroupCounter(String level) {
+            this.level = level;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", name);
+            map.put("level", level);
+            map.put("total", total.sum());
+            map.put("online", online.sum());
+            map.put("fire", fire.sum());
+            map.put("breakDown", breakDown.sum());
+            return map;
+        }
+    }
+
+    /**
+     * 车辆所属四级机构及状态
+     */
+    private static final class Bucket {
+
+        private final Long[] groupIds = new Long[LEVELS.length];
+
+        private final String[] groupNames = new String[LEVELS.length];
+
+        private final boolean online;
+
+        private final boolean fire;
+
+        private final boolean breakDown;
+
+        private Bucket(BusInfo busInfo) {
+            groupIds[0] = parseLong(busInfo.getRootGroupId());
+            groupIds[1] = parseLong(busInfo.getBranchGroupId());
+            groupIds[2] = parseLong(busInfo.getSiteGroupId());
+            groupIds[3] = parseLong(busInfo.getLineGroupId());
+            groupNames[0] = busInfo.getRootGroupName();
+            groupNames[1] = busInfo.getBranchGroupName();
+            groupNames[2] = busInfo.getSiteGroupName();
+            groupNames[3] = busInfo.getLineGroupName();
+            online = busInfo.isOnline();
+            fire = busInfo.isFire();
+            breakDown = busInfo.isBreakDown();
+        }
+
+        private static Bucket of(BusInfo busInfo) {
+            return busInfo == null ? null : new Bucket(busInfo);
+        }
+
+        private void add(Map<Long, GroupCounter> counters, int delta, Set<Long> changed) {
+            for (int i = 0; i < LEVELS.length; i++) {
+                if (groupIds[i] == null) {
+                    continue;
+                }
+                String level = LEVELS[i];
+                GroupCounter counter = counters.computeIfAbsent(groupIds[i], id -> new GroupCounter(level));
+                if (delta > 0 && groupNames[i] != null) {
+                    counter.name = groupNames[i];
+                }
+                counter.total.add(delta);
+                if (online) {
+                    counter.online.add(delta);
+                }
+                if (fire) {
+                    counter.fire.add(delta);
+                }
+                if (breakDown) {
+                    counter.breakDown.add(delta);
+                }
+                if (changed != null) {
+                    changed.add(groupIds[i]);
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Bucket)) {
+                return false;
+            }
+            Bucket bucket = (Bucket) o;
+            return online == bucket.online && fire == bucket.fire && breakDown == bucket.breakDown
+                    && Arrays.equals(groupIds, bucket.groupIds) && Arrays.equals(groupNames, bucket.groupNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Arrays.hashCode(groupIds), online, fire, breakDown);
+        }
+
+        private static Long parseLong(String value) {
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            try {
+                return Long.valueOf(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
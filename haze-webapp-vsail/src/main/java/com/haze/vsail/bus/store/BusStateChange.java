@@ -0,0 +1,72 @@
+package com.haze.vsail.bus.store;
+
+import com.haze.vsail.bus.util.BusInfo;
+
+/**
+ * 车辆状态变化, 由{@link BusStateStore}在保存或删除车辆状态时返回
+ * <p>
+ *     busId为车辆在存储中的槽位编号, 车辆存在期间保持不变, 用作websocket增量协议中的车辆数字编号。
+ *     version为全局递增的状态版本号, previousVersion为该车辆上一次变化的版本号, 新增车辆时为0,
+ *     客户端据此判断是否遗漏了该车辆的变化。
+ * </p>
+ */
+public class BusStateChange {
+
+    private final int busId;
+
+    private final long version;
+
+    private final long previousVersion;
+
+    private final BusInfo previous;
+
+    private final BusInfo current;
+
+    public BusStateChange(int busId, long version, long previousVersion, BusInfo previous, BusInfo current) {
+        this.busId = busId;
+        this.version = version;
+        this.previousVersion = previousVersion;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public int getBusId() {
+        return busId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getPreviousVersion() {
+        return previousVersion;
+    }
+
+    /**
+     * 变化前车辆状态, 新增车辆时为null
+     */
+    public BusInfo getPrevious() {
+        return previous;
+    }
+
+    /**
+     * 变化后车辆状态, 删除车辆时为null
+     */
+    public BusInfo getCurrent() {
+        return current;
+    }
+
+    public boolean isRemoved() {
+        return current == null;
+    }
+
+    @Override
+    public String toString() {
+        return "BusStateChange{" +
+                "busId=" + busId +
+                ", version=" + version +
+                ", previousVersion=" + previousVersion +
+                ", removed=" + isRemoved() +
+                '}';
+    }
+}
@@ -0,0 +1,122 @@
+package com.haze.vsail.bus.store;
+
+import com.haze.vsail.bus.util.BusInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 某一版本下的车辆状态快照, 快照中所有车辆状态的版本号均不大于快照版本号
+ * <p>
+ *     增量快照({@link #isIncremental()})只包含基准版本之后发生变化的车辆以及之后删除的车辆编号,
+ *     客户端在基准版本的完整车辆状态上先移除删除的车辆再合并变化的车辆即得到快照版本的车辆状态。
+ * </p>
+ */
+public class BusStateSnapshot {
+
+    /**
+     * 生成快照的存储实例标识
+     */
+    private final long epoch;
+
+    private final long version;
+
+    /**
+     * 增量快照基准版本号, 完整快照为-1
+     */
+    private final long since;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private final List<Integer> removed = new ArrayList<>();
+
+    public BusStateSnapshot(long version) {
+        this(0L, version, -1L);
+    }
+
+    public BusStateSnapshot(long epoch, long version, long since) {
+        this.epoch = epoch;
+        this.version = version;
+        this.since = since;
+    }
+
+    void add(int busId, long busVersion, BusInfo busInfo) {
+        entries.add(new Entry(busId, busVersion, busInfo));
+    }
+
+    void addRemoved(int busId) {
+        removed.add(busId);
+    }
+
+    /**
+     * 获取满足条件车辆组成的快照, 版本号不变
+     *
+     * @param predicate 车辆过滤条件
+     * @return 新快照
+     */
+    public BusStateSnapshot filter(Predicate<BusInfo> predicate) {
+        BusStateSnapshot snapshot = new BusStateSnapshot(epoch, version, since);
+        for (Entry entry : entries) {
+            if (predicate.test(entry.getBusInfo())) {
+                snapshot.entries.add(entry);
+            }
+        }
+        snapshot.removed.addAll(removed);
+        return snapshot;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public boolean isIncremental() {
+        return since >= 0;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 获取基准版本之后删除的车辆编号, 完整快照为空
+     */
+    public List<Integer> getRemoved() {
+        return removed;
+    }
+
+    public static class Entry {
+
+        private final int busId;
+
+        private final long version;
+
+        private final BusInfo busInfo;
+
+        Entry(int busId, long version, BusInfo busInfo) {
+            this.busId = busId;
+            this.version = version;
+            this.busInfo = busInfo;
+        }
+
+        public int getBusId() {
+            return busId;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public BusInfo getBusInfo() {
+            return busInfo;
+        }
+    }
+}
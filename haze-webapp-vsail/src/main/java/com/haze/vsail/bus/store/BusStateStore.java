@@ -0,0 +1,717 @@
+package com.haze.vsail.bus.store;
+
+import com.haze.vsail.bus.util.BusInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+import java.util.function.LongPredicate;
+
+/**
+ * 运营车辆实时状态内存存储
+ * <p>
+ *     按列存储所有运营车辆当前状态, 每辆车占用一个槽位, 通过vin码到槽位的映射定位。机构ID、坐标、事件代码、发送时间等字段
+ *     存放在基本类型数组中, 火警和故障标识存放在{@link BitSet}中, 传感器数据按槽位打包存放在int数组中。
+ *     机构名称和场站联系人等重复字段按机构ID共享存放, 避免每辆车保存一份。
+ * </p>
+ * <p>
+ *     读取的车辆信息与写入时一致: 坐标除解析后的数值外同时保留原始字符串, 超过{@link #MAX_SENSORS}个传感器、
+ *     报警位超过16位或含有0、1以外字符、状态不是整数的传感器数据无法打包, 按原样复制保存。
+ * </p>
+ * <p>
+ *     写操作由{@code BusService}在保存、删除车辆以及接收车辆实时信息时调用, 读操作只在需要输出时才创建{@link BusInfo}对象。
+ * </p>
+ * <p>
+ *     车辆坐标同时维护在{@link GridIndex}网格索引中, 坐标变化时增量更新, 用于地图可视范围查询及聚合。
+ * </p>
+ * <p>
+ *     每次写操作递增全局版本号并记录到车辆槽位, 写操作返回{@link BusStateChange}供增量推送使用。
+ * </p>
+ */
+@Component
+public class BusStateStore {
+
+    /**
+     * 每辆车最多保存传感器数量
+     */
+    public static final int MAX_SENSORS = 8;
+
+    /**
+     * 每个传感器打包字段数量 依次为 编号, 温度, 一氧化碳浓度, 火警位, 故障位, 状态
+     */
+    private static final int SENSOR_FIELDS = 6;
+
+    private static final int SENSOR_STRIDE = 1 + MAX_SENSORS * SENSOR_FIELDS;
+
+    static final int NULL_INT = Integer.MIN_VALUE;
+
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    /**
+     * 网格索引网格大小(经纬度), 约1公里
+     */
+    private static final double GRID_CELL_SIZE = 0.01;
+
+    /**
+     * 保留的删除记录数量, 用于生成增量快照
+     */
+    private static final int MAX_REMOVALS = 4096;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private final Map<Long, String> groupNames = new HashMap<>();
+
+    private final Map<Long, String[]> siteLinkers = new HashMap<>();
+
+    /**
+     * 无法打包的传感器数据 车辆编号 -> 传感器列表副本
+     */
+    private final Map<Integer, List<BusInfo.Sensor>> unpackedSensors = new HashMap<>();
+
+    private final GridIndex gridIndex = new GridIndex(GRID_CELL_SIZE);
+
+    private int capacity;
+
+    private int top = 0;
+
+    private long version = 0;
+
+    /**
+     * 存储实例标识, 服务重启后版本号及车辆编号重新分配, 客户端只能基于同一实例的快照获取增量快照
+     */
+    private final long epoch = System.currentTimeMillis();
+
+    /**
+     * 最近删除的车辆 [车辆编号, 删除时版本号, 线路机构ID]
+     */
+    private final Deque<long[]> removals = new ArrayDeque<>();
+
+    /**
+     * 已丢弃删除记录的最大版本号, 基准版本早于该版本时无法生成增量快照
+     */
+    private long removalHorizon = 0;
+
+    private String[] vins;
+    private String[] busNums;
+    private String[] drivingNums;
+    private String[] productNums;
+    private String[] modelNames;
+    private String[] factoryNames;
+    private String[] states;
+    private long[] ids;
+    private long[] rootGroupIds;
+    private long[] branchGroupIds;
+    private long[] siteGroupIds;
+    private long[] lineGroupIds;
+    private String[] xTexts;
+    private String[] yTexts;
+    private double[] xs;
+    private double[] ys;
+    private int[] eventCodes;
+    private long[] sendTimes;
+    private long[] versions;
+    private int[] sensors;
+    private final BitSet fires = new BitSet();
+    private final BitSet breakDowns = new BitSet();
+
+    private volatile boolean loaded = false;
+
+    public BusStateStore() {
+        this(1024);
+    }
+
+    public BusStateStore(int initialCapacity) {
+        allocate(Math.max(initialCapacity, 16));
+    }
+
+    /**
+     * 保存或更新车辆状态
+     *
+     * @param busInfo 车辆信息
+     * @return 车辆状态变化
+     */
+    public BusStateChange put(BusInfo busInfo) {
+        Objects.requireNonNull(busInfo.getVin(), "vin不能为空");
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(busInfo.getVin());
+            BusInfo previous = null;
+            long previousVersion = 0;
+            if (slot == null) {
+                slot = freeSlots.isEmpty() ? top++ : freeSlots.pop();
+                if (slot >= capacity) {
+                    allocate(capacity * 2);
+                }
+                slots.put(busInfo.getVin(), slot);
+            } else {
+                previous = read(slot);
+                previousVersion = versions[slot];
+            }
+            write(slot, busInfo);
+            versions[slot] = ++version;
+            return new BusStateChange(slot, version, previousVersion, previous, busInfo);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在写锁内按车辆当前状态判断是否保存车辆信息, 判断与保存之间不会插入其他写操作,
+     * 用于整体替换车辆状态前比较采集时间或内容(如redis通知或其他节点转发的车辆信息)
+     *
+     * @param busInfo   车辆信息
+     * @param condition 判断条件, 参数为车辆当前状态(不存在时为null)及待保存的车辆信息
+     * @return 车辆状态变化, 条件不满足时返回null
+     */
+    public BusStateChange putIf(BusInfo busInfo, BiPredicate<BusInfo, BusInfo> condition) {
+        Objects.requireNonNull(busInfo.getVin(), "vin不能为空");
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(busInfo.getVin());
+            if (!condition.test(slot == null ? null : read(slot), busInfo)) {
+                return null;
+            }
+            return put(busInfo);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在写锁内读取车辆当前状态, 由更新方法判断并修改后保存, 读取与保存之间不会插入其他写操作,
+     * 用于需要根据当前状态决定是否更新的场景(如比较采集时间或版本号), 避免基于过期状态覆盖较新的状态
+     *
+     * @param vin     车辆vin码
+     * @param updater 更新方法, 参数为车辆当前状态及其版本号, 修改车辆状态后返回true保存, 返回false时不保存
+     * @return 车辆状态变化, 车辆不存在或未保存时返回null
+     */
+    public BusStateChange update(String vin, BiPredicate<BusInfo, Long> updater) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(vin);
+            if (slot == null) {
+                return null;
+            }
+            long previousVersion = versions[slot];
+            BusInfo current = read(slot);
+            if (!updater.test(current, previousVersion)) {
+                return null;
+            }
+            BusInfo previous = read(slot);
+            write(slot, current);
+            versions[slot] = ++version;
+            return new BusStateChange(slot, version, previousVersion, previous, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除车辆状态
+     *
+     * @param vin 车辆vin码
+     * @return 车辆状态变化, 车辆不存在时返回null
+     */
+    public BusStateChange remove(String vin) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(vin);
+            if (slot == null) {
+                return null;
+            }
+            BusInfo previous = read(slot);
+            long previousVersion = versions[slot];
+            vins[slot] = null;
+            busNums[slot] = null;
+            drivingNums[slot] = null;
+            productNums[slot] = null;
+            modelNames[slot] = null;
+            factoryNames[slot] = null;
+            states[slot] = null;
+            xTexts[slot] = null;
+            yTexts[slot] = null;
+            unpackedSensors.remove(slot);
+            fires.clear(slot);
+            breakDowns.clear(slot);
+            versions[slot] = 0;
+            gridIndex.remove(slot);
+            freeSlots.push(slot);
+            long removedVersion = ++version;
+            removals.addLast(new long[]{slot, removedVersion, lineGroupIds[slot]});
+            if (removals.size() > MAX_REMOVALS) {
+                removalHorizon = removals.pollFirst()[1];
+            }
+            return new BusStateChange(slot, removedVersion, previousVersion, previous, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 根据vin码获取车辆当前状态
+     *
+     * @param vin 车辆vin码
+     * @return 车辆信息, 不存在时返回null
+     */
+    public BusInfo get(String vin) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(vin);
+            return slot == null ? null : read(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取线路机构满足条件的车辆状态, 先按线路过滤再创建对象
+     *
+     * @param lineGroupFilter 线路机构ID过滤条件
+     * @return 车辆信息列表
+     */
+    public List<BusInfo> list(LongPredicate lineGroupFilter) {
+        lock.readLock().lock();
+        try {
+            List<BusInfo> result = new ArrayList<>(slots.size());
+            for (int slot = 0; slot < top; slot++) {
+                if (vins[slot] != null && lineGroupFilter.test(lineGroupIds[slot])) {
+                    result.add(read(slot));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取线路机构满足条件的车辆状态快照
+     *
+     * @param lineGroupFilter 线路机构ID过滤条件
+     * @return 当前版本车辆状态快照
+     */
+    public BusStateSnapshot snapshot(LongPredicate lineGroupFilter) {
+        lock.readLock().lock();
+        try {
+            BusStateSnapshot snapshot = new BusStateSnapshot(epoch, version, -1L);
+            for (int slot = 0; slot < top; slot++) {
+                if (vins[slot] != null && lineGroupFilter.test(lineGroupIds[slot])) {
+                    snapshot.add(slot, versions[slot], read(slot));
+                }
+            }
+            return snapshot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 分段读取车辆状态, 每次只在读锁内复制一段车辆, 用于流式输出大量车辆时避免长时间持有读锁及一次创建全部车辆对象
+     *
+     * @param fromSlot        起始车辆编号
+     * @param maxCount        最多读取的车辆数量
+     * @param lineGroupFilter 线路机构ID过滤条件
+     * @param target          读取的车辆加入该快照
+     * @return 下一段的起始车辆编号, 已读取完毕时返回-1
+     */
+    public int read(int fromSlot, int maxCount, LongPredicate lineGroupFilter, BusStateSnapshot target) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            int slot = fromSlot;
+            for (; slot < top && count < maxCount; slot++) {
+                if (vins[slot] != null && lineGroupFilter.test(lineGroupIds[slot])) {
+                    target.add(slot, versions[slot], read(slot));
+                    count++;
+                }
+            }
+            return slot < top ? slot : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取基准版本之后的增量快照
+     *
+     * @param since           基准版本号
+     * @param lineGroupFilter 线路机构ID过滤条件
+     * @return 增量快照, 基准版本不属于当前存储实例的有效范围或删除记录已丢弃时返回null
+     */
+    public BusStateSnapshot changesSince(long since, LongPredicate lineGroupFilter) {
+        lock.readLock().lock();
+        try {
+            if (since < removalHorizon || since > version) {
+                return null;
+            }
+            BusStateSnapshot snapshot = new BusStateSnapshot(epoch, version, since);
+            for (int slot = 0; slot < top; slot++) {
+                if (vins[slot] != null && versions[slot] > since && lineGroupFilter.test(lineGroupIds[slot])) {
+                    snapshot.add(slot, versions[slot], read(slot));
+                }
+            }
+            for (long[] removal : removals) {
+                if (removal[1] > since && lineGroupFilter.test(removal[2])) {
+                    snapshot.addRemoved((int) removal[0]);
+                }
+            }
+            return snapshot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取地图可视范围内线路机构满足条件的车辆, 聚合网格大小大于0时同一聚合网格内多辆车合并为聚合点
+     *
+     * @param minX            最小经度
+     * @param minY            最小纬度
+     * @param maxX            最大经度
+     * @param maxY            最大纬度
+     * @param lineGroupFilter 线路机构ID过滤条件
+     * @param clusterSize     聚合网格大小(经纬度), 小于等于0时不聚合
+     * @return 可视范围内车辆及聚合点
+     */
+    public BusViewport viewport(double minX, double minY, double maxX, double maxY, LongPredicate lineGroupFilter, double clusterSize) {
+        BusViewport viewport = new BusViewport();
+        lock.readLock().lock();
+        try {
+            List<Integer> matched = new ArrayList<>();
+            gridIndex.forEachCandidate(minX, minY, maxX, maxY, slot -> {
+                if (vins[slot] != null && xs[slot] >= minX && xs[slot] <= maxX && ys[slot] >= minY && ys[slot] <= maxY
+                        && lineGroupFilter.test(lineGroupIds[slot])) {
+                    matched.add(slot);
+                }
+            });
+            if (clusterSize <= 0) {
+                for (int slot : matched) {
+                    viewport.getBuses().add(read(slot));
+                }
+                return viewport;
+            }
+            Map<Long, List<Integer>> groups = new HashMap<>();
+            for (int slot : matched) {
+                long cx = (long) Math.floor(xs[slot] / clusterSize);
+                long cy = (long) Math.floor(ys[slot] / clusterSize);
+                groups.computeIfAbsent((cx << 32) | (cy & 0xFFFFFFFFL), k -> new ArrayList<>(1)).add(slot);
+            }
+            for (List<Integer> group : groups.values()) {
+                if (group.size() == 1) {
+                    viewport.getBuses().add(read(group.get(0)));
+                    continue;
+                }
+                BusCluster cluster = new BusCluster();
+                for (int slot : group) {
+                    cluster.add(xs[slot], ys[slot], fires.get(slot), breakDowns.get(slot));
+                }
+                viewport.getClusters().add(cluster);
+            }
+            return viewport;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String vin) {
+        lock.readLock().lock();
+        try {
+            return slots.containsKey(vin);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 是否已完成从redis中加载所有车辆
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void setLoaded(boolean loaded) {
+        this.loaded = loaded;
+    }
+
+    private void write(int slot, BusInfo busInfo) {
+        vins[slot] = busInfo.getVin();
+        busNums[slot] = busInfo.getBusNum();
+        drivingNums[slot] = busInfo.getDrivingNum();
+        productNums[slot] = busInfo.getProductNum();
+        modelNames[slot] = busInfo.getModelName();
+        factoryNames[slot] = busInfo.getFactoryName() != null ? busInfo.getFactoryName().intern() : null;
+        states[slot] = busInfo.getState() != null ? busInfo.getState().intern() : null;
+        ids[slot] = parseLong(busInfo.getId());
+        rootGroupIds[slot] = putGroupName(busInfo.getRootGroupId(), busInfo.getRootGroupName());
+        branchGroupIds[slot] = putGroupName(busInfo.getBranchGroupId(), busInfo.getBranchGroupName());
+        siteGroupIds[slot] = putGroupName(busInfo.getSiteGroupId(), busInfo.getSiteGroupName());
+        lineGroupIds[slot] = putGroupName(busInfo.getLineGroupId(), busInfo.getLineGroupName());
+        if (siteGroupIds[slot] != NULL_LONG) {
+            siteLinkers.put(siteGroupIds[slot], new String[]{busInfo.getAddress(), busInfo.getLinker(), busInfo.getLinkerMobile()});
+        }
+        xTexts[slot] = busInfo.getX();
+        yTexts[slot] = busInfo.getY();
+        xs[slot] = parseDouble(busInfo.getX());
+        ys[slot] = parseDouble(busInfo.getY());
+        gridIndex.update(slot, xs[slot], ys[slot]);
+        eventCodes[slot] = busInfo.getEventCode();
+        sendTimes[slot] = busInfo.getSendTime() != null ? busInfo.getSendTime().getTime() : NULL_LONG;
+        fires.set(slot, busInfo.isFire());
+        breakDowns.set(slot, busInfo.isBreakDown());
+        writeSensors(slot, busInfo.getSensores());
+    }
+
+    private BusInfo read(int slot) {
+        BusInfo busInfo = new BusInfo();
+        busInfo.setVin(vins[slot]);
+        busInfo.setBusNum(busNums[slot]);
+        busInfo.setDrivingNum(drivingNums[slot]);
+        busInfo.setProductNum(productNums[slot]);
+        busInfo.setModelName(modelNames[slot]);
+        busInfo.setFactoryName(factoryNames[slot]);
+        busInfo.setState(states[slot]);
+        busInfo.setId(toString(ids[slot]));
+        busInfo.setRootGroupId(toString(rootGroupIds[slot]));
+        busInfo.setRootGroupName(groupNames.get(rootGroupIds[slot]));
+        busInfo.setBranchGroupId(toString(branchGroupIds[slot]));
+        busInfo.setBranchGroupName(groupNames.get(branchGroupIds[slot]));
+        busInfo.setSiteGroupId(toString(siteGroupIds[slot]));
+        busInfo.setSiteGroupName(groupNames.get(siteGroupIds[slot]));
+        busInfo.setLineGroupId(toString(lineGroupIds[slot]));
+        busInfo.setLineGroupName(groupNames.get(lineGroupIds[slot]));
+        String[] linker = siteLinkers.get(siteGroupIds[slot]);
+        if (linker != null) {
+            busInfo.setAddress(linker[0]);
+            busInfo.setLinker(linker[1]);
+            busInfo.setLinkerMobile(linker[2]);
+        }
+        busInfo.setX(xTexts[slot]);
+        busInfo.setY(yTexts[slot]);
+        busInfo.setEventCode(eventCodes[slot]);
+        busInfo.setSendTime(sendTimes[slot] != NULL_LONG ? new Date(sendTimes[slot]) : null);
+        busInfo.setFire(fires.get(slot));
+        busInfo.setBreakDown(breakDowns.get(slot));
+        busInfo.setSensores(readSensors(slot));
+        return busInfo;
+    }
+
+    private void writeSensors(int slot, List<BusInfo.Sensor> sensorList) {
+        int offset = slot * SENSOR_STRIDE;
+        if (!isPackable(sensorList)) {
+            //写入的车辆信息对象可能被复用(如批量加载), 保存传感器副本
+            List<BusInfo.Sensor> copy = new ArrayList<>(sensorList.size());
+            sensorList.forEach(sensor -> copy.add(copySensor(sensor)));
+            unpackedSensors.put(slot, copy);
+            sensors[offset] = 0;
+            return;
+        }
+        unpackedSensors.remove(slot);
+        int count = sensorList == null ? 0 : sensorList.size();
+        sensors[offset] = count;
+        for (int i = 0; i < count; i++) {
+            BusInfo.Sensor sensor = sensorList.get(i);
+            int base = offset + 1 + i * SENSOR_FIELDS;
+            sensors[base] = sensor.getSn();
+            sensors[base + 1] = sensor.getTemp();
+            sensors[base + 2] = sensor.getConcen();
+            sensors[base + 3] = packBits(sensor.getFire());
+            sensors[base + 4] = packBits(sensor.getError());
+            sensors[base + 5] = sensor.getState() != null ? parseInt(sensor.getState()) : NULL_INT;
+        }
+    }
+
+    private List<BusInfo.Sensor> readSensors(int slot) {
+        List<BusInfo.Sensor> unpacked = unpackedSensors.get(slot);
+        if (unpacked != null) {
+            List<BusInfo.Sensor> sensorList = new ArrayList<>(unpacked.size());
+            unpacked.forEach(sensor -> sensorList.add(copySensor(sensor)));
+            return sensorList;
+        }
+        int offset = slot * SENSOR_STRIDE;
+        int count = sensors[offset];
+        List<BusInfo.Sensor> sensorList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int base = offset + 1 + i * SENSOR_FIELDS;
+            BusInfo.Sensor sensor = new BusInfo.Sensor();
+            sensor.setSn(sensors[base]);
+            sensor.setTemp(sensors[base + 1]);
+            sensor.setConcen(sensors[base + 2]);
+            sensor.setFire(unpackBits(sensors[base + 3]));
+            sensor.setError(unpackBits(sensors[base + 4]));
+            sensor.setState(sensors[base + 5] != NULL_INT ? String.valueOf(sensors[base + 5]) : null);
+            sensorList.add(sensor);
+        }
+        return sensorList;
+    }
+
+    /**
+     * 判断传感器数据能否无损打包: 数量不超过{@link #MAX_SENSORS}, 报警位不超过16位且只含0、1, 状态为空或为整数
+     */
+    static boolean isPackable(List<BusInfo.Sensor> sensorList) {
+        if (sensorList == null) {
+            return true;
+        }
+        if (sensorList.size() > MAX_SENSORS) {
+            return false;
+        }
+        for (BusInfo.Sensor sensor : sensorList) {
+            if (!isPackable(sensor.getFire()) || !isPackable(sensor.getError())) {
+                return false;
+            }
+            String state = sensor.getState();
+            if (state != null && (parseInt(state) == NULL_INT || !String.valueOf(parseInt(state)).equals(state))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPackable(String bits) {
+        if (bits == null) {
+            return true;
+        }
+        if (bits.length() > 16) {
+            return false;
+        }
+        for (int i = 0; i < bits.length(); i++) {
+            char c = bits.charAt(i);
+            if (c != '0' && c != '1') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static BusInfo.Sensor copySensor(BusInfo.Sensor sensor) {
+        BusInfo.Sensor copy = new BusInfo.Sensor();
+        copy.setSn(sensor.getSn());
+        copy.setTemp(sensor.getTemp());
+        copy.setConcen(sensor.getConcen());
+        copy.setFire(sensor.getFire());
+        copy.setError(sensor.getError());
+        copy.setState(sensor.getState());
+        return copy;
+    }
+
+    /**
+     * 将"0100"形式的报警位字符串打包为int, 高16位保存位数, 低16位保存各位取值
+     */
+    static int packBits(String bits) {
+        if (bits == null) {
+            return NULL_INT;
+        }
+        int length = Math.min(bits.length(), 16);
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            if (bits.charAt(i) != '0') {
+                value |= 1 << i;
+            }
+        }
+        return (length << 16) | value;
+    }
+
+    static String unpackBits(int packed) {
+        if (packed == NULL_INT) {
+            return null;
+        }
+        int length = packed >>> 16;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (packed & (1 << i)) != 0 ? '1' : '0';
+        }
+        return new String(chars);
+    }
+
+    private long putGroupName(String groupId, String groupName) {
+        long id = parseLong(groupId);
+        if (id != NULL_LONG && groupName != null) {
+            groupNames.put(id, groupName);
+        }
+        return id;
+    }
+
+    private void allocate(int newCapacity) {
+        vins = vins == null ? new String[newCapacity] : Arrays.copyOf(vins, newCapacity);
+        busNums = busNums == null ? new String[newCapacity] : Arrays.copyOf(busNums, newCapacity);
+        drivingNums = drivingNums == null ? new String[newCapacity] : Arrays.copyOf(drivingNums, newCapacity);
+        productNums = productNums == null ? new String[newCapacity] : Arrays.copyOf(productNums, newCapacity);
+        modelNames = modelNames == null ? new String[newCapacity] : Arrays.copyOf(modelNames, newCapacity);
+        factoryNames = factoryNames == null ? new String[newCapacity] : Arrays.copyOf(factoryNames, newCapacity);
+        states = states == null ? new String[newCapacity] : Arrays.copyOf(states, newCapacity);
+        ids = ids == null ? new long[newCapacity] : Arrays.copyOf(ids, newCapacity);
+        rootGroupIds = rootGroupIds == null ? new long[newCapacity] : Arrays.copyOf(rootGroupIds, newCapacity);
+        branchGroupIds = branchGroupIds == null ? new long[newCapacity] : Arrays.copyOf(branchGroupIds, newCapacity);
+        siteGroupIds = siteGroupIds == null ? new long[newCapacity] : Arrays.copyOf(siteGroupIds, newCapacity);
+        lineGroupIds = lineGroupIds == null ? new long[newCapacity] : Arrays.copyOf(lineGroupIds, newCapacity);
+        xTexts = xTexts == null ? new String[newCapacity] : Arrays.copyOf(xTexts, newCapacity);
+        yTexts = yTexts == null ? new String[newCapacity] : Arrays.copyOf(yTexts, newCapacity);
+        xs = xs == null ? new double[newCapacity] : Arrays.copyOf(xs, newCapacity);
+        ys = ys == null ? new double[newCapacity] : Arrays.copyOf(ys, newCapacity);
+        eventCodes = eventCodes == null ? new int[newCapacity] : Arrays.copyOf(eventCodes, newCapacity);
+        sendTimes = sendTimes == null ? new long[newCapacity] : Arrays.copyOf(sendTimes, newCapacity);
+        versions = versions == null ? new long[newCapacity] : Arrays.copyOf(versions, newCapacity);
+        sensors = sensors == null ? new int[newCapacity * SENSOR_STRIDE] : Arrays.copyOf(sensors, newCapacity * SENSOR_STRIDE);
+        capacity = newCapacity;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return NULL_LONG;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return NULL_LONG;
+        }
+    }
+
+    static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return NULL_INT;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        if (value == null || value.isEmpty()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String toString(long value) {
+        return value == NULL_LONG ? null : Long.toString(value);
+    }
+}
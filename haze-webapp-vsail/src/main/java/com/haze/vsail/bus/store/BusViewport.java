@@ -0,0 +1,35 @@
+package com.haze.vsail.bus.store;
+
+import com.haze.vsail.bus.util.BusInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 地图可视范围内的车辆, 包括单独显示的车辆和聚合点
+ */
+public class BusViewport {
+
+    private final List<BusInfo> buses = new ArrayList<>();
+
+    private final List<BusCluster> clusters = new ArrayList<>();
+
+    public List<BusInfo> getBuses() {
+        return buses;
+    }
+
+    public List<BusCluster> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * 范围内车辆总数
+     */
+    public int getTotal() {
+        int total = buses.size();
+        for (BusCluster cluster : clusters) {
+            total += cluster.getCount();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,147 @@
+package com.haze.vsail.bus.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * 车辆坐标网格索引, 按固定经纬度间隔将坐标划分为网格, 每个网格保存其中车辆的槽位编号
+ * <p>
+ *     由{@link BusStateStore}在写锁内维护, 本身不是线程安全的。坐标变化时只在网格间移动槽位,
+ *     范围查询只访问与范围相交的网格。
+ * </p>
+ */
+class GridIndex {
+
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private final double cellSize;
+
+    /**
+     * 网格编号 -> 网格内槽位
+     */
+    private final Map<Long, Cell> cells = new HashMap<>();
+
+    /**
+     * 槽位 -> 所在网格编号
+     */
+    private long[] slotCells = new long[0];
+
+    GridIndex(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * 更新槽位坐标, 坐标为NaN时从索引中移除
+     */
+    void update(int slot, double x, double y) {
+        ensureCapacity(slot + 1);
+        long cellKey = Double.isNaN(x) || Double.isNaN(y) ? NO_CELL : key(cellX(x), cellY(y));
+        long current = slotCells[slot];
+        if (current == cellKey) {
+            return;
+        }
+        if (current != NO_CELL) {
+            Cell cell = cells.get(current);
+            cell.remove(slot);
+            if (cell.size == 0) {
+                cells.remove(current);
+            }
+        }
+        if (cellKey != NO_CELL) {
+            cells.computeIfAbsent(cellKey, k -> new Cell()).add(slot);
+        }
+        slotCells[slot] = cellKey;
+    }
+
+    void remove(int slot) {
+        update(slot, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * 遍历与范围相交网格中的槽位, 槽位坐标需要调用方再次判断
+     * <p>
+     *     范围内网格数量按double计算, 超大范围不会溢出, 此时直接遍历非空网格。
+     * </p>
+     */
+    void forEachCandidate(double minX, double minY, double maxX, double maxY, IntConsumer consumer) {
+        long fromX = cellX(minX);
+        long toX = cellX(maxX);
+        long fromY = cellY(minY);
+        long toY = cellY(maxY);
+        double cellCount = ((double) toX - fromX + 1) * ((double) toY - fromY + 1);
+        if (cellCount > cells.size()) {
+            //范围内网格数量多于非空网格数量时直接遍历非空网格
+            for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                long cx = entry.getKey() >> 32;
+                long cy = (int) entry.getKey().longValue();
+                if (cx >= fromX && cx <= toX && cy >= fromY && cy <= toY) {
+                    entry.getValue().forEach(consumer);
+                }
+            }
+            return;
+        }
+        for (long cx = fromX; cx <= toX; cx++) {
+            for (long cy = fromY; cy <= toY; cy++) {
+                Cell cell = cells.get(key(cx, cy));
+                if (cell != null) {
+                    cell.forEach(consumer);
+                }
+            }
+        }
+    }
+
+    int cellCount() {
+        return cells.size();
+    }
+
+    private long cellX(double x) {
+        return (long) Math.floor(x / cellSize);
+    }
+
+    private long cellY(double y) {
+        return (long) Math.floor(y / cellSize);
+    }
+
+    private static long key(long cx, long cy) {
+        return (cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private void ensureCapacity(int size) {
+        if (slotCells.length < size) {
+            int oldLength = slotCells.length;
+            slotCells = Arrays.copyOf(slotCells, Math.max(size, oldLength * 2));
+            Arrays.fill(slotCells, oldLength, slotCells.length, NO_CELL);
+        }
+    }
+
+    private static final class Cell {
+
+        private int[] slots = new int[4];
+
+        private int size = 0;
+
+        private void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        private void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return;
+                }
+            }
+        }
+
+        private void forEach(IntConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(slots[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.haze.vsail.bus.store;
+
+import com.haze.vsail.bus.util.BusInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 车辆传感器历史数据内存存储
+ * <p>
+ *     每辆车一个固定长度的环形缓冲区, 保存最近若干帧传感器数据, 每帧保存发送时间、火警及故障标识以及每个传感器的
+ *     编号、温度、一氧化碳浓度、火警位、故障位和状态, 全部存放在基本类型数组中。数据由车辆实时信息事件写入,
+ *     监控页面查询传感器数据时直接从内存读取, 服务启动后每辆车首次查询时从数据库补齐启动前的历史数据, 之后不再查询数据库。
+ * </p>
+ */
+@Component
+public class SensorHistoryStore {
+
+    /**
+     * 每帧最多保存传感器数量, 与监控页面展示数量一致
+     */
+    public static final int MAX_SENSORS = 6;
+
+    private static final int SENSOR_FIELDS = 6;
+
+    private static final int FRAME_STRIDE = MAX_SENSORS * SENSOR_FIELDS;
+
+    private final int capacity;
+
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    public SensorHistoryStore(@Value("${vsail.sensor-history.size:10}") int capacity) {
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    /**
+     * 记录车辆当前传感器数据, 发送时间为空、没有传感器数据或与最近一帧发送时间相同时忽略
+     *
+     * @param busInfo 车辆信息
+     */
+    public void record(BusInfo busInfo) {
+        if (busInfo.getVin() == null || busInfo.getSendTime() == null || busInfo.getSensores() == null || busInfo.getSensores().isEmpty()) {
+            return;
+        }
+        Ring ring = rings.computeIfAbsent(busInfo.getVin(), k -> new Ring(capacity));
+        ring.add(busInfo.getSendTime().getTime(), busInfo.isFire(), busInfo.isBreakDown(), busInfo.getSensores());
+    }
+
+    /**
+     * 使用数据库查询结果补齐车辆传感器历史数据, 只补入早于最早一帧实时数据的记录, 已补齐时忽略
+     *
+     * @param vin  车辆vin码
+     * @param rows 按发送时间升序排列的传感器数据, 格式与{@link #getRows(String)}一致
+     */
+    public void load(String vin, List<Object[]> rows) {
+        Ring ring = rings.computeIfAbsent(vin, k -> new Ring(capacity));
+        ring.load(rows);
+    }
+
+    /**
+     * 删除车辆传感器历史数据
+     *
+     * @param vin 车辆vin码
+     */
+    public void remove(String vin) {
+        rings.remove(vin);
+    }
+
+    /**
+     * 获取车辆传感器历史数据, 按发送时间升序排列
+     *
+     * @param vin 车辆vin码
+     * @return [vin, 数据发送时间, 传感器数量, 是否火警, 是否故障, 传感器编号,传感器温度,传感器一氧化碳浓度,火警,故障,状态 [1-6]], 尚未从数据库补齐时返回null
+     */
+    public List<Object[]> getRows(String vin) {
+        Ring ring = rings.get(vin);
+        return ring == null ? null : ring.toRows(vin);
+    }
+
+    public int size() {
+        return rings.size();
+    }
+
+    /**
+     * 单辆车的环形缓冲区
+     */
+    private static final class Ring {
+
+        private final long[] times;
+
+        private final boolean[] fires;
+
+        private final boolean[] errors;
+
+        private final byte[] counts;
+
+        private final int[] sensors;
+
+        private int head = 0;
+
+        private int size = 0;
+
+        /**
+         * 是否已从数据库补齐服务启动前的历史数据, 与是否已有实时数据无关, 补齐后即使没有数据也不再查询数据库
+         */
+        private boolean seeded = false;
+
+        private Ring(int capacity) {
+            times = new long[capacity];
+            fires = new boolean[capacity];
+            errors = new boolean[capacity];
+            counts = new byte[capacity];
+            sensors = new int[capacity * FRAME_STRIDE];
+        }
+
+        private synchronized void add(long time, boolean fire, boolean error, List<BusInfo.Sensor> sensorList) {
+            if (size > 0 && times[(head - 1 + times.length) % times.length] == time) {
+                return;
+            }
+            int frame = next(time, fire, error);
+            int count = Math.min(sensorList.size(), MAX_SENSORS);
+            counts[frame] = (byte) count;
+            for (int i = 0; i < count; i++) {
+                BusInfo.Sensor sensor = sensorList.get(i);
+                int base = frame * FRAME_STRIDE + i * SENSOR_FIELDS;
+                sensors[base] = sensor.getSn();
+                sensors[base + 1] = sensor.getTemp();
+                sensors[base + 2] = sensor.getConcen();
+                sensors[base + 3] = BusStateStore.packBits(sensor.getFire());
+                sensors[base + 4] = BusStateStore.packBits(sensor.getError());
+                sensors[base + 5] = sensor.getState() != null ? BusStateStore.parseInt(sensor.getState()) : BusStateStore.NULL_INT;
+            }
+        }
+
+        private synchronized void load(List<Object[]> rows) {
+            if (seeded) {
+                return;
+            }
+            seeded = true;
+            int liveSize = size;
+            int liveStart = (head - size + times.length) % times.length;
+            long oldest = liveSize > 0 ? times[liveStart] : Long.MAX_VALUE;
+            List<Object[]> older = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                if (row[1] instanceof Date && ((Date) row[1]).getTime() < oldest) {
+                    older.add(row);
+                }
+            }
+            int keep = Math.min(older.size(), times.length - liveSize);
+            if (keep == 0) {
+                return;
+            }
+            //先复制已写入的实时数据, 按时间顺序写入数据库记录后再写回实时数据
+            long[] liveTimes = new long[liveSize];
+            boolean[] liveFires = new boolean[liveSize];
+            boolean[] liveErrors = new boolean[liveSize];
+            byte[] liveCounts = new byte[liveSize];
+            int[] liveSensors = new int[liveSize * FRAME_STRIDE];
+            for (int n = 0; n < liveSize; n++) {
+                int frame = (liveStart + n) % times.length;
+                liveTimes[n] = times[frame];
+                liveFires[n] = fires[frame];
+                liveErrors[n] = errors[frame];
+                liveCounts[n] = counts[frame];
+                System.arraycopy(sensors, frame * FRAME_STRIDE, liveSensors, n * FRAME_STRIDE, FRAME_STRIDE);
+            }
+            head = 0;
+            size = 0;
+            for (int n = older.size() - keep; n < older.size(); n++) {
+                loadRow(older.get(n));
+            }
+            for (int n = 0; n < liveSize; n++) {
+                int frame = next(liveTimes[n], liveFires[n], liveErrors[n]);
+                counts[frame] = liveCounts[n];
+                System.arraycopy(liveSensors, n * FRAME_STRIDE, sensors, frame * FRAME_STRIDE, FRAME_STRIDE);
+            }
+        }
+
+        private void loadRow(Object[] row) {
+            int frame = next(((Date) row[1]).getTime(), "1".equals(toText(row[3])), "1".equals(toText(row[4])));
+            int count = 0;
+            for (int i = 0; i < MAX_SENSORS && 5 + i * SENSOR_FIELDS + 5 < row.length; i++) {
+                int offset = 5 + i * SENSOR_FIELDS;
+                String sn = toText(row[offset]);
+                if (sn == null) {
+                    continue;
+                }
+                int base = frame * FRAME_STRIDE + count * SENSOR_FIELDS;
+                sensors[base] = toInt(sn);
+                sensors[base + 1] = toInt(toText(row[offset + 1]));
+                sensors[base + 2] = toInt(toText(row[offset + 2]));
+                sensors[base + 3] = BusStateStore.packBits(toText(row[offset + 3]));
+                sensors[base + 4] = BusStateStore.packBits(toText(row[offset + 4]));
+                String state = toText(row[offset + 5]);
+                sensors[base + 5] = state != null ? BusStateStore.parseInt(state) : BusStateStore.NULL_INT;
+                count++;
+            }
+            counts[frame] = (byte) count;
+        }
+
+        private int next(long time, boolean fire, boolean error) {
+            int frame = head;
+            times[frame] = time;
+            fires[frame] = fire;
+            errors[frame] = error;
+            head = (head + 1) % times.length;
+            if (size < times.length) {
+                size++;
+            }
+            return frame;
+        }
+
+        private synchronized List<Object[]> toRows(String vin) {
+            if (!seeded) {
+                return null;
+            }
+            List<Object[]> rows = new ArrayList<>(size);
+            int start = (head - size + times.length) % times.length;
+            for (int n = 0; n < size; n++) {
+                int frame = (start + n) % times.length;
+                Object[] row = new Object[5 + FRAME_STRIDE];
+                row[0] = vin;
+                row[1] = new Date(times[frame]);
+                row[2] = (int) counts[frame];
+                row[3] = fires[frame] ? "1" : "0";
+                row[4] = errors[frame] ? "1" : "0";
+                for (int i = 0; i < counts[frame]; i++) {
+                    int base = frame * FRAME_STRIDE + i * SENSOR_FIELDS;
+                    int offset = 5 + i * SENSOR_FIELDS;
+                    row[offset] = String.valueOf(sensors[base]);
+                    row[offset + 1] = String.valueOf(sensors[base + 1]);
+                    row[offset + 2] = String.valueOf(sensors[base + 2]);
+                    row[offset + 3] = BusStateStore.unpackBits(sensors[base + 3]);
+                    row[offset + 4] = BusStateStore.unpackBits(sensors[base + 4]);
+                    row[offset + 5] = sensors[base + 5] != BusStateStore.NULL_INT ? String.valueOf(sensors[base + 5]) : null;
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        private static String toText(Object value) {
+            return value == null ? null : value.toString();
+        }
+
+        private static int toInt(String value) {
+            int result = value == null ? BusStateStore.NULL_INT : BusStateStore.parseInt(value);
+            return result == BusStateStore.NULL_INT ? 0 : result;
+        }
+    }
+}
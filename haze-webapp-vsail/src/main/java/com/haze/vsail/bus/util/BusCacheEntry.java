@@ -0,0 +1,106 @@
+package com.haze.vsail.bus.util;
+
+import com.haze.vsail.bus.entity.Bus;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 车辆redis缓存中的车辆基本信息, 包括车辆所属运营公司、分公司、场站及线路机构
+ * <p>
+ *     批量重建缓存时由{@link com.haze.vsail.bus.dao.BusDao#findUsedBusCacheEntries()}通过一条关联查询直接构造,
+ *     不加载车辆及机构实体, 避免逐个车辆加载四个机构及其上级机构产生大量查询。
+ * </p>
+ */
+public class BusCacheEntry {
+
+    private final Long id;
+    private final String vin;
+    private final String busNum;
+    private final String modelName;
+    private final String factoryName;
+    private final String drivingNum;
+    private final String productNum;
+    private final Long rootGroupId;
+    private final String rootGroupName;
+    private final Long branchGroupId;
+    private final String branchGroupName;
+    private final Long siteGroupId;
+    private final String siteGroupName;
+    private final String address;
+    private final String linker;
+    private final String linkerMobile;
+    private final Long lineGroupId;
+    private final String lineGroupName;
+
+    public BusCacheEntry(Long id, String vin, String busNum, String modelName, String factoryName, String drivingNum, String productNum,
+                         Long rootGroupId, String rootGroupName, Long branchGroupId, String branchGroupName,
+                         Long siteGroupId, String siteGroupName, String address, String linker, String linkerMobile,
+                         Long lineGroupId, String lineGroupName) {
+        this.id = id;
+        this.vin = vin;
+        this.busNum = busNum;
+        this.modelName = modelName;
+        this.factoryName = factoryName;
+        this.drivingNum = drivingNum;
+        this.productNum = productNum;
+        this.rootGroupId = rootGroupId;
+        this.rootGroupName = rootGroupName;
+        this.branchGroupId = branchGroupId;
+        this.branchGroupName = branchGroupName;
+        this.siteGroupId = siteGroupId;
+        this.siteGroupName = siteGroupName;
+        this.address = address;
+        this.linker = linker;
+        this.linkerMobile = linkerMobile;
+        this.lineGroupId = lineGroupId;
+        this.lineGroupName = lineGroupName;
+    }
+
+    public BusCacheEntry(Bus bus) {
+        this(bus.getId(), bus.getVin(), bus.getBusNum(), bus.getModelName(), bus.getFactoryName(), bus.getDrivingNum(), bus.getProductNum(),
+                bus.getRootGroup().getId(), bus.getRootGroup().getFullName(),
+                bus.getBranchGroup().getId(), bus.getBranchGroup().getFullName(),
+                bus.getSiteGroup().getId(), bus.getSiteGroup().getFullName(),
+                bus.getSiteGroup().getAddress(), bus.getSiteGroup().getLinker(), bus.getSiteGroup().getLinkerMobile(),
+                bus.getLineGroup().getId(), bus.getLineGroup().getFullName());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getVin() {
+        return vin;
+    }
+
+    public Long getRootGroupId() {
+        return rootGroupId;
+    }
+
+    /**
+     * 转换为车辆redis缓存字段
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", id.toString());
+        map.put("vin", vin);
+        map.put("busNum", busNum);
+        map.put("modelName", modelName);
+        map.put("factoryName", factoryName);
+        map.put("drivingNum", drivingNum);
+        map.put("productNum", productNum);
+        map.put("rootGroupId", rootGroupId.toString());
+        map.put("rootGroupName", rootGroupName);
+        map.put("branchGroupId", branchGroupId.toString());
+        map.put("branchGroupName", branchGroupName);
+        map.put("siteGroupId", siteGroupId.toString());
+        map.put("siteGroupName", siteGroupName);
+        map.put("lineGroupId", lineGroupId.toString());
+        map.put("lineGroupName", lineGroupName);
+        map.put("address", address);
+        map.put("linker", linker);
+        map.put("linkerMobile", linkerMobile);
+        return map;
+    }
+}
@@ -0,0 +1,263 @@
+package com.haze.vsail.bus.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.haze.common.util.HazeJsonUtils;
+import com.haze.vsail.bus.store.BusStateChange;
+import com.haze.vsail.bus.store.BusStateSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 车辆信息websocket增量协议编码工具类
+ * <p>
+ *     客户端通过连接参数{@code protocol=delta}启用增量协议, 连接建立后先收到基线快照, 之后只收到变化字段,
+ *     车辆以数字编号(busId)标识。消息格式如下:
+ * </p>
+ * <pre>
+ * 快照 {"t":"s","e":存储实例标识,"v":版本号,"buses":[{"i":车辆编号,"v":车辆版本号,"d":{完整车辆信息}}]}
+ * 增量 {"t":"d","i":车辆编号,"v":版本号,"p":上一版本号,"f":{变化字段}}
+ * 删除 {"t":"r","i":车辆编号,"v":版本号,"p":上一版本号}
+ * 完整 {"t":"f","i":车辆编号,"v":版本号,"d":{完整车辆信息}}
+ * </pre>
+ * <p>
+ *     完整消息在车辆进入客户端订阅范围时发送, 客户端直接替换该车辆信息和版本号, 不检查上一版本号。
+ * </p>
+ * <p>
+ *     客户端同时指定{@code binary=1}时, 只有坐标和发送时间变化的增量以二进制帧发送, 大端字节序依次为
+ *     类型(byte, 固定为{@link #BINARY_POSITION}), 车辆编号(int), 版本号(long), 上一版本号(long), x(double), y(double),
+ *     发送时间毫秒数(long, 为空时-1)。
+ * </p>
+ * <p>
+ *     客户端按车辆记录版本号, 收到增量的上一版本号与本地记录不一致时说明遗漏了消息, 应重新建立连接获取快照。
+ * </p>
+ * <p>
+ *     客户端已持有某一快照时, 可通过连接参数{@code since=版本号&epoch=存储实例标识}请求增量快照, 增量快照另外包含
+ *     {@code "since":基准版本号,"removed":[删除的车辆编号]}, buses只包含基准版本之后变化的车辆。
+ *     存储实例标识不一致(服务已重启)或基准版本过旧时仍发送完整快照。
+ * </p>
+ * <p>
+ *     页面首次加载的快照通过http流式输出({@link #writeSnapshotStart}), 格式与快照消息一致。
+ *     指定列格式时另外输出{@code "fields":[字段名]}, 每辆车输出为数组{@code [车辆编号,车辆版本号,[按fields顺序的字段值]]}, 不再重复字段名。
+ * </p>
+ */
+public final class BusDeltaCodec {
+
+    public static final byte BINARY_POSITION = 1;
+
+    public static final int BINARY_POSITION_LENGTH = 1 + 4 + 8 * 5;
+
+    /**
+     * 二进制帧可表示的字段
+     */
+    private static final Set<String> POSITION_FIELDS = new HashSet<>(Arrays.asList("x", "y", "sendTime"));
+
+    /**
+     * 列格式快照的车辆字段顺序
+     */
+    private static final List<String> COLUMNS;
+
+    static {
+        List<String> columns = new ArrayList<>();
+        HazeJsonUtils.<ObjectNode>toTree(new BusInfo()).fieldNames().forEachRemaining(columns::add);
+        COLUMNS = Collections.unmodifiableList(columns);
+    }
+
+    private BusDeltaCodec() {
+    }
+
+    /**
+     * 编码车辆状态快照
+     *
+     * @param snapshot 车辆状态快照
+     * @return json字符串
+     */
+    public static String encodeSnapshot(BusStateSnapshot snapshot) {
+        ObjectNode root = HazeJsonUtils.createObjectNode();
+        root.put("t", "s");
+        root.put("e", snapshot.getEpoch());
+        root.put("v", snapshot.getVersion());
+        if (snapshot.isIncremental()) {
+            root.put("since", snapshot.getSince());
+            ArrayNode removed = root.putArray("removed");
+            snapshot.getRemoved().forEach(removed::add);
+        }
+        ArrayNode buses = root.putArray("buses");
+        for (BusStateSnapshot.Entry entry : snapshot.getEntries()) {
+            ObjectNode bus = buses.addObject();
+            bus.put("i", entry.getBusId());
+            bus.put("v", entry.getVersion());
+            bus.set("d", HazeJsonUtils.toTree(entry.getBusInfo()));
+        }
+        return HazeJsonUtils.writeToCompactString(root);
+    }
+
+    /**
+     * 开始流式输出完整快照, 之后逐个调用{@link #writeSnapshotEntry}输出车辆, 最后调用{@link #writeSnapshotEnd}
+     *
+     * @param generator json生成器
+     * @param epoch     存储实例标识
+     * @param version   快照版本号
+     * @param columnar  是否使用列格式
+     * @throws IOException 输出失败
+     */
+    public static void writeSnapshotStart(JsonGenerator generator, long epoch, long version, boolean columnar) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("t", "s");
+        generator.writeNumberField("e", epoch);
+        generator.writeNumberField("v", version);
+        if (columnar) {
+            generator.writeArrayFieldStart("fields");
+            for (String column : COLUMNS) {
+                generator.writeString(column);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeArrayFieldStart("buses");
+    }
+
+    /**
+     * 流式输出快照中的一辆车
+     *
+     * @param generator json生成器
+     * @param entry     车辆状态
+     * @param columnar  是否使用列格式
+     * @throws IOException 输出失败
+     */
+    public static void writeSnapshotEntry(JsonGenerator generator, BusStateSnapshot.Entry entry, boolean columnar) throws IOException {
+        ObjectNode busInfo = HazeJsonUtils.toTree(entry.getBusInfo());
+        if (columnar) {
+            generator.writeStartArray();
+            generator.writeNumber(entry.getBusId());
+            generator.writeNumber(entry.getVersion());
+            generator.writeStartArray();
+            for (String column : COLUMNS) {
+                generator.writeTree(busInfo.get(column));
+            }
+            generator.writeEndArray();
+            generator.writeEndArray();
+        } else {
+            generator.writeStartObject();
+            generator.writeNumberField("i", entry.getBusId());
+            generator.writeNumberField("v", entry.getVersion());
+            generator.writeFieldName("d");
+            generator.writeTree(busInfo);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * 结束流式输出快照
+     *
+     * @param generator json生成器
+     * @throws IOException 输出失败
+     */
+    public static void writeSnapshotEnd(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * 编码车辆状态变化, 新增车辆时输出完整信息, 更新时只输出变化字段
+     *
+     * @param change 车辆状态变化
+     * @return json字符串
+     */
+    public static String encodeDelta(BusStateChange change) {
+        ObjectNode root = HazeJsonUtils.createObjectNode();
+        root.put("t", change.isRemoved() ? "r" : "d");
+        root.put("i", change.getBusId());
+        root.put("v", change.getVersion());
+        root.put("p", change.getPreviousVersion());
+        if (!change.isRemoved()) {
+            root.set("f", diff(change.getPrevious(), change.getCurrent()));
+        }
+        return HazeJsonUtils.writeToCompactString(root);
+    }
+
+    /**
+     * 编码车辆变化后的完整信息
+     *
+     * @param change 车辆状态变化
+     * @return json字符串
+     */
+    public static String encodeFull(BusStateChange change) {
+        if (change.isRemoved()) {
+            return encodeDelta(change);
+        }
+        ObjectNode root = HazeJsonUtils.createObjectNode();
+        root.put("t", "f");
+        root.put("i", change.getBusId());
+        root.put("v", change.getVersion());
+        root.set("d", HazeJsonUtils.toTree(change.getCurrent()));
+        return HazeJsonUtils.writeToCompactString(root);
+    }
+
+    /**
+     * 编码只有坐标和发送时间变化的车辆状态为二进制帧
+     *
+     * @param change 车辆状态变化
+     * @return 二进制帧, 存在其他字段变化或坐标无法解析时返回null
+     */
+    public static ByteBuffer encodePosition(BusStateChange change) {
+        if (change.isRemoved() || change.getPrevious() == null) {
+            return null;
+        }
+        Iterator<String> fields = diff(change.getPrevious(), change.getCurrent()).fieldNames();
+        while (fields.hasNext()) {
+            if (!POSITION_FIELDS.contains(fields.next())) {
+                return null;
+            }
+        }
+        BusInfo current = change.getCurrent();
+        double x;
+        double y;
+        try {
+            x = Double.parseDouble(current.getX());
+            y = Double.parseDouble(current.getY());
+        } catch (NullPointerException | NumberFormatException e) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BINARY_POSITION_LENGTH);
+        buffer.put(BINARY_POSITION);
+        buffer.putInt(change.getBusId());
+        buffer.putLong(change.getVersion());
+        buffer.putLong(change.getPreviousVersion());
+        buffer.putDouble(x);
+        buffer.putDouble(y);
+        buffer.putLong(current.getSendTime() != null ? current.getSendTime().getTime() : -1L);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 比较两个车辆信息的json字段, 返回当前值与之前不同的字段
+     */
+    private static ObjectNode diff(BusInfo previous, BusInfo current) {
+        ObjectNode currentNode = HazeJsonUtils.toTree(current);
+        if (previous == null) {
+            return currentNode;
+        }
+        JsonNode previousNode = HazeJsonUtils.toTree(previous);
+        ObjectNode changed = HazeJsonUtils.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> it = currentNode.fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> field = it.next();
+            if (!field.getValue().equals(previousNode.get(field.getKey()))) {
+                changed.set(field.getKey(), field.getValue());
+            }
+        }
+        return changed;
+    }
+}
@@ -1,14 +1,12 @@
 package com.haze.vsail.bus.util;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
-import com.haze.common.util.HazeDateUtils;
 import com.haze.common.util.HazeJsonUtils;
 import com.haze.vsail.bus.entity.Bus;
 import org.springframework.boot.configurationprocessor.json.JSONArray;
 
 import java.io.Serializable;
 import java.lang.reflect.Array;
-import java.text.ParseException;
 import java.util.*;
 
 public class BusInfo implements Serializable {
@@ -20,6 +18,7 @@ public class BusInfo implements Serializable {
     private String productNum;
     private String rootGroupId;
     private String modelName;
+    private String factoryName;
     private String rootGroupName;
     private String branchGroupId;
     private String branchGroupName;
@@ -56,95 +55,19 @@ public class BusInfo implements Serializable {
     @JsonFormat(pattern="yyyy-MM-dd HH:mm:ss")
     private Date sendTime;
 
+    public BusInfo() {
+    }
+
     public BusInfo(Bus bus, int eventCode) {
         this(BusInfo.fromBus(bus));
         this.eventCode = eventCode;
     }
 
+    /**
+     * 根据车辆redis缓存创建车辆信息, 解码由{@link BusInfoCodec}完成
+     */
     public BusInfo(Map<String, Object> map) {
-        if (map.containsKey("id")) {
-            this.setId(((String)map.get("id")));
-        }
-        if (map.containsKey("vin")) {
-            this.setVin((String) map.get("vin"));
-        }
-        if (map.containsKey("busNum")) {
-            this.setBusNum((String) map.get("busNum"));
-        }
-        if (map.containsKey("drivingNum")) {
-            this.setDrivingNum((String) map.get("drivingNum"));
-        }
-
-        if (map.containsKey("rootGroupName")) {
-            this.setRootGroupName((String) map.get("rootGroupName"));
-        }
-        if (map.containsKey("rootGroupId")) {
-            this.setRootGroupId((String) map.get("rootGroupId"));
-        }
-
-        if (map.containsKey("lineGroupName")) {
-            this.setLineGroupName((String) map.get("lineGroupName"));
-        }
-        if (map.containsKey("lineGroupId")) {
-            this.setLineGroupId((String) map.get("lineGroupId"));
-        }
-
-        if (map.containsKey("siteGroupName")) {
-            this.setSiteGroupName((String) map.get("siteGroupName"));
-        }
-        if (map.containsKey("siteGroupId")) {
-            this.setSiteGroupId((String) map.get("siteGroupId"));
-        }
-
-        if (map.containsKey("branchGroupName")) {
-            this.setBranchGroupName((String) map.get("branchGroupName"));
-        }
-        if (map.containsKey("branchGroupId")) {
-            this.setBranchGroupId((String) map.get("branchGroupId"));
-        }
-        if (map.containsKey("eventCode")) {
-            this.eventCode = Integer.parseInt(map.get("eventCode").toString()) ;
-        }
-        if (map.containsKey("isFire")) {
-            int fire = Integer.parseInt(map.get("isFire").toString());
-            this.isFire = fire == 1;
-        }
-        if (map.containsKey("isError")) {
-            int breakDown = Integer.parseInt(map.get("isError").toString());
-            this.isBreakDown = breakDown == 1;
-        }
-        if (map.containsKey("stime")) {
-            try {
-                this.sendTime = HazeDateUtils.parseDate((String)map.get("stime"), "yyyy-MM-dd hh:mm:ss") ;
-            } catch (ParseException e) {
-                e.printStackTrace();
-            }
-        }
-        if (map.containsKey("x") && map.containsKey("y")) {
-            this.x = (String) map.get("x");
-            this.y = (String) map.get("y");
-        }
-        if (map.containsKey("modelName")) {
-            this.modelName = (String)map.get("modelName");
-        }
-        if (map.containsKey("address")) {
-            this.address = (String)map.get("address");
-        }
-        if (map.containsKey("linker")) {
-            this.linker = (String)map.get("linker");
-        }
-        if (map.containsKey("linkerMobile")) {
-            this.linkerMobile = (String)map.get("linkerMobile");
-        }
-        if (map.containsKey("state")) {
-            this.state = (String)map.get("state");
-        }
-        if (map.containsKey("sensores")) {
-            String str = (String)map.get("sensores");
-            str = str.replaceAll("'","\"");
-            //Sensor[] a = HazeJsonUtils.readFromString(str, Sensor[].class);
-            this.sensores = HazeJsonUtils.readFromString(str, sensores.getClass());
-        }
+        BusInfoCodec.decode(map, this);
     }
 
     public String getId() {
@@ -315,6 +238,13 @@ public class BusInfo implements Serializable {
         return HazeJsonUtils.writeToString(this);
     }
 
+    /**
+     * 转换为不包含缩进的json字符串, 用于websocket推送
+     */
+    public String toCompactJson() {
+        return HazeJsonUtils.writeToCompactString(this);
+    }
+
     public String getModelName() {
         return modelName;
     }
@@ -323,6 +253,14 @@ public class BusInfo implements Serializable {
         this.modelName = modelName;
     }
 
+    public String getFactoryName() {
+        return factoryName;
+    }
+
+    public void setFactoryName(String factoryName) {
+        this.factoryName = factoryName;
+    }
+
     public String getAddress() {
         return address;
     }
@@ -362,27 +300,11 @@ public class BusInfo implements Serializable {
         return false;
     }
 
+    /**
+     * 根据车辆实体获取车辆redis缓存字段, 批量获取时使用{@link com.haze.vsail.bus.dao.BusDao#findUsedBusCacheEntries()}
+     */
     public static Map<String, Object> fromBus(Bus bus) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("id", bus.getId().toString());
-        map.put("vin", bus.getVin());
-        map.put("busNum", bus.getBusNum());
-        map.put("modelName", bus.getModelName());
-        map.put("factoryName", bus.getFactoryName());
-        map.put("drivingNum", bus.getDrivingNum());
-        map.put("productNum", bus.getProductNum());
-        map.put("rootGroupId", bus.getRootGroup().getId());
-        map.put("rootGroupName", bus.getRootGroup().getFullName());
-        map.put("branchGroupId", bus.getBranchGroup().getId());
-        map.put("branchGroupName", bus.getBranchGroup().getFullName());
-        map.put("siteGroupId", bus.getSiteGroup().getId());
-        map.put("siteGroupName", bus.getSiteGroup().getFullName());
-        map.put("lineGroupId", bus.getLineGroup().getId());
-        map.put("lineGroupName", bus.getLineGroup().getFullName());
-        map.put("address", bus.getSiteGroup().getAddress());
-        map.put("linker", bus.getSiteGroup().getLinker());
-        map.put("linkerMobile", bus.getSiteGroup().getLinkerMobile());
-        return map;
+        return new BusCacheEntry(bus).toMap();
     }
 
 
@@ -0,0 +1,519 @@
+package com.haze.vsail.bus.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 车辆redis缓存解码工具类
+ * <p>
+ *     只遍历一次hash字段并按字段名称直接写入{@link BusInfo}, 数值字段不经过toString转换, 发送时间使用共享的{@link DateTimeFormatter}解析。
+ *     传感器数据由手写解析器直接读取网关写入的单引号或双引号json, 不再替换引号后交由Jackson解析。
+ * </p>
+ * <p>
+ *     {@link #decode(Map, BusInfo)}可重复使用同一个{@link BusInfo}对象, 其中传感器列表、传感器对象、发送时间对象以及内容未变化的
+ *     传感器字符串都会被复用, 适合批量加载车辆状态等解码结果不会被保留的场景。
+ * </p>
+ */
+public final class BusInfoCodec {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusInfoCodec.class);
+
+    private static final DateTimeFormatter SEND_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String DEFAULT_STATE = "离线";
+
+    private BusInfoCodec() {
+    }
+
+    /**
+     * 解码车辆缓存为新的车辆信息对象
+     *
+     * @param hash 车辆redis缓存
+     * @return 车辆信息
+     */
+    public static BusInfo decode(Map<String, Object> hash) {
+        return decode(hash, new BusInfo());
+    }
+
+    /**
+     * 解码车辆缓存到已有车辆信息对象, 对象原有内容被全部覆盖
+     *
+     * @param hash   车辆redis缓存
+     * @param target 车辆信息对象
+     * @return target
+     */
+    public static BusInfo decode(Map<String, Object> hash, BusInfo target) {
+        Date sendTime = target.getSendTime();
+        reset(target);
+        boolean hasSensores = false;
+        String x = null;
+        String y = null;
+        for (Map.Entry<String, Object> entry : hash.entrySet()) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case "id":
+                    target.setId((String) value);
+                    break;
+                case "vin":
+                    target.setVin((String) value);
+                    break;
+                case "busNum":
+                    target.setBusNum((String) value);
+                    break;
+                case "drivingNum":
+                    target.setDrivingNum((String) value);
+                    break;
+                case "productNum":
+                    target.setProductNum((String) value);
+                    break;
+                case "modelName":
+                    target.setModelName((String) value);
+                    break;
+                case "factoryName":
+                    target.setFactoryName((String) value);
+                    break;
+                case "rootGroupId":
+                    target.setRootGroupId((String) value);
+                    break;
+                case "rootGroupName":
+                    target.setRootGroupName((String) value);
+                    break;
+                case "branchGroupId":
+                    target.setBranchGroupId((String) value);
+                    break;
+                case "branchGroupName":
+                    target.setBranchGroupName((String) value);
+                    break;
+                case "siteGroupId":
+                    target.setSiteGroupId((String) value);
+                    break;
+                case "siteGroupName":
+                    target.setSiteGroupName((String) value);
+                    break;
+                case "lineGroupId":
+                    target.setLineGroupId((String) value);
+                    break;
+                case "lineGroupName":
+                    target.setLineGroupName((String) value);
+                    break;
+                case "address":
+                    target.setAddress((String) value);
+                    break;
+                case "linker":
+                    target.setLinker((String) value);
+                    break;
+                case "linkerMobile":
+                    target.setLinkerMobile((String) value);
+                    break;
+                case "state":
+                    target.setState((String) value);
+                    break;
+                case "eventCode":
+                    target.setEventCode(toInt(value, target.getEventCode()));
+                    break;
+                case "isFire":
+                    target.setFire(toInt(value, 0) == 1);
+                    break;
+                case "isError":
+                    target.setBreakDown(toInt(value, 0) == 1);
+                    break;
+                case "stime":
+                    decodeSendTime((String) value, sendTime, target);
+                    break;
+                case "x":
+                    x = (String) value;
+                    break;
+                case "y":
+                    y = (String) value;
+                    break;
+                case "sensores":
+                    decodeSensores((String) value, target.getSensores());
+                    hasSensores = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!hasSensores) {
+            target.getSensores().clear();
+        }
+        //坐标只在同时存在时更新
+        if (hash.containsKey("x") && hash.containsKey("y")) {
+            target.setX(x);
+            target.setY(y);
+        }
+        return target;
+    }
+
+    private static void reset(BusInfo target) {
+        target.setId(null);
+        target.setVin(null);
+        target.setBusNum(null);
+        target.setDrivingNum(null);
+        target.setProductNum(null);
+        target.setModelName(null);
+        target.setFactoryName(null);
+        target.setRootGroupId(null);
+        target.setRootGroupName(null);
+        target.setBranchGroupId(null);
+        target.setBranchGroupName(null);
+        target.setSiteGroupId(null);
+        target.setSiteGroupName(null);
+        target.setLineGroupId(null);
+        target.setLineGroupName(null);
+        target.setAddress(null);
+        target.setLinker(null);
+        target.setLinkerMobile(null);
+        target.setX(null);
+        target.setY(null);
+        target.setEventCode(BusEventType.BUS_EVENT_REGISTER.getEventCode());
+        target.setFire(false);
+        target.setBreakDown(false);
+        target.setOnline(false);
+        target.setState(DEFAULT_STATE);
+        if (target.getSensores() == null) {
+            target.setSensores(new ArrayList<>());
+        }
+        target.setSendTime(null);
+    }
+
+    /**
+     * 比较两个车辆信息内容是否相同, 用于判断redis通知或其他节点转发的车辆信息是否已经应用
+     * <p>
+     *     坐标及传感器状态按数值比较("116.400000"与"116.4"相同), 发送时间精确到秒(与redis缓存一致),
+     *     不需要将两个车辆信息序列化为json。
+     * </p>
+     *
+     * @param a 车辆信息
+     * @param b 车辆信息
+     * @return 内容是否相同
+     */
+    public static boolean sameContent(BusInfo a, BusInfo b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        return a.getEventCode() == b.getEventCode() && a.isFire() == b.isFire() && a.isBreakDown() == b.isBreakDown()
+                && Objects.equals(a.getVin(), b.getVin()) && Objects.equals(a.getId(), b.getId())
+                && Objects.equals(a.getBusNum(), b.getBusNum()) && Objects.equals(a.getDrivingNum(), b.getDrivingNum())
+                && Objects.equals(a.getProductNum(), b.getProductNum()) && Objects.equals(a.getModelName(), b.getModelName())
+                && Objects.equals(a.getFactoryName(), b.getFactoryName())
+                && Objects.equals(a.getRootGroupId(), b.getRootGroupId()) && Objects.equals(a.getRootGroupName(), b.getRootGroupName())
+                && Objects.equals(a.getBranchGroupId(), b.getBranchGroupId()) && Objects.equals(a.getBranchGroupName(), b.getBranchGroupName())
+                && Objects.equals(a.getSiteGroupId(), b.getSiteGroupId()) && Objects.equals(a.getSiteGroupName(), b.getSiteGroupName())
+                && Objects.equals(a.getLineGroupId(), b.getLineGroupId()) && Objects.equals(a.getLineGroupName(), b.getLineGroupName())
+                && Objects.equals(a.getAddress(), b.getAddress()) && Objects.equals(a.getLinker(), b.getLinker())
+                && Objects.equals(a.getLinkerMobile(), b.getLinkerMobile()) && Objects.equals(a.getState(), b.getState())
+                && sameNumber(a.getX(), b.getX()) && sameNumber(a.getY(), b.getY())
+                && sameSecond(a.getSendTime(), b.getSendTime())
+                && sameSensores(a.getSensores(), b.getSensores());
+    }
+
+    /**
+     * 判断车辆信息的发送时间是否早于车辆当前状态, 精确到秒(与redis缓存一致), 任一发送时间为空时不视为较早
+     *
+     * @param busInfo 待应用的车辆信息
+     * @param current 车辆当前状态
+     * @return 是否早于当前状态
+     */
+    public static boolean isOlder(BusInfo busInfo, BusInfo current) {
+        if (busInfo == null || current == null || busInfo.getSendTime() == null || current.getSendTime() == null) {
+            return false;
+        }
+        return Math.floorDiv(busInfo.getSendTime().getTime(), 1000L) < Math.floorDiv(current.getSendTime().getTime(), 1000L);
+    }
+
+    private static boolean sameSensores(List<BusInfo.Sensor> a, List<BusInfo.Sensor> b) {
+        int size = a == null ? 0 : a.size();
+        if (size != (b == null ? 0 : b.size())) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            BusInfo.Sensor x = a.get(i);
+            BusInfo.Sensor y = b.get(i);
+            if (x.getSn() != y.getSn() || x.getTemp() != y.getTemp() || x.getConcen() != y.getConcen()
+                    || !Objects.equals(x.getFire(), y.getFire()) || !Objects.equals(x.getError(), y.getError())
+                    || !sameNumber(x.getState(), y.getState())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 比较两个数值字符串, 均可解析时按数值比较, 否则按字符串比较
+     */
+    private static boolean sameNumber(String a, String b) {
+        if (Objects.equals(a, b)) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        try {
+            return Double.compare(Double.parseDouble(a), Double.parseDouble(b)) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean sameSecond(Date a, Date b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Math.floorDiv(a.getTime(), 1000L) == Math.floorDiv(b.getTime(), 1000L);
+    }
+
+    private static int toInt(Object value, int defaultValue) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof String) {
+            String str = (String) value;
+            return parseInt(str, 0, str.length(), defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 不创建子字符串解析整数, 格式不正确时返回默认值
+     */
+    static int parseInt(CharSequence str, int start, int end, int defaultValue) {
+        while (start < end && str.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && str.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (start >= end) {
+            return defaultValue;
+        }
+        boolean negative = str.charAt(start) == '-';
+        int i = negative || str.charAt(start) == '+' ? start + 1 : start;
+        if (i >= end) {
+            return defaultValue;
+        }
+        int result = 0;
+        for (; i < end; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return defaultValue;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    private static void decodeSendTime(String value, Date reusable, BusInfo target) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        try {
+            long time = LocalDateTime.parse(value, SEND_TIME_FORMATTER).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (reusable != null) {
+                reusable.setTime(time);
+                target.setSendTime(reusable);
+            } else {
+                target.setSendTime(new Date(time));
+            }
+        } catch (DateTimeParseException e) {
+            logger.warn("车辆发送时间格式不正确, stime={}", value);
+        }
+    }
+
+    /**
+     * 解析传感器数据, 格式为[{'sn':1,'fire':'0000','error':'0000','concen':10,'temp':25,'state':'1'}],
+     * 引号可以为单引号或双引号。传感器对象按位置复用, 多余的对象被移除, 复用对象中本次数据没有的字段被重置,
+     * 不会保留上一次解码的值。
+     *
+     * @param value   传感器数据
+     * @param sensors 传感器列表
+     */
+    static void decodeSensores(String value, List<BusInfo.Sensor> sensors) {
+        int count = 0;
+        if (value != null) {
+            int length = value.length();
+            int i = 0;
+            BusInfo.Sensor sensor = null;
+            int seen = 0;
+            while (i < length) {
+                char c = value.charAt(i);
+                if (c == '{') {
+                    if (sensor != null) {
+                        resetUnseen(sensor, seen);
+                    }
+                    if (count < sensors.size()) {
+                        sensor = sensors.get(count);
+                    } else {
+                        sensor = new BusInfo.Sensor();
+                        sensors.add(sensor);
+                    }
+                    seen = 0;
+                    count++;
+                    i++;
+                } else if (c == '}') {
+                    if (sensor != null) {
+                        resetUnseen(sensor, seen);
+                    }
+                    sensor = null;
+                    i++;
+                } else if ((c == '\'' || c == '"') && sensor != null) {
+                    //读取字段名称
+                    int keyStart = i + 1;
+                    int keyEnd = value.indexOf(c, keyStart);
+                    if (keyEnd < 0) {
+                        break;
+                    }
+                    int colon = value.indexOf(':', keyEnd);
+                    if (colon < 0) {
+                        break;
+                    }
+                    //读取字段值
+                    int valueStart = colon + 1;
+                    while (valueStart < length && value.charAt(valueStart) == ' ') {
+                        valueStart++;
+                    }
+                    int valueEnd;
+                    int next;
+                    boolean quoted = false;
+                    if (valueStart < length && (value.charAt(valueStart) == '\'' || value.charAt(valueStart) == '"')) {
+                        char quote = value.charAt(valueStart);
+                        quoted = true;
+                        valueStart++;
+                        valueEnd = value.indexOf(quote, valueStart);
+                        if (valueEnd < 0) {
+                            break;
+                        }
+                        next = valueEnd + 1;
+                    } else {
+                        valueEnd = valueStart;
+                        while (valueEnd < length && value.charAt(valueEnd) != ',' && value.charAt(valueEnd) != '}') {
+                            valueEnd++;
+                        }
+                        next = valueEnd;
+                    }
+                    seen |= setSensorField(sensor, value, keyStart, keyEnd, valueStart, valueEnd, quoted);
+                    i = next;
+                } else {
+                    i++;
+                }
+            }
+            if (sensor != null) {
+                resetUnseen(sensor, seen);
+            }
+        }
+        while (sensors.size() > count) {
+            sensors.remove(sensors.size() - 1);
+        }
+    }
+
+    private static final int SENSOR_SN = 1;
+    private static final int SENSOR_TEMP = 1 << 1;
+    private static final int SENSOR_CONCEN = 1 << 2;
+    private static final int SENSOR_FIRE = 1 << 3;
+    private static final int SENSOR_ERROR = 1 << 4;
+    private static final int SENSOR_STATE = 1 << 5;
+
+    /**
+     * 写入传感器字段
+     *
+     * @return 写入的字段标志, 未知字段返回0
+     */
+    private static int setSensorField(BusInfo.Sensor sensor, String value, int keyStart, int keyEnd, int valueStart, int valueEnd, boolean quoted) {
+        int keyLength = keyEnd - keyStart;
+        if (keyLength == 2 && value.startsWith("sn", keyStart)) {
+            sensor.setSn(parseSensorNumber(value, valueStart, valueEnd, "sn"));
+            return SENSOR_SN;
+        } else if (keyLength == 4 && value.startsWith("temp", keyStart)) {
+            sensor.setTemp(parseSensorNumber(value, valueStart, valueEnd, "temp"));
+            return SENSOR_TEMP;
+        } else if (keyLength == 6 && value.startsWith("concen", keyStart)) {
+            sensor.setConcen(parseSensorNumber(value, valueStart, valueEnd, "concen"));
+            return SENSOR_CONCEN;
+        } else if (keyLength == 4 && value.startsWith("fire", keyStart)) {
+            sensor.setFire(reuse(sensor.getFire(), value, valueStart, valueEnd, quoted));
+            return SENSOR_FIRE;
+        } else if (keyLength == 5 && value.startsWith("error", keyStart)) {
+            sensor.setError(reuse(sensor.getError(), value, valueStart, valueEnd, quoted));
+            return SENSOR_ERROR;
+        } else if (keyLength == 5 && value.startsWith("state", keyStart)) {
+            sensor.setState(reuse(sensor.getState(), value, valueStart, valueEnd, quoted));
+            return SENSOR_STATE;
+        }
+        return 0;
+    }
+
+    /**
+     * 重置复用的传感器对象中本次数据没有的字段
+     */
+    private static void resetUnseen(BusInfo.Sensor sensor, int seen) {
+        if ((seen & SENSOR_SN) == 0) {
+            sensor.setSn(0);
+        }
+        if ((seen & SENSOR_TEMP) == 0) {
+            sensor.setTemp(0);
+        }
+        if ((seen & SENSOR_CONCEN) == 0) {
+            sensor.setConcen(0);
+        }
+        if ((seen & SENSOR_FIRE) == 0) {
+            sensor.setFire(null);
+        }
+        if ((seen & SENSOR_ERROR) == 0) {
+            sensor.setError(null);
+        }
+        if ((seen & SENSOR_STATE) == 0) {
+            sensor.setState(null);
+        }
+    }
+
+    /**
+     * 解析传感器数值字段, 小数与原Jackson解码一致取整数部分, 为空或null时返回0, 格式不正确时记录日志并返回0
+     */
+    private static int parseSensorNumber(String value, int start, int end, String field) {
+        int result = parseInt(value, start, end, Integer.MIN_VALUE);
+        if (result != Integer.MIN_VALUE) {
+            return result;
+        }
+        String text = value.substring(start, end).trim();
+        if (text.isEmpty() || "null".equals(text)) {
+            return 0;
+        }
+        try {
+            return (int) Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            logger.warn("传感器数值格式不正确, field={}, value={}", field, text);
+            return 0;
+        }
+    }
+
+    /**
+     * 内容与原字符串相同时复用原字符串, 否则创建子字符串, 未加引号的null返回null
+     */
+    private static String reuse(String current, String value, int start, int end, boolean quoted) {
+        if (!quoted) {
+            while (end > start && value.charAt(end - 1) == ' ') {
+                end--;
+            }
+            if (end - start == 4 && value.startsWith("null", start)) {
+                return null;
+            }
+        }
+        if (current != null && current.length() == end - start && value.startsWith(current, start)) {
+            return current;
+        }
+        return value.substring(start, end);
+    }
+}
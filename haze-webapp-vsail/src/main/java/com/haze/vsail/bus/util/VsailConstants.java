@@ -28,6 +28,31 @@ public class VsailConstants {
      */
     public static final String BUS_INFO_KEY_PREFFIX = "bus_";
 
+    /**
+     * 运营车辆vin码集合存放Redis键, 由{@code BusService}在保存和删除运营车辆时维护
+     */
+    public static final String BUS_VIN_SET_KEY = "vsail:bus:vins";
+
+    /**
+     * 车辆实时数据通知频道, 网关写入车辆缓存后向该频道发布车辆vin码
+     */
+    public static final String BUS_TELEMETRY_CHANNEL = "vsail:bus:telemetry";
+
+    /**
+     * 集群车辆事件转发频道, 各节点将本节点产生的车辆事件发布到该频道, 由其他节点推送给本地连接
+     */
+    public static final String BUS_CLUSTER_CHANNEL = "vsail:bus:cluster";
+
+    /**
+     * 地图缩放级别小于该值时车辆按网格聚合返回
+     */
+    public static final int MAP_CLUSTER_MAX_ZOOM = 13;
+
+    /**
+     * 地图聚合网格大小(像素)
+     */
+    public static final int MAP_CLUSTER_PIXELS = 60;
+
 
     public static final String WEB_SOCKET_CONFIG_CODE = "WS_URL";
 
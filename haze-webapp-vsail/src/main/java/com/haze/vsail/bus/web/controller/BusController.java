@@ -5,6 +5,7 @@ import com.haze.system.service.GroupService;
 import com.haze.system.utils.Status;
 import com.haze.vsail.bus.entity.Bus;
 import com.haze.vsail.bus.entity.BusModel;
+import com.haze.vsail.bus.service.BusCacheReconciler;
 import com.haze.vsail.bus.service.BusModelService;
 import com.haze.vsail.bus.service.BusService;
 import com.haze.vsail.bus.util.BusEventType;
@@ -30,11 +31,14 @@ public class BusController extends BaseCrudController<Bus, Long> {
 
     private GroupService groupService;
 
-    public BusController(BusModelService busModelService, BusService busService, GroupService groupService) {
+    private BusCacheReconciler busCacheReconciler;
+
+    public BusController(BusModelService busModelService, BusService busService, GroupService groupService, BusCacheReconciler busCacheReconciler) {
         super("vsail", "bus", "车辆", busService);
         this.busModelService = busModelService;
         this.busService = busService;
         this.groupService = groupService;
+        this.busCacheReconciler = busCacheReconciler;
     }
 
     /**
@@ -159,6 +163,30 @@ public class BusController extends BaseCrudController<Bus, Long> {
     }
 
 
+    /**
+     * 在后台以数据库为准核对所有运营车辆的redis缓存, 用于redis被清空或替换后恢复, 进度通过{@link #reloadCacheStats()}查看
+     * @return 操作结果
+     */
+    @PostMapping(value = "reloadCache")
+    @ResponseBody
+    public WebMessage reloadCache() {
+        if (!this.busCacheReconciler.reconcileAsync()) {
+            return WebMessage.createErrorWebMessage("车辆缓存正在核对");
+        }
+        logger.debug("开始核对车辆缓存");
+        return WebMessage.createSuccessWebMessage();
+    }
+
+    /**
+     * 获取车辆缓存核对进度及耗时
+     * @return 核对统计信息
+     */
+    @GetMapping(value = "reloadCache/stats")
+    @ResponseBody
+    public Map<String, Object> reloadCacheStats() {
+        return this.busCacheReconciler.getStats();
+    }
+
     /**
      * 保存运营信息
      * @param bus 车辆信息
@@ -0,0 +1,51 @@
+package com.haze.vsail.stat.listener;
+
+import com.haze.core.spring.SpringContextUtils;
+import com.haze.vsail.bus.event.BusEvent;
+import com.haze.vsail.bus.util.BusEventType;
+import com.haze.vsail.bus.util.BusInfo;
+import com.haze.vsail.stat.service.BusLogWriter;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 车辆日志监听类, 根据车辆事件前后状态判断上下线、火警及故障的发生, 交由{@link BusLogWriter}异步写入日志表
+ * <p>
+ *     只在状态发生变化时记录一次, 如持续火警的车辆只在首次出现火警时记录火警日志。
+ *     车辆状态未进入内存存储时无法获取之前的状态, 只根据上线或下线事件记录上下线日志。
+ *     其他集群节点转发的事件已由产生事件的节点记录, 不再重复记录。
+ * </p>
+ */
+public class BusLogApplicationListener implements ApplicationListener<BusEvent> {
+
+    @Override
+    public void onApplicationEvent(BusEvent event) {
+        BusLogWriter busLogWriter = SpringContextUtils.getBean(BusLogWriter.class);
+        if (!busLogWriter.isEnabled() || event.isRelayed()) {
+            return;
+        }
+        BusInfo busInfo = event.getBusInfo();
+        int eventCode = busInfo.getEventCode();
+        if (eventCode == BusEventType.BUS_EVENT_DELETE.getEventCode()) {
+            return;
+        }
+        if (event.getChange() == null) {
+            if (eventCode == BusEventType.BUS_EVENT_ON.getEventCode() || eventCode == BusEventType.BUS_EVENT_OFF.getEventCode()) {
+                busLogWriter.logOnOff(busInfo, eventCode);
+            }
+            return;
+        }
+        BusInfo previous = event.getChange().getPrevious();
+        boolean wasOnline = previous != null && previous.isOnline();
+        if (busInfo.isOnline() && !wasOnline) {
+            busLogWriter.logOnOff(busInfo, BusEventType.BUS_EVENT_ON.getEventCode());
+        } else if (wasOnline && eventCode == BusEventType.BUS_EVENT_OFF.getEventCode()) {
+            busLogWriter.logOnOff(busInfo, BusEventType.BUS_EVENT_OFF.getEventCode());
+        }
+        if (busInfo.isFire() && (previous == null || !previous.isFire())) {
+            busLogWriter.logFire(busInfo);
+        }
+        if (busInfo.isBreakDown() && (previous == null || !previous.isBreakDown())) {
+            busLogWriter.logBreakDown(busInfo);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.haze.vsail.stat.service;
+
+import com.haze.vsail.bus.util.BusInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 车辆上下线、火警及故障日志异步批量写入器
+ * <p>
+ *     车辆事件线程只将日志行放入有界队列, 不访问数据库。写入线程按表缓存日志行, 某张表缓存数量达到批量大小或距上次写入
+ *     超过刷新间隔时通过JDBC批量插入一次写入, 写入失败时按间隔重试, 重试仍失败的批次记录错误日志后丢弃。
+ *     日志的年、月、日列在入队前根据日志时间计算。队列已满时丢弃新的日志行并计数。
+ * </p>
+ * <p>
+ *     默认不启用, 由{@code vsail.bus-log.enabled}开启, 开启前需停止外部程序写入相同日志, 避免重复记录。
+ * </p>
+ */
+@Component
+public class BusLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusLogWriter.class);
+
+    /**
+     * 日志表
+     */
+    public enum LogTable {
+
+        ON_OFF("insert into v_bus_on_off_log (vin, bus_num, driving_num, group_name, root_group_name, log_time, log_year, log_month, log_day, flag) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"),
+
+        FIRE("insert into v_bus_fire_log (vin, bus_num, driving_num, group_name, root_group_name, log_time, log_year, log_month, log_day, model_name) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"),
+
+        BREAK_DOWN("insert into v_bus_break_down_log (vin, bus_num, driving_num, group_name, root_group_name, log_time, log_year, log_month, log_day) values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+        private final String sql;
+
+        LogTable(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean enabled;
+
+    private final BlockingQueue<LogRow> queue;
+
+    private final int batchSize;
+
+    private final long flushIntervalMillis;
+
+    private final int maxRetries;
+
+    private final AtomicLong accepted = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running = false;
+
+    private Thread worker;
+
+    public BusLogWriter(JdbcTemplate jdbcTemplate,
+                        @Value("${vsail.bus-log.enabled:false}") boolean enabled,
+                        @Value("${vsail.bus-log.queue-capacity:10000}") int queueCapacity,
+                        @Value("${vsail.bus-log.batch-size:200}") int batchSize,
+                        @Value("${vsail.bus-log.flush-interval-ms:1000}") long flushIntervalMillis,
+                        @Value("${vsail.bus-log.max-retries:3}") int maxRetries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxRetries = maxRetries;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "bus-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录车辆上下线日志
+     *
+     * @param busInfo 车辆信息
+     * @param flag    上下线标识, 为车辆上线或下线事件代码
+     */
+    public void logOnOff(BusInfo busInfo, int flag) {
+        offer(LogTable.ON_OFF, busInfo, flag);
+    }
+
+    /**
+     * 记录车辆火警日志
+     *
+     * @param busInfo 车辆信息
+     */
+    public void logFire(BusInfo busInfo) {
+        offer(LogTable.FIRE, busInfo, busInfo.getModelName());
+    }
+
+    /**
+     * 记录车辆故障日志
+     *
+     * @param busInfo 车辆信息
+     */
+    public void logBreakDown(BusInfo busInfo) {
+        offer(LogTable.BREAK_DOWN, busInfo, null);
+    }
+
+    private void offer(LogTable table, BusInfo busInfo, Object extra) {
+        if (!enabled) {
+            return;
+        }
+        long time = busInfo.getSendTime() != null ? busInfo.getSendTime().getTime() : System.currentTimeMillis();
+        LocalDate date = Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+        int columns = table == LogTable.BREAK_DOWN ? 9 : 10;
+        Object[] args = new Object[columns];
+        args[0] = busInfo.getVin();
+        args[1] = busInfo.getBusNum();
+        args[2] = busInfo.getDrivingNum();
+        args[3] = busInfo.getLineGroupName();
+        args[4] = busInfo.getRootGroupName();
+        args[5] = new Timestamp(time);
+        args[6] = date.getYear();
+        args[7] = date.getMonthValue();
+        args[8] = date.getDayOfMonth();
+        if (columns > 9) {
+            args[9] = extra;
+        }
+        if (queue.offer(new LogRow(table, args))) {
+            accepted.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+            logger.warn("车辆日志队列已满, 丢弃日志, table={}, vin={}", table, busInfo.getVin());
+        }
+    }
+
+    private void run() {
+        Map<LogTable, List<Object[]>> buffers = new EnumMap<>(LogTable.class);
+        for (LogTable table : LogTable.values()) {
+            buffers.put(table, new ArrayList<>(batchSize));
+        }
+        long lastFlush = System.currentTimeMillis();
+        while (running) {
+            try {
+                LogRow row = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (row != null) {
+                    List<Object[]> buffer = buffers.get(row.table);
+                    buffer.add(row.args);
+                    if (buffer.size() >= batchSize) {
+                        flush(row.table, buffer);
+                    }
+                }
+                if (System.currentTimeMillis() - lastFlush >= flushIntervalMillis) {
+                    buffers.forEach(this::flush);
+                    lastFlush = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        //停止时写入剩余日志
+        List<LogRow> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(row -> buffers.get(row.table).add(row.args));
+        buffers.forEach(this::flush);
+    }
+
+    private void flush(LogTable table, List<Object[]> buffer) {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbcTemplate.batchUpdate(table.sql, buffer);
+                written.addAndGet(buffer.size());
+                batches.incrementAndGet();
+                break;
+            } catch (Exception e) {
+                if (attempt > maxRetries) {
+                    failed.addAndGet(buffer.size());
+                    logger.error("车辆日志写入失败, table={}, size={}", table, buffer.size(), e);
+                    break;
+                }
+                logger.warn("车辆日志写入失败, 稍后重试, table={}, size={}, attempt={}", table, buffer.size(), attempt);
+                try {
+                    Thread.sleep(flushIntervalMillis * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    //停止过程中不再等待, 立即进行最后一次尝试
+                    attempt = maxRetries;
+                }
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 获取写入器统计信息
+     *
+     * @return 队列深度、已接收、已丢弃、已写入、写入批次及写入失败数量
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("depth", queue.size());
+        stats.put("accepted", accepted.get());
+        stats.put("dropped", dropped.get());
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private static final class LogRow {
+
+        private final LogTable table;
+
+        private final Object[] args;
+
+        private LogRow(LogTable table, Object[] args) {
+            this.table = table;
+            this.args = args;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.haze.core.jpa.repository.HazeSpecification;
 import com.haze.system.entity.Group;
 import com.haze.system.service.GroupService;
 import com.haze.system.utils.Status;
+import com.haze.vsail.bus.store.SensorHistoryStore;
 import com.haze.vsail.stat.dao.BusBreakDownLogDao;
 import com.haze.vsail.stat.dao.BusFireLogDao;
 import com.haze.vsail.stat.dao.BusOnOffLogDao;
@@ -42,12 +43,16 @@ public class VsailStatService {
 
     private EntityManager em;
 
-    public VsailStatService(BusOnOffLogDao busOnOffLogDao, BusFireLogDao busFireLogDao, BusBreakDownLogDao busBreakDownLogDao, EntityManager em, GroupService groupService) {
+    private SensorHistoryStore sensorHistoryStore;
+
+    public VsailStatService(BusOnOffLogDao busOnOffLogDao, BusFireLogDao busFireLogDao, BusBreakDownLogDao busBreakDownLogDao, EntityManager em, GroupService groupService,
+                            SensorHistoryStore sensorHistoryStore) {
         this.busOnOffLogDao = busOnOffLogDao;
         this.busFireLogDao = busFireLogDao;
         this.busBreakDownLogDao = busBreakDownLogDao;
         this.em = em;
         this.groupService = groupService;
+        this.sensorHistoryStore = sensorHistoryStore;
     }
 
     /**
@@ -237,10 +242,26 @@ public class VsailStatService {
 
     /**
      * 根据车辆vin码获取最后10条传感器数据
+     * <p>
+     *     优先从内存中{@link SensorHistoryStore}读取, 服务启动后首次查询该车辆时查询数据库, 将早于实时数据的记录补入内存
+     * </p>
      * @param vin 车辆vin码
      * @return [vin, 数据发送时间, 传感器数量, 是否火警, 是否故障, 传感器编号,传感器温度,传感器一氧化碳浓度, 传感器报文[1-6]]
      */
     public List<Object[]> getSensor(String vin) {
+        List<Object[]> rows = sensorHistoryStore.getRows(vin);
+        if (rows != null) {
+            return rows;
+        }
+        //首次查询时从数据库补齐服务启动前的历史数据, 与已写入的实时数据合并
+        rows = querySensor(vin);
+        sensorHistoryStore.load(vin, rows);
+        List<Object[]> merged = sensorHistoryStore.getRows(vin);
+        return merged != null ? merged : rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> querySensor(String vin) {
         String sql = "select * from (select vin, upload_time, array_length(sensores,1) ct, bus_data->>'isFire' as isFire,bus_data->>'isError' as isError";
         for (int i = 1; i <=6; i++) {
             sql += ",sensores["+i+"]->>'sn' as sn"+i+", sensores["+i+"]->>'temp' as temp"+i+", sensores["+i+"]->>'concen' as concen"+i+", sensores["+i+"]->>'fire' as fire"+i+", sensores["+i+"]->>'error' as error"+i +", sensores["+i+"]->>'state' as state"+i;
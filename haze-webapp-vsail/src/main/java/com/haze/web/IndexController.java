@@ -5,6 +5,7 @@ import com.haze.system.service.ConfigService;
 import com.haze.system.service.DictService;
 import com.haze.vsail.bus.util.VsailConstants;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,11 +19,18 @@ public class IndexController {
     @Autowired
     private ConfigService configService;
 
+    /**
+     * 监控页面是否使用流式快照及websocket增量协议加载车辆信息
+     */
+    @Value("${vsail.web.delta-protocol:true}")
+    private boolean deltaProtocol;
+
     @GetMapping("/")
     public String main(Model model) {
         dictService.findChildsByRootCode("GROUP_TYPE");
         Config config = configService.findByCode(VsailConstants.WEB_SOCKET_CONFIG_CODE);
         model.addAttribute("config", config);
+        model.addAttribute("deltaProtocol", deltaProtocol);
         return "index";
     }
 }
@@ -144,46 +144,24 @@
     $(function () {
         ko.applyBindings(viewModel);
         //首先加载所属车辆信息
-        $.post('${ctx}/v/getBusData', 'json', function (data) {
-            //viewModel.totalData(data);
-            _.each(data, processData);
-            //加载完成后建立websocket链接
-            if ('WebSocket' in window) {
-                websocket = new WebSocket("${config.value!}/websocket/<@shiro.principal/>");
-                //websocket = new WebSocket("ws://localhost:8080/websocket/<@shiro.principal/>");
-                websocket.onopen = function () {
-                    console.log("连接成功");
-                    viewModel.invokeFrame(-1);
-                };
-
-                websocket.onclose = function () {
-                    console.log("退出连接");
-                };
-
-                websocket.onmessage = function (event) {
-                    console.log("收到消息" + event.data);
-                    //更新数值, 同时将收到的数据传送到地图界面
-                    //判断是否需要更新map页面
-                    const busData = $.parseJSON(event.data);
-					viewModel.updateBusData(busData);
-                    viewModel.invokeFrame(viewModel.currentTab());
-					//TODO 待完善
-                    /*if (myframe.window.addMarker !== undefined) {
-                        myframe.window.addMarker($.parseJSON(event.data))
-                    }*/
-                };
-
-                websocket.onerror = function () {
-                    console.log("连接出错");
-                };
-
-                window.onbeforeunload = function () {
-                    websocket.close();
-                };
-            } else {
-                console.warn('当前浏览器不支持websocket')
-            }
-        });
+        if (useDeltaProtocol) {
+            //增量协议下流式加载列格式快照, 之后从快照版本建立websocket连接补齐加载期间的变化
+            $.getJSON('${ctx}/v/getBusData/stream', {format: 'array'}, function (snapshot) {
+                deltaState = {version: -1, epoch: snapshot.e, since: snapshot.v, buses: {}, pending: []};
+                _.each(snapshot.buses, function (bus) {
+                    const busData = _.object(snapshot.fields, bus[2]);
+                    deltaState.buses[bus[0]] = {v: bus[1], d: busData};
+                    processData(busData);
+                });
+                openWebSocket();
+            });
+        } else {
+            $.post('${ctx}/v/getBusData', 'json', function (data) {
+                //viewModel.totalData(data);
+                _.each(data, processData);
+                openWebSocket();
+            });
+        }
 
         setInterval(function() {
             console.log(_.size(viewModel.fireVinData()));
@@ -197,6 +175,179 @@
         },5000)
     });
 
+    //是否使用增量协议接收车辆信息, 为false时每条消息为完整车辆信息, 由vsail.web.delta-protocol配置
+    const useDeltaProtocol = ${(deltaProtocol!true)?c};
+    //增量协议下车辆状态 车辆编号 -> {v: 车辆版本号, d: 车辆信息}, 收到快照前的增量暂存在pending中
+    let deltaState = {version: -1, buses: {}, pending: []};
+
+    //加载完成后建立websocket链接
+    function openWebSocket() {
+        if ('WebSocket' in window) {
+            connectWebSocket();
+        } else {
+            console.warn('当前浏览器不支持websocket')
+        }
+    }
+
+    function connectWebSocket(resync) {
+        let url = "${config.value!}/websocket/<@shiro.principal/>";
+        //url = "ws://localhost:8080/websocket/<@shiro.principal/>";
+        if (useDeltaProtocol) {
+            url += "?protocol=delta&binary=1";
+            if (resync !== true && deltaState.since >= 0) {
+                //已持有快照时只获取快照版本之后的变化
+                url += "&since=" + deltaState.since + "&epoch=" + deltaState.epoch;
+                deltaState = {version: -1, epoch: deltaState.epoch, since: deltaState.since, buses: deltaState.buses, pending: []};
+            } else {
+                deltaState = {version: -1, buses: {}, pending: [], resync: resync === true};
+            }
+        }
+        websocket = new WebSocket(url);
+        websocket.binaryType = "arraybuffer";
+        websocket.onopen = function () {
+            console.log("连接成功");
+            viewModel.invokeFrame(-1);
+        };
+
+        websocket.onclose = function () {
+            console.log("退出连接");
+            if (websocket.resync) {
+                connectWebSocket(true);
+            }
+        };
+
+        websocket.onmessage = function (event) {
+            //更新数值, 同时将收到的数据传送到地图界面
+            //判断是否需要更新map页面
+            if (useDeltaProtocol) {
+                processDeltaMessage(event.data);
+                return;
+            }
+            console.log("收到消息" + event.data);
+            const busData = $.parseJSON(event.data);
+            viewModel.updateBusData(busData);
+            viewModel.invokeFrame(viewModel.currentTab());
+            //TODO 待完善
+            /*if (myframe.window.addMarker !== undefined) {
+                myframe.window.addMarker($.parseJSON(event.data))
+            }*/
+        };
+
+        websocket.onerror = function () {
+            console.log("连接出错");
+        };
+
+        window.onbeforeunload = function () {
+            websocket.resync = false;
+            websocket.close();
+        };
+    }
+
+    function processDeltaMessage(data) {
+        let message;
+        if (data instanceof ArrayBuffer) {
+            //二进制坐标帧 类型(1) 车辆编号(4) 版本号(8) 上一版本号(8) x(8) y(8) 发送时间(8)
+            const view = new DataView(data);
+            const sendTime = Number(view.getBigInt64(37));
+            message = {t: "d", i: view.getInt32(1), v: Number(view.getBigInt64(5)), p: Number(view.getBigInt64(13)),
+                f: {x: String(view.getFloat64(21)), y: String(view.getFloat64(29)), sendTime: sendTime < 0 ? null : formatDateTime(new Date(sendTime))}};
+        } else {
+            message = $.parseJSON(data);
+        }
+        if (message.t === "s") {
+            if (message.since !== undefined) {
+                mergeSnapshot(message);
+            } else {
+                //重新获取快照或服务重启后收到完整快照时使用快照数据刷新车辆信息
+                const refresh = deltaState.resync || deltaState.since >= 0;
+                deltaState.buses = {};
+                _.each(message.buses, function (bus) {
+                    deltaState.buses[bus.i] = {v: bus.v, d: bus.d};
+                    if (refresh) {
+                        processData(bus.d);
+                    }
+                });
+            }
+            deltaState.version = message.v;
+            deltaState.epoch = message.e;
+            deltaState.since = message.v;
+            const pending = deltaState.pending;
+            deltaState.pending = [];
+            _.each(pending, function (m) {
+                if (m.v > deltaState.version) {
+                    applyDelta(m);
+                }
+            });
+            return;
+        }
+        if (deltaState.version < 0) {
+            deltaState.pending.push(message);
+            return;
+        }
+        applyDelta(message);
+    }
+
+    //合并增量快照: 先移除基准版本之后删除的车辆, 再更新版本较新的车辆
+    function mergeSnapshot(message) {
+        _.each(message.removed, function (i) {
+            const bus = deltaState.buses[i];
+            if (bus) {
+                delete deltaState.buses[i];
+                viewModel.updateBusData($.extend({}, bus.d, {eventCode: viewModel.eventCodeConstants.DELETE}));
+            }
+        });
+        _.each(message.buses, function (bus) {
+            const local = deltaState.buses[bus.i];
+            if (!local || bus.v > local.v) {
+                deltaState.buses[bus.i] = {v: bus.v, d: bus.d};
+                processData(bus.d);
+            }
+        });
+        viewModel.invokeFrame(viewModel.currentTab());
+    }
+
+    function formatDateTime(date) {
+        const pad = function (n) {
+            return n < 10 ? '0' + n : '' + n;
+        };
+        return date.getFullYear() + '-' + pad(date.getMonth() + 1) + '-' + pad(date.getDate()) + ' '
+            + pad(date.getHours()) + ':' + pad(date.getMinutes()) + ':' + pad(date.getSeconds());
+    }
+
+    function applyDelta(message) {
+        const bus = deltaState.buses[message.i];
+        if (message.t === "f") {
+            //车辆进入订阅范围或告警消息, 直接替换车辆信息, 告警越过的旧增量随后按版本号丢弃
+            if (bus && message.v <= bus.v) {
+                return;
+            }
+            deltaState.buses[message.i] = {v: message.v, d: message.d};
+            viewModel.updateBusData(message.d);
+            viewModel.invokeFrame(viewModel.currentTab());
+            return;
+        }
+        if (message.p !== (bus ? bus.v : 0)) {
+            if (bus && message.v <= bus.v) {
+                return;
+            }
+            //遗漏了该车辆的变化, 重新连接获取快照
+            console.warn("车辆消息版本不连续, 重新获取快照", message);
+            websocket.resync = true;
+            websocket.close();
+            return;
+        }
+        let busData;
+        if (message.t === "r") {
+            delete deltaState.buses[message.i];
+            busData = $.extend({}, bus.d, {eventCode: viewModel.eventCodeConstants.DELETE});
+        } else {
+            busData = $.extend({}, bus ? bus.d : {}, message.f);
+            deltaState.buses[message.i] = {v: message.v, d: busData};
+        }
+        viewModel.updateBusData(busData);
+        viewModel.invokeFrame(viewModel.currentTab());
+    }
+
     function processData(busData) {
         viewModel.totalData(addOrUpdateBusData(viewModel.totalData(), busData));
         switch (busData.eventCode) {